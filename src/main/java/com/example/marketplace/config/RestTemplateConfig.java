@@ -1,15 +1,102 @@
 package com.example.marketplace.config;
 
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+
+/**
+ * 外部 API（LINE Notify など）呼び出し用の HTTP クライアント設定
+ * ・Keep-Alive のコネクションプールで接続を使い回す
+ * ・接続 / 応答 / プール待ちのすべてにタイムアウトを設定し、相手が止まってもスレッドが溜まらないようにする
+ * ・プールの使用状況を Micrometer のメトリクス（httpcomponents.httpclient.pool.*）として公開する
+ */
 @Configuration
 public class RestTemplateConfig {
 
+	// プール全体の最大接続数
+	@Value("${http.client.max-connections:50}")
+	private int maxConnections;
+
+	// 接続先（ホスト）ごとの最大接続数
+	@Value("${http.client.max-connections-per-route:10}")
+	private int maxConnectionsPerRoute;
+
+	// 接続確立のタイムアウト（ミリ秒）
+	@Value("${http.client.connect-timeout-millis:3000}")
+	private long connectTimeoutMillis;
+
+	// 応答待ちのタイムアウト（ミリ秒）
+	@Value("${http.client.read-timeout-millis:10000}")
+	private long readTimeoutMillis;
+
+	// プールから接続を借りるまでの待ち時間の上限（ミリ秒）。満杯時はこの時間で失敗させる
+	@Value("${http.client.pool-acquire-timeout-millis:2000}")
+	private long poolAcquireTimeoutMillis;
+
+	// アイドル接続を破棄するまでの時間（秒）
+	@Value("${http.client.idle-eviction-seconds:30}")
+	private long idleEvictionSeconds;
+
+	// コネクションプール
+	@Bean(destroyMethod = "close")
+	public PoolingHttpClientConnectionManager httpClientConnectionManager() {
+		return PoolingHttpClientConnectionManagerBuilder.create()
+				.setMaxConnTotal(maxConnections)
+				.setMaxConnPerRoute(maxConnectionsPerRoute)
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMillis))
+						.setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+						// 長時間アイドルだった接続は使う前に生存確認
+						.setValidateAfterInactivity(TimeValue.ofSeconds(2))
+						.build())
+				.setDefaultSocketConfig(SocketConfig.custom()
+						.setSoTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+						.build())
+				.build();
+	}
+
+	// プールを使う HTTP クライアント
+	@Bean(destroyMethod = "close")
+	public CloseableHttpClient outboundHttpClient(PoolingHttpClientConnectionManager connectionManager) {
+		return HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeoutMillis))
+						.setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMillis))
+						.build())
+				.evictExpiredConnections()
+				.evictIdleConnections(TimeValue.of(idleEvictionSeconds, TimeUnit.SECONDS))
+				.build();
+	}
+
+	// 外部 API 呼び出しで共通に使う RestTemplate（RestTemplateBuilder 経由で呼び出しメトリクスも記録される）
 	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
+	public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient outboundHttpClient) {
+		return builder
+				.requestFactory(() -> new HttpComponentsClientHttpRequestFactory(outboundHttpClient))
+				.build();
 	}
-}
 
+	// プールの使用中 / 空き / 待ち / 上限をメトリクスとして公開（飽和の監視用）
+	@Bean
+	public MeterBinder httpClientPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+		return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "outbound");
+	}
+}
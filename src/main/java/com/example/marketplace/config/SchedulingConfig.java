@@ -0,0 +1,10 @@
+package com.example.marketplace.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// 定期実行（@Scheduled）を有効化
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -3,7 +3,6 @@ package com.example.marketplace.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
-import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
@@ -50,6 +49,9 @@ public class SecurityConfig {
 						// 出品・編集フォーム・商品詳細など /items 配下のその他はログイン必須
 						.requestMatchers(HttpMethod.GET, "/items/*").authenticated()
 
+						// Stripe Webhook（Stripe からの呼び出し。署名で認証するためログイン不要）
+						.requestMatchers(HttpMethod.POST, "/orders/stripe-webhook").permitAll()
+
 						// 管理者専用
 						.requestMatchers("/admin/**").hasRole("ADMIN")
 
@@ -68,8 +70,8 @@ public class SecurityConfig {
 						.logoutSuccessUrl("/login?logout")
 						.permitAll())
 
-				// CSRF（デフォルト有効）
-				.csrf(Customizer.withDefaults());
+				// CSRF（デフォルト有効。Stripe Webhook は署名で検証するため除外）
+				.csrf(csrf -> csrf.ignoringRequestMatchers("/orders/stripe-webhook"));
 
 		return http.build();
 	}
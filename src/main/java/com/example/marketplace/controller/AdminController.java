@@ -1,7 +1,11 @@
 package com.example.marketplace.controller;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 
 import jakarta.servlet.http.HttpServletResponse;
@@ -18,6 +22,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 
 import com.example.marketplace.service.AppOrderService;
 import com.example.marketplace.service.ItemService;
+import com.example.marketplace.service.OrderExportService;
 
 // このクラスが Web リクエストを処理する「コントローラ」であることを示すアノテーション
 @Controller
@@ -31,13 +36,18 @@ public class AdminController {
 	private final ItemService itemService;
 	// 注文・売上などアプリ全体の注文情報を扱うサービスクラスのフィールド
 	private final AppOrderService appOrderService;
+	// 注文明細のエクスポートを扱うサービスクラスのフィールド
+	private final OrderExportService orderExportService;
 
 	// コンストラクタインジェクションにより、サービスを受け取ってフィールドに設定
-	public AdminController(ItemService itemService, AppOrderService appOrderService) {
+	public AdminController(ItemService itemService, AppOrderService appOrderService,
+			OrderExportService orderExportService) {
 		// 引数で受け取った ItemService をフィールドに格納
 		this.itemService = itemService;
 		// 引数で受け取った AppOrderService をフィールドに格納
 		this.appOrderService = appOrderService;
+		// 引数で受け取った OrderExportService をフィールドに格納
+		this.orderExportService = orderExportService;
 	}
 
 	// 管理者向けの商品一覧画面を表示するハンドラ（GET /admin/items）
@@ -147,4 +157,54 @@ public class AdminController {
 							.append(",").append(String.valueOf(count)).append("\n"));
 		}
 	}
+
+	// 注文明細をストリーミングでダウンロードさせるハンドラ（GET /admin/orders/export）
+	// format=csv（既定）または ndjson。行は読み込みながら書き出すため、件数が多くてもメモリに溜めない
+	@GetMapping("/orders/export")
+	public void exportOrders(
+			// 開始日（任意。既定は 1 ヶ月前）
+			@RequestParam(value = "startDate", required = false)
+			@DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+			// 終了日（任意。既定は本日）
+			@RequestParam(value = "endDate", required = false)
+			@DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+			// 出力形式（csv / ndjson）
+			@RequestParam(value = "format", defaultValue = "csv") String format,
+			// HTTP レスポンス（出力ストリームへ直接書き出す）
+			HttpServletResponse response) throws IOException {
+
+		// 期間の既定値は統計画面と同じ
+		if (startDate == null) {
+			startDate = LocalDate.now().minusMonths(1);
+		}
+		if (endDate == null) {
+			endDate = LocalDate.now();
+		}
+
+		// 出力形式を判定（不明な値は 400）
+		OrderExportService.Format exportFormat;
+		String extension;
+		if ("ndjson".equalsIgnoreCase(format)) {
+			exportFormat = OrderExportService.Format.NDJSON;
+			extension = "ndjson";
+			response.setContentType("application/x-ndjson; charset=UTF-8");
+		} else if ("csv".equalsIgnoreCase(format)) {
+			exportFormat = OrderExportService.Format.CSV;
+			extension = "csv";
+			response.setContentType("text/csv; charset=UTF-8");
+		} else {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unsupported format: " + format);
+			return;
+		}
+		// ダウンロード用のファイル名（期間入り）
+		response.setHeader("Content-Disposition", "attachment;filename=\"orders_" + startDate + "_" + endDate
+				+ "." + extension + "\"");
+
+		// レスポンスのバッファが満ちるたびにクライアントへ送られる
+		// PrintWriter は IOException を握りつぶすため出力ストリームへ直接書き、クライアント切断時は読み込みを打ち切る
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8))) {
+			orderExportService.export(startDate, endDate, exportFormat, writer);
+		}
+	}
 }
@@ -4,7 +4,6 @@ import java.util.Comparator;
 import java.util.List;
 
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.util.StringUtils;
@@ -14,8 +13,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import com.example.marketplace.entity.SellerRating;
 import com.example.marketplace.entity.User;
-import com.example.marketplace.repository.UserRepository;
+import com.example.marketplace.security.CurrentUser;
 import com.example.marketplace.service.AdminUserService;
 
 @Controller
@@ -24,11 +24,9 @@ import com.example.marketplace.service.AdminUserService;
 public class AdminUserController {
 
 	private final AdminUserService service;
-	private final UserRepository users;
 
-	public AdminUserController(AdminUserService service, UserRepository users) {
+	public AdminUserController(AdminUserService service) {
 		this.service = service;
-		this.users = users;
 	}
 
 	@GetMapping
@@ -74,11 +72,12 @@ public class AdminUserController {
 	@GetMapping("/{id}")
 	public String detail(@PathVariable Long id, Model model) {
 		User user = service.findUser(id);
-		Double avg = service.averageRating(id);
+		SellerRating rating = service.ratingSummary(id);
 		long complaints = service.complaintCount(id);
 
 		model.addAttribute("user", user);
-		model.addAttribute("avgRating", avg);
+		model.addAttribute("avgRating", rating.getAverage());
+		model.addAttribute("ratingSummary", rating);
 		model.addAttribute("complaintCount", complaints);
 		model.addAttribute("complaints", service.complaints(id));
 
@@ -90,13 +89,9 @@ public class AdminUserController {
 			@PathVariable Long id,
 			@RequestParam String reason,
 			@RequestParam(defaultValue = "true") boolean disableLogin,
-			Authentication auth) {
+			@CurrentUser User admin) {
 
-		Long adminId = users.findByEmailIgnoreCase(auth.getName())
-				.map(User::getId)
-				.orElse(null);
-
-		service.banUser(id, adminId, reason, disableLogin);
+		service.banUser(id, admin.getId(), reason, disableLogin);
 
 		return "redirect:/admin/users/" + id + "?banned";
 	}
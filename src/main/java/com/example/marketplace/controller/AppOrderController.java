@@ -1,8 +1,8 @@
 package com.example.marketplace.controller;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,10 +15,15 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.example.marketplace.dto.PaymentStart;
+import com.example.marketplace.entity.AppOrder;
 import com.example.marketplace.entity.User;
+import com.example.marketplace.security.CurrentUser;
 import com.example.marketplace.service.AppOrderService;
+import com.example.marketplace.service.IdempotencyService;
 import com.example.marketplace.service.ItemService;
-import com.example.marketplace.service.UserService;
+import com.example.marketplace.service.StripeWebhookService;
+import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
 
@@ -30,47 +35,57 @@ public class AppOrderController {
 
 	// アプリ全体の注文処理ロジックを担うサービス
 	private final AppOrderService appOrderService;
-	// ユーザー情報取得などを行うサービス
-	private final UserService userService;
 	// 商品情報を扱うサービス（必要に応じて商品情報取得などで利用想定）
 	private final ItemService itemService;
+	// Stripe Webhook の受信箱を扱うサービス
+	private final StripeWebhookService stripeWebhookService;
+	// 二重送信された POST をまとめる冪等キーのサービス
+	private final IdempotencyService idempotencyService;
 
 	// application.yml / properties から Stripe の公開鍵を読み込むフィールド
 	@Value("${stripe.public.key}")
 	private String stripePublicKey;
 
 	// コンストラクタインジェクションで必要なサービスを受け取る
-	public AppOrderController(AppOrderService appOrderService, UserService userService, ItemService itemService) {
+	public AppOrderController(AppOrderService appOrderService, ItemService itemService,
+			StripeWebhookService stripeWebhookService, IdempotencyService idempotencyService) {
 		// 注文サービスをフィールドに設定
 		this.appOrderService = appOrderService;
-		// ユーザーサービスをフィールドに設定
-		this.userService = userService;
 		// 商品サービスをフィールドに設定
 		this.itemService = itemService;
+		// Webhook 受信サービスをフィールドに設定
+		this.stripeWebhookService = stripeWebhookService;
+		// 冪等キーサービスをフィールドに設定
+		this.idempotencyService = idempotencyService;
 	}
 
 	// 購入処理開始用のエンドポイント（決済 Intent を作成し、クライアントシークレットを取得する）
 	@PostMapping("/initiate-purchase") // New endpoint to initiate purchase and get client secret
 	public String initiatePurchase(
-			// 現在ログイン中のユーザー情報（UserDetails）を Spring Security から取得
-			@AuthenticationPrincipal UserDetails userDetails,
+			// 現在ログイン中のユーザー（@CurrentUser でキャッシュから取得）
+			@CurrentUser User buyer,
 			// 購入対象商品の ID をリクエストパラメータから取得
 			@RequestParam("itemId") Long itemId,
+			// 二重送信対策の冪等キー（フォームの hidden 値、または Idempotency-Key ヘッダ）
+			@RequestParam(value = "idempotencyKey", required = false) String formKey,
+			@RequestHeader(value = "Idempotency-Key", required = false) String headerKey,
 			// リダイレクト先に一度だけ渡す属性を保持するためのオブジェクト
 			RedirectAttributes redirectAttributes) {
 
-		// ログインユーザーのメールアドレスから User エンティティを取得（見つからなければ例外）
-		User buyer = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("Buyer not found"));
-
 		try {
 			// サービス層で Stripe の PaymentIntent を作成し、決済開始処理を行う
-			PaymentIntent paymentIntent = appOrderService.initiatePurchase(itemId, buyer);
+			// 同じ冪等キーでの再送（ダブルクリック・再試行）は、最初のリクエストの結果をそのまま返す
+			String key = (headerKey != null) ? headerKey : formKey;
+			PaymentStart start = idempotencyService.execute("initiate-purchase", buyer.getId(), key,
+					"itemId=" + itemId, PaymentStart.class, () -> {
+						PaymentIntent paymentIntent = appOrderService.initiatePurchase(itemId, buyer);
+						return new PaymentStart(paymentIntent.getClientSecret(), itemId);
+					});
 
 			// フロント側で Stripe Elements に渡すためのクライアントシークレットを Flash 属性に詰める
-			redirectAttributes.addFlashAttribute("clientSecret", paymentIntent.getClientSecret());
+			redirectAttributes.addFlashAttribute("clientSecret", start.clientSecret());
 			// どの商品に対する決済かを保持するため、itemId も Flash 属性に詰める
-			redirectAttributes.addFlashAttribute("itemId", itemId);
+			redirectAttributes.addFlashAttribute("itemId", start.itemId());
 
 			// 支払い確認画面へリダイレクト（Flash 属性が ModelAttribute として引き継がれる）
 			return "redirect:/orders/confirm-payment";
@@ -111,6 +126,8 @@ public class AppOrderController {
 	// クライアント側（Stripe.js）で決済完了後に呼び出されるエンドポイント
 	@GetMapping("/complete-purchase") // Endpoint called by Stripe.js after payment is confirmed on client-side
 	public String completePurchase(
+			// 現在ログイン中のユーザー（@CurrentUser でキャッシュから取得）
+			@CurrentUser User currentUser,
 			// クライアント側で取得した PaymentIntent の ID をクエリパラメータから受け取る
 			@RequestParam("paymentIntentId") String paymentIntentId,
 			// 結果メッセージなどをリダイレクト先へ渡すためのオブジェクト
@@ -118,16 +135,20 @@ public class AppOrderController {
 
 		try {
 			// サービス層で PaymentIntent をもとに購入処理を確定させる（注文確定・在庫更新など）
-			appOrderService.completePurchase(paymentIntentId);
+			AppOrder order = appOrderService.completePurchase(paymentIntentId);
 
 			// 正常に購入が完了した旨のメッセージを Flash 属性に設定
 			redirectAttributes.addFlashAttribute("successMessage", "商品を購入しました！");
 
-			// 購入完了後にレビュー投稿ページへ遷移させるため、直近の完了注文 ID を取得
-			// 実運用では PaymentIntent のメタデータなどから注文 ID を辿る設計が望ましい
-			return appOrderService.getLatestCompletedOrderId()
-					// 注文 ID が取得できた場合は、その ID を使って評価画面へリダイレクト
-					.map(orderId -> "redirect:/reviews/new/" + orderId)
+			// 確定した注文がログインユーザー自身のものなら、その注文の評価画面へリダイレクト
+			if (order.getBuyer().getId().equals(currentUser.getId())) {
+				return "redirect:/reviews/new/" + order.getId();
+			}
+
+			// 他人の PaymentIntent ID が渡された場合は、ログインユーザー自身の最新の確定注文へ
+			return appOrderService.getLatestCompletedOrderForBuyer(currentUser)
+					// 注文が取得できた場合は、その ID を使って評価画面へリダイレクト
+					.map(latest -> "redirect:/reviews/new/" + latest.getId())
 					// 取得に失敗した場合は、マイページの注文一覧へリダイレクトしエラーメッセージを表示
 					.orElseGet(() -> {
 						redirectAttributes.addFlashAttribute(
@@ -145,18 +166,30 @@ public class AppOrderController {
 		}
 	}
 
-	// Stripe Webhook の受信エンドポイント（概念のみ、本番運用では署名検証・イベント処理が必須）
+	// Stripe Webhook の受信エンドポイント
+	// 署名を検証して受信箱へ保存するだけで即座に 200 を返す（注文の確定は StripeWebhookProcessor が非同期に行う）
 	@PostMapping("/stripe-webhook")
-	public void handleStripeWebhook(
-			// Stripe から送信される Webhook の生ペイロード（JSON 文字列）
+	public ResponseEntity<String> handleStripeWebhook(
+			// Stripe から送信される Webhook の生ペイロード（JSON 文字列。署名検証のため加工せずに受け取る）
 			@RequestBody String payload,
 			// Stripe-Signature ヘッダ（署名検証に使用する値）
-			@RequestHeader("Stripe-Signature") String sigHeader) {
+			@RequestHeader(value = "Stripe-Signature", required = false) String sigHeader) {
 
-		// 実運用ではここで署名検証を行い、イベント種別ごとに処理を分岐させる
-		// 例：payment_intent.succeeded / payment_intent.payment_failed など
-		System.out.println("Received Stripe Webhook: " + payload);
-		// 例: if (event.getType().equals("payment_intent.succeeded")) { ... } といった処理を実装
+		// 署名シークレット未設定なら受け付けない（Stripe 側で再送される）
+		if (!stripeWebhookService.isConfigured()) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("webhook not configured");
+		}
+		if (sigHeader == null) {
+			return ResponseEntity.badRequest().body("missing signature");
+		}
+		try {
+			// 保存（同じイベントの再送は保存済みとして 200 を返す）
+			stripeWebhookService.receive(payload, sigHeader);
+			return ResponseEntity.ok("ok");
+		} catch (SignatureVerificationException e) {
+			// 署名不正は 400（再送されても成功しない）
+			return ResponseEntity.badRequest().body("invalid signature");
+		}
 	}
 
 	// 販売者が自分の注文を「発送済み」に変更するためのエンドポイント
@@ -1,19 +1,25 @@
 package com.example.marketplace.controller;
 
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.example.marketplace.entity.Chat;
 import com.example.marketplace.entity.User;
+import com.example.marketplace.security.CurrentUser;
 import com.example.marketplace.service.ChatService;
+import com.example.marketplace.service.ChatStreamService;
 import com.example.marketplace.service.ItemService;
-import com.example.marketplace.service.UserService;
+import com.example.marketplace.service.KeysetCursor;
 
 // このクラスが Web リクエストを処理するコントローラであることを示す
 @Controller
@@ -25,49 +31,75 @@ public class ChatController {
 	private final ChatService chatService;
 	// 商品情報取得などを行うサービス
 	private final ItemService itemService;
-	// ユーザー情報取得などを行うサービス
-	private final UserService userService;
+	// チャットのリアルタイム配信を行うサービス
+	private final ChatStreamService chatStreamService;
 
 	// 必要なサービスをコンストラクタインジェクションで受け取る
-	public ChatController(ChatService chatService, ItemService itemService, UserService userService) {
+	public ChatController(ChatService chatService, ItemService itemService,
+			ChatStreamService chatStreamService) {
 		// 引数で受け取った ChatService をフィールドに設定
 		this.chatService = chatService;
 		// 引数で受け取った ItemService をフィールドに設定
 		this.itemService = itemService;
-		// 引数で受け取った UserService をフィールドに設定
-		this.userService = userService;
+		// 引数で受け取った ChatStreamService をフィールドに設定
+		this.chatStreamService = chatStreamService;
 	}
 
 	// 指定された商品に紐づくチャット画面を表示するハンドラ（GET /chat/{itemId}）
 	@GetMapping("/{itemId}")
-	public String showChatScreen(@PathVariable("itemId") Long itemId, Model model) {
+	public String showChatScreen(
+			// パスから対象商品 ID を取得
+			@PathVariable("itemId") Long itemId,
+			// 古いチャット履歴を読み込む場合のカーソル（任意）
+			@RequestParam(value = "chatBefore", required = false) String chatBefore,
+			// 画面に値を渡すための Model
+			Model model) {
 		// 商品 ID から商品情報を取得し、存在しなければ例外を投げる
 		model.addAttribute(
 				"item",
 				itemService.getItemById(itemId)
 						.orElseThrow(() -> new RuntimeException("Item not found")));
 
-		// 対象商品のチャットメッセージ一覧を取得して Model に登録
-		model.addAttribute("chats", chatService.getChatMessagesByItem(itemId));
+		// 対象商品のチャットのうち最新 N 件（カーソル指定時はそれより古い N 件）を Model に登録
+		Slice<Chat> chats = chatService.getChatHistory(itemId, KeysetCursor.parse(chatBefore));
+		model.addAttribute("chats", chats.getContent());
+		// さらに古いメッセージがある場合の読み込み用カーソル
+		model.addAttribute("olderChatCursor", chatService.olderCursor(chats));
 
 		// 商品詳細画面テンプレート（item_detail.html）を再利用してチャットを表示
 		return "item_detail"; // Re-use item_detail for chat display
 	}
 
+	// 指定された商品のチャットを SSE で購読するハンドラ（GET /chat/{itemId}/stream）
+	// 再接続時はブラウザが送る Last-Event-ID 以降の未受信メッセージから配信する
+	@GetMapping(value = "/{itemId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	@ResponseBody
+	public SseEmitter streamMessages(
+			// パスから対象商品 ID を取得
+			@PathVariable("itemId") Long itemId,
+			// 最後に受信したチャット ID（EventSource の自動再接続時に送られる）
+			@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+			// 初回接続時に画面描画済みの最終チャット ID を渡すためのパラメータ
+			@RequestParam(value = "lastEventId", required = false) Long lastRenderedId) {
+
+		// 商品の存在を確認（存在しなければ例外）
+		itemService.getItemById(itemId)
+				.orElseThrow(() -> new RuntimeException("Item not found"));
+
+		// 購読を開始してエミッタを返す（ヘッダを優先）
+		return chatStreamService.subscribe(itemId, lastEventId != null ? lastEventId : lastRenderedId);
+	}
+
 	// 指定された商品に対するチャットメッセージ送信を処理するハンドラ（POST /chat/{itemId}）
 	@PostMapping("/{itemId}")
 	public String sendMessage(
 			// パスから対象商品 ID を取得
 			@PathVariable("itemId") Long itemId,
-			// ログイン中のユーザー情報を Spring Security から取得
-			@AuthenticationPrincipal UserDetails userDetails,
+			// ログイン中のユーザー（@CurrentUser でキャッシュから取得）
+			@CurrentUser User sender,
 			// フォームから送信されたメッセージ本文を取得
 			@RequestParam("message") String message) {
 
-		// ログインユーザーのメールアドレスから User エンティティを取得（存在しなければ例外）
-		User sender = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("Sender not found"));
-
 		// サービスを通じてチャットメッセージを保存・送信処理
 		chatService.sendMessage(itemId, sender, message);
 
@@ -0,0 +1,187 @@
+package com.example.marketplace.controller;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.example.marketplace.service.LocalImageService;
+
+/**
+ * ローカル保存画像の配信（GET /images/**）
+ * ・ETag / Last-Modified を返し、If-None-Match / If-Modified-Since には 304 で応答
+ * ・Range（単一範囲）に対応し、206 で部分配信
+ * ・内容アドレスの画像（内容が変わると URL も変わる）や ?v= 付きの URL は immutable として長期キャッシュ
+ * ・本文は可能なら Tomcat の sendfile でカーネルから直接送る（ヒープを経由しない）
+ */
+@Controller
+public class ImageController {
+
+	// Tomcat の sendfile 用リクエスト属性
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	// 画像の保存先
+	private final LocalImageService localImageService;
+	// immutable として扱う画像のキャッシュ期間（秒）
+	private final long immutableMaxAge;
+	// それ以外の画像のキャッシュ期間（秒）
+	private final long defaultMaxAge;
+	// sendfile を使う最小サイズ（小さいファイルは通常の書き込みの方が速い）
+	private final long sendfileMinSize;
+
+	// 依存性と設定値をコンストラクタで注入
+	public ImageController(LocalImageService localImageService,
+			@Value("${image.serving.immutable-max-age-seconds:31536000}") long immutableMaxAge,
+			@Value("${image.serving.default-max-age-seconds:3600}") long defaultMaxAge,
+			@Value("${image.serving.sendfile-min-size:49152}") long sendfileMinSize) {
+		this.localImageService = localImageService;
+		this.immutableMaxAge = immutableMaxAge;
+		this.defaultMaxAge = defaultMaxAge;
+		this.sendfileMinSize = sendfileMinSize;
+	}
+
+	// 画像を配信する（HEAD はヘッダのみ）
+	@GetMapping("/images/**")
+	public void serveImage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String prefix = request.getContextPath() + "/images/";
+		if (!request.getRequestURI().startsWith(prefix)) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		String relativePath = request.getRequestURI().substring(prefix.length());
+
+		// ファイルを特定（ディレクトリの外・存在しないファイルは 404）
+		Path file;
+		BasicFileAttributes attributes;
+		try {
+			file = localImageService.resolve("/images/" + relativePath);
+			attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (IllegalArgumentException | NoSuchFileException e) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		if (!attributes.isRegularFile()) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		long length = attributes.size();
+		// HTTP の日付は秒単位
+		long lastModified = attributes.lastModifiedTime().toMillis() / 1000 * 1000;
+		boolean immutable = LocalImageService.isContentAddressed(relativePath) || request.getParameter("v") != null;
+		// 内容アドレスの画像はファイル名が内容を表す。それ以外はサイズと更新日時から作る
+		String etag = LocalImageService.isContentAddressed(relativePath)
+				? "\"" + file.getFileName() + "\""
+				: "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+		// キャッシュ関連のヘッダ（304 にも付ける）
+		response.setHeader(HttpHeaders.CACHE_CONTROL, immutable
+				? "public, max-age=" + immutableMaxAge + ", immutable"
+				: "public, max-age=" + defaultMaxAge);
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+		// If-None-Match / If-Modified-Since を判定し、変わっていなければ 304（ETag・Last-Modified もここで設定される）
+		if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+			return;
+		}
+
+		response.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+				.orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+		// Range（If-Range が一致しない場合は全体を返す）
+		long start = 0;
+		long end = length - 1;
+		String range = request.getHeader(HttpHeaders.RANGE);
+		if (range != null && length > 0 && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+			List<HttpRange> ranges;
+			try {
+				ranges = HttpRange.parseRanges(range);
+			} catch (IllegalArgumentException e) {
+				// 解釈できない Range（未知の単位・構文誤り）は無視して全体を返す（RFC 9110 14.2）
+				ranges = List.of();
+			}
+			// 複数範囲は全体を返す（単一範囲のみ対応）。416 は解釈できたが満たせない範囲のみ
+			if (ranges.size() == 1) {
+				HttpRange requested = ranges.get(0);
+				start = requested.getRangeStart(length);
+				end = requested.getRangeEnd(length);
+				if (start >= length || start > end) {
+					response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+					response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+					return;
+				}
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+			}
+		}
+		long count = end - start + 1;
+		response.setContentLengthLong(count);
+
+		if ("HEAD".equals(request.getMethod()) || count == 0) {
+			return;
+		}
+
+		// sendfile が使えれば、本文の送信はサーブレットから戻った後に Tomcat がカーネル経由で行う
+		if (count >= sendfileMinSize && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+			request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+			request.setAttribute(SENDFILE_START, start);
+			request.setAttribute(SENDFILE_END, end + 1);
+			return;
+		}
+
+		// sendfile が使えない場合（TLS 終端など）はファイルチャネルから直接書き出す
+		try (FileChannel channel = FileChannel.open(file)) {
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			long position = start;
+			long remaining = count;
+			while (remaining > 0) {
+				long sent = channel.transferTo(position, remaining, out);
+				if (sent <= 0) {
+					break;
+				}
+				position += sent;
+				remaining -= sent;
+			}
+		}
+	}
+
+	// If-Range が無いか、ETag / 更新日時が一致すれば true（Range を適用する）
+	private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			// If-Range は強い比較
+			return ifRange.equals(etag);
+		}
+		try {
+			return ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()
+					.toEpochMilli() == lastModified;
+		} catch (DateTimeParseException e) {
+			return false;
+		}
+	}
+}
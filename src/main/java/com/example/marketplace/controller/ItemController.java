@@ -6,8 +6,7 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,15 +17,18 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.example.marketplace.dto.ItemCard;
 import com.example.marketplace.entity.Category;
+import com.example.marketplace.entity.Chat;
 import com.example.marketplace.entity.Item;
 import com.example.marketplace.entity.User;
+import com.example.marketplace.security.CurrentUser;
 import com.example.marketplace.service.CategoryService;
 import com.example.marketplace.service.ChatService;
 import com.example.marketplace.service.FavoriteService;
 import com.example.marketplace.service.ItemService;
+import com.example.marketplace.service.KeysetCursor;
 import com.example.marketplace.service.ReviewService;
-import com.example.marketplace.service.UserService;
 
 // 商品一覧・詳細・登録・編集・削除・お気に入りなど、商品に関する画面制御を行うコントローラ
 @Controller
@@ -38,8 +40,6 @@ public class ItemController {
 	private final ItemService itemService;
 	// カテゴリ情報を扱うサービス
 	private final CategoryService categoryService;
-	// ユーザー情報を扱うサービス
-	private final UserService userService;
 	// 商品ごとのチャットメッセージを扱うサービス
 	private final ChatService chatService;
 	// お気に入り機能を扱うサービス
@@ -51,7 +51,6 @@ public class ItemController {
 	public ItemController(
 			ItemService itemService,
 			CategoryService categoryService,
-			UserService userService,
 			ChatService chatService,
 			FavoriteService favoriteService,
 			ReviewService reviewService) {
@@ -60,8 +59,6 @@ public class ItemController {
 		this.itemService = itemService;
 		// カテゴリサービスをフィールドへ設定
 		this.categoryService = categoryService;
-		// ユーザーサービスをフィールドへ設定
-		this.userService = userService;
 		// チャットサービスをフィールドへ設定
 		this.chatService = chatService;
 		// お気に入りサービスをフィールドへ設定
@@ -81,18 +78,34 @@ public class ItemController {
 			@RequestParam(value = "page", defaultValue = "0") int page,
 			// 1 ページあたりの件数、指定が無ければ 10 件
 			@RequestParam(value = "size", defaultValue = "10") int size,
+			// カーソルページング用の位置（パラメータがあればカーソル方式、空なら先頭から）
+			@RequestParam(value = "cursor", required = false) String cursor,
 			// 画面に値を渡すための Model
 			Model model) {
 
-		// 検索条件・ページ情報に基づき商品一覧（Page）を取得
-		Page<Item> items = itemService.searchItems(keyword, categoryId, page, size);
 		// カテゴリ一覧を取得（検索フォームのプルダウンなどに利用）
 		List<Category> categories = categoryService.getAllCategories();
+		// カテゴリ一覧を Model へ渡す
+		model.addAttribute("categories", categories);
+
+		// cursor パラメータ指定時は COUNT を伴わないカーソル方式で取得
+		if (cursor != null) {
+			Slice<ItemCard> items = itemService.searchItemsByCursor(keyword, categoryId, KeysetCursor.parse(cursor), size);
+			model.addAttribute("items", items);
+			model.addAttribute("cursorMode", true);
+			// 続きがある場合は末尾の商品から次カーソルを生成
+			if (items.hasNext()) {
+				ItemCard last = items.getContent().get(items.getNumberOfElements() - 1);
+				model.addAttribute("nextCursor", KeysetCursor.of(last.getCreatedAt(), last.getId()).toString());
+			}
+			return "item_list";
+		}
+
+		// 検索条件・ページ情報に基づき商品カード一覧（Page）を取得
+		Page<ItemCard> items = itemService.searchItems(keyword, categoryId, page, size);
 
 		// 取得した商品情報を Model へ渡す
 		model.addAttribute("items", items);
-		// カテゴリ一覧を Model へ渡す
-		model.addAttribute("categories", categories);
 
 		// 商品一覧画面のテンプレート名を返却
 		return "item_list";
@@ -104,7 +117,9 @@ public class ItemController {
 			// パスパラメータから商品 ID を取得
 			@PathVariable("id") Long id,
 			// ログインユーザー情報（未ログインの場合は null になり得る）
-			@AuthenticationPrincipal UserDetails userDetails,
+			@CurrentUser User currentUser,
+			// 古いチャット履歴を読み込む場合のカーソル（任意）
+			@RequestParam(value = "chatBefore", required = false) String chatBefore,
 			// 画面に値を渡すための Model
 			Model model) {
 
@@ -117,8 +132,11 @@ public class ItemController {
 
 		// 取得した商品を Model に格納
 		model.addAttribute("item", item.get());
-		// 対象商品のチャットメッセージ一覧を Model に格納
-		model.addAttribute("chats", chatService.getChatMessagesByItem(id));
+		// 対象商品のチャットのうち最新 N 件（カーソル指定時はそれより古い N 件）を Model に格納
+		Slice<Chat> chats = chatService.getChatHistory(id, KeysetCursor.parse(chatBefore));
+		model.addAttribute("chats", chats.getContent());
+		// さらに古いメッセージがある場合の読み込み用カーソル
+		model.addAttribute("olderChatCursor", chatService.olderCursor(chats));
 
 		// 出品者の平均評価を取得して、存在する場合のみ Model へ設定
 		reviewService.getAverageRatingForSeller(item.get().getSeller())
@@ -126,13 +144,11 @@ public class ItemController {
 				.ifPresent(avg -> model.addAttribute("sellerAverageRating", String.format("%.1f", avg)));
 
 		// ログインユーザーがいる場合のみ、お気に入りフラグを判定
-		if (userDetails != null) {
-			// ログインユーザーの User エンティティを取得
-			User currentUser = userService.getUserByEmail(userDetails.getUsername())
-					.orElseThrow(() -> new RuntimeException("User not found"));
-
+		if (currentUser != null) {
 			// 現在のユーザーがこの商品をお気に入り登録済みかどうかを判定し Model に渡す
 			model.addAttribute("isFavorited", favoriteService.isFavorited(currentUser, id));
+			// チャットのリアルタイム表示で自分の発言を判別するため、ユーザー ID を Model に渡す
+			model.addAttribute("currentUserId", currentUser.getId());
 		}
 
 		// 商品詳細画面テンプレートを返却
@@ -154,7 +170,7 @@ public class ItemController {
 	@PostMapping
 	public String addItem(
 			// ログイン中のユーザー（出品者）情報
-			@AuthenticationPrincipal UserDetails userDetails,
+			@CurrentUser User seller,
 			// 商品名
 			@RequestParam("name") String name,
 			// 商品説明
@@ -168,10 +184,6 @@ public class ItemController {
 			// リダイレクト先へメッセージを渡すためのオブジェクト
 			RedirectAttributes redirectAttributes) {
 
-		// ログインユーザーから出品者情報を取得。見つからない場合は例外
-		User seller = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("Seller not found"));
-
 		// カテゴリ ID から Category を取得。存在しなければ不正として例外
 		Category category = categoryService.getCategoryById(categoryId)
 				.orElseThrow(() -> new IllegalArgumentException("Category not found"));
@@ -229,7 +241,7 @@ public class ItemController {
 			// 編集対象の商品 ID
 			@PathVariable("id") Long id,
 			// ログイン中のユーザー
-			@AuthenticationPrincipal UserDetails userDetails,
+			@CurrentUser User currentUser,
 			// 更新後の商品名
 			@RequestParam("name") String name,
 			// 更新後の商品説明
@@ -247,10 +259,6 @@ public class ItemController {
 		Item existingItem = itemService.getItemById(id)
 				.orElseThrow(() -> new RuntimeException("Item not found"));
 
-		// ログイン中のユーザーを取得
-		User currentUser = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
-
 		// 編集対象商品の出品者 ID とログインユーザーID を比較し、一致しなければ編集不可
 		if (!existingItem.getSeller().getId().equals(currentUser.getId())) {
 			// 出品者以外が編集しようとした場合はエラーメッセージを表示
@@ -290,7 +298,7 @@ public class ItemController {
 			// 削除対象の商品 ID
 			@PathVariable("id") Long id,
 			// ログイン中のユーザー
-			@AuthenticationPrincipal UserDetails userDetails,
+			@CurrentUser User currentUser,
 			// メッセージ用の RedirectAttributes
 			RedirectAttributes redirectAttributes) {
 
@@ -298,10 +306,6 @@ public class ItemController {
 		Item itemToDelete = itemService.getItemById(id)
 				.orElseThrow(() -> new RuntimeException("Item not found"));
 
-		// ログイン中のユーザーを取得
-		User currentUser = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
-
 		// 商品の出品者とログインユーザーが一致しなければ削除させない
 		if (!itemToDelete.getSeller().getId().equals(currentUser.getId())) {
 			// Only seller can delete their item
@@ -325,14 +329,10 @@ public class ItemController {
 			// 対象商品 ID
 			@PathVariable("id") Long itemId,
 			// ログインユーザー
-			@AuthenticationPrincipal UserDetails userDetails,
+			@CurrentUser User currentUser,
 			// メッセージ用の RedirectAttributes
 			RedirectAttributes redirectAttributes) {
 
-		// ログインユーザーの User エンティティを取得
-		User currentUser = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
-
 		try {
 			// お気に入り追加処理を実行
 			favoriteService.addFavorite(currentUser, itemId);
@@ -353,14 +353,10 @@ public class ItemController {
 			// 対象商品 ID
 			@PathVariable("id") Long itemId,
 			// ログインユーザー
-			@AuthenticationPrincipal UserDetails userDetails,
+			@CurrentUser User currentUser,
 			// メッセージ用の RedirectAttributes
 			RedirectAttributes redirectAttributes) {
 
-		// ログインユーザーを取得
-		User currentUser = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
-
 		try {
 			// お気に入り解除処理を実行
 			favoriteService.removeFavorite(currentUser, itemId);
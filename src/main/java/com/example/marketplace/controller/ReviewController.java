@@ -1,7 +1,5 @@
 package com.example.marketplace.controller;
 
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,9 +11,9 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.example.marketplace.entity.AppOrder;
 import com.example.marketplace.entity.User;
+import com.example.marketplace.security.CurrentUser;
 import com.example.marketplace.service.AppOrderService;
 import com.example.marketplace.service.ReviewService;
-import com.example.marketplace.service.UserService;
 
 // このクラスが画面遷移用のコントローラであることを表すアノテーション
 @Controller
@@ -27,21 +25,16 @@ public class ReviewController {
 	private final ReviewService reviewService;
 	// 注文情報を取得するサービス（どの注文に対する評価かを判断するために使用）
 	private final AppOrderService appOrderService;
-	// ユーザー情報を取得するサービス（評価者情報を取得するために使用）
-	private final UserService userService;
 
 	// コンストラクタインジェクションで必要なサービスを受け取る
 	public ReviewController(
 			ReviewService reviewService,
-			AppOrderService appOrderService,
-			UserService userService) {
+			AppOrderService appOrderService) {
 
 		// 評価サービスをフィールドに設定
 		this.reviewService = reviewService;
 		// 注文サービスをフィールドに設定
 		this.appOrderService = appOrderService;
-		// ユーザーサービスをフィールドに設定
-		this.userService = userService;
 	}
 
 	// 新規レビュー入力フォームを表示するためのハンドラ（GET /reviews/new/{orderId}）
@@ -62,7 +55,7 @@ public class ReviewController {
 	@PostMapping
 	public String submitReview(
 			// ログイン中のユーザー情報（評価者）を Spring Security から取得
-			@AuthenticationPrincipal UserDetails userDetails,
+			@CurrentUser User reviewer,
 			// 対象となる注文 ID をフォームから受け取る
 			@RequestParam("orderId") Long orderId,
 			// 評価点（例：1〜5）をフォームから受け取る
@@ -72,10 +65,6 @@ public class ReviewController {
 			// リダイレクト先へ一度だけ渡すメッセージ用
 			RedirectAttributes redirectAttributes) {
 
-		// ログインユーザーのメールアドレスから User エンティティを取得
-		User reviewer = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
-
 		try {
 			// 評価サービスを使ってレビューを登録する
 			//（注文 ID・評価者・点数・コメントを渡す）
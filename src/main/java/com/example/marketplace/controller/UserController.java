@@ -1,18 +1,20 @@
 package com.example.marketplace.controller;
 
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import com.example.marketplace.entity.AppOrder;
 import com.example.marketplace.entity.User;
+import com.example.marketplace.security.CurrentUser;
 import com.example.marketplace.service.AppOrderService;
 import com.example.marketplace.service.FavoriteService;
 import com.example.marketplace.service.ItemService;
+import com.example.marketplace.service.KeysetCursor;
 import com.example.marketplace.service.ReviewService;
-import com.example.marketplace.service.UserService;
 
 // 画面遷移用の Controller クラスであることを示す
 @Controller
@@ -20,8 +22,6 @@ import com.example.marketplace.service.UserService;
 @RequestMapping("/my-page")
 public class UserController {
 
-	// User 情報関連のビジネスロジックを扱うサービス
-	private final UserService userService;
 	// 出品商品情報取得用サービス
 	private final ItemService itemService;
 	// 注文情報取得用サービス
@@ -33,14 +33,11 @@ public class UserController {
 
 	// コンストラクタインジェクションにより依存サービスを受け取る
 	public UserController(
-			UserService userService,
 			ItemService itemService,
 			AppOrderService appOrderService,
 			FavoriteService favoriteService,
 			ReviewService reviewService) {
 
-		// UserService の設定
-		this.userService = userService;
 		// ItemService の設定
 		this.itemService = itemService;
 		// AppOrderService の設定
@@ -53,13 +50,12 @@ public class UserController {
 
 	// マイページ表示（GET /my-page）
 	@GetMapping
-	public String myPage(@AuthenticationPrincipal UserDetails userDetails, Model model) {
-		// ログイン中ユーザーをメールアドレスから取得、存在しない場合は例外
-		User currentUser = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
+	public String myPage(@CurrentUser User currentUser, Model model) {
 
 		// View で利用できるよう Model にログインユーザー情報を追加
 		model.addAttribute("user", currentUser);
+		// 出品者としての評価集計を Model に追加
+		model.addAttribute("ratingSummary", reviewService.getRatingSummary(currentUser.getId()));
 
 		// my_page.html へ遷移
 		return "my_page";
@@ -67,10 +63,7 @@ public class UserController {
 
 	// 出品一覧（GET /my-page/selling）
 	@GetMapping("/selling")
-	public String mySellingItems(@AuthenticationPrincipal UserDetails userDetails, Model model) {
-		// ログインユーザー取得
-		User currentUser = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
+	public String mySellingItems(@CurrentUser User currentUser, Model model) {
 
 		// ログインユーザーが出品している商品一覧を Model に追加
 		model.addAttribute("sellingItems", itemService.getItemsBySeller(currentUser));
@@ -81,13 +74,22 @@ public class UserController {
 
 	// 購入履歴（GET /my-page/orders）
 	@GetMapping("/orders")
-	public String myOrders(@AuthenticationPrincipal UserDetails userDetails, Model model) {
-		// ログインユーザー取得
-		User currentUser = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
-
-		// ユーザーが購入した注文履歴を取得し Model へ追加
-		model.addAttribute("myOrders", appOrderService.getOrdersByBuyer(currentUser));
+	public String myOrders(@CurrentUser User currentUser,
+			// ステータスでの絞り込み（任意、未指定なら全件）
+			@RequestParam(value = "status", required = false) String status,
+			// カーソルページング用の位置（未指定なら先頭から）
+			@RequestParam(value = "cursor", required = false) String cursor,
+			// 1 ページあたりの件数、指定が無ければ 20 件
+			@RequestParam(value = "size", defaultValue = "20") int size,
+			Model model) {
+
+		// ユーザーが購入した注文履歴を 1 ページ分取得し Model へ追加
+		Slice<AppOrder> orders = appOrderService.getBuyerHistory(currentUser, status, KeysetCursor.parse(cursor),
+				pageSize(size));
+		model.addAttribute("myOrders", orders.getContent());
+		// 絞り込み条件と次ページ用カーソル
+		model.addAttribute("statuses", AppOrderService.ORDER_STATUSES);
+		model.addAttribute("nextCursor", appOrderService.nextHistoryCursor(orders));
 
 		// buyer_app_orders.html へ遷移
 		return "buyer_app_orders";
@@ -95,13 +97,22 @@ public class UserController {
 
 	// 販売履歴（GET /my-page/sales）
 	@GetMapping("/sales")
-	public String mySales(@AuthenticationPrincipal UserDetails userDetails, Model model) {
-		// ログインユーザー取得
-		User currentUser = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
-
-		// ユーザーが販売者として売った商品の注文一覧を Model へ追加
-		model.addAttribute("mySales", appOrderService.getOrdersBySeller(currentUser));
+	public String mySales(@CurrentUser User currentUser,
+			// ステータスでの絞り込み（任意、未指定なら全件）
+			@RequestParam(value = "status", required = false) String status,
+			// カーソルページング用の位置（未指定なら先頭から）
+			@RequestParam(value = "cursor", required = false) String cursor,
+			// 1 ページあたりの件数、指定が無ければ 20 件
+			@RequestParam(value = "size", defaultValue = "20") int size,
+			Model model) {
+
+		// ユーザーが販売者として売った商品の注文を 1 ページ分取得し Model へ追加
+		Slice<AppOrder> sales = appOrderService.getSellerHistory(currentUser, status, KeysetCursor.parse(cursor),
+				pageSize(size));
+		model.addAttribute("mySales", sales.getContent());
+		// 絞り込み条件と次ページ用カーソル
+		model.addAttribute("statuses", AppOrderService.ORDER_STATUSES);
+		model.addAttribute("nextCursor", appOrderService.nextHistoryCursor(sales));
 
 		// seller_app_orders.html へ遷移
 		return "seller_app_orders";
@@ -109,10 +120,7 @@ public class UserController {
 
 	// お気に入り一覧（GET /my-page/favorites）
 	@GetMapping("/favorites")
-	public String myFavorites(@AuthenticationPrincipal UserDetails userDetails, Model model) {
-		// ログインユーザー取得
-		User currentUser = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
+	public String myFavorites(@CurrentUser User currentUser, Model model) {
 
 		// お気に入り商品一覧を Model に追加
 		model.addAttribute("favoriteItems", favoriteService.getFavoriteItemsByUser(currentUser));
@@ -123,10 +131,7 @@ public class UserController {
 
 	// 自分が投稿したレビュー一覧（GET /my-page/reviews）
 	@GetMapping("/reviews")
-	public String myReviews(@AuthenticationPrincipal UserDetails userDetails, Model model) {
-		// ログインユーザー取得
-		User currentUser = userService.getUserByEmail(userDetails.getUsername())
-				.orElseThrow(() -> new RuntimeException("User not found"));
+	public String myReviews(@CurrentUser User currentUser, Model model) {
 
 		// 自分が投稿したレビュー一覧を Model へ格納
 		model.addAttribute("reviews", reviewService.getReviewsByReviewer(currentUser));
@@ -134,4 +139,9 @@ public class UserController {
 		// user_reviews.html へ遷移
 		return "user_reviews";
 	}
+
+	// 1 ページあたりの件数を 1〜100 件に制限
+	private static int pageSize(int size) {
+		return Math.max(1, Math.min(size, 100));
+	}
 }
@@ -0,0 +1,11 @@
+package com.example.marketplace.dto;
+
+/**
+ * アップロード画像の保存結果（用途別の画像URL）
+ *
+ * @param originalUrl  元画像の URL
+ * @param detailUrl    詳細画面用の縮小画像の URL
+ * @param thumbnailUrl 一覧カード用のサムネイル画像の URL
+ */
+public record ImageRenditions(String originalUrl, String detailUrl, String thumbnailUrl) {
+}
@@ -0,0 +1,97 @@
+package com.example.marketplace.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 商品一覧カード表示用の読み取りモデル
+ * 一覧画面に必要な列だけを 1 クエリで取得するため、Item エンティティの代わりに使用する
+ * （出品者・カテゴリの関連エンティティや説明文は読み込まない）
+ */
+public class ItemCard {
+
+	/**
+	 * 商品ID
+	 */
+	private final Long id;
+
+	/**
+	 * 商品名
+	 */
+	private final String name;
+
+	/**
+	 * 価格
+	 */
+	private final BigDecimal price;
+
+	/**
+	 * 一覧表示用の画像URL
+	 */
+	private final String thumbnailUrl;
+
+	/**
+	 * 出品者の表示名
+	 */
+	private final String sellerName;
+
+	/**
+	 * カテゴリ名（未分類の場合は null）
+	 */
+	private final String categoryName;
+
+	/**
+	 * 商品ステータス（出品中 / 売却済）
+	 */
+	private final String status;
+
+	/**
+	 * 登録日時（カーソルページングの位置決めに使用）
+	 */
+	private final LocalDateTime createdAt;
+
+	// JPQL のコンストラクタ式から生成される
+	public ItemCard(Long id, String name, BigDecimal price, String thumbnailUrl, String sellerName,
+			String categoryName, String status, LocalDateTime createdAt) {
+		this.id = id;
+		this.name = name;
+		this.price = price;
+		this.thumbnailUrl = thumbnailUrl;
+		this.sellerName = sellerName;
+		this.categoryName = categoryName;
+		this.status = status;
+		this.createdAt = createdAt;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public BigDecimal getPrice() {
+		return price;
+	}
+
+	public String getThumbnailUrl() {
+		return thumbnailUrl;
+	}
+
+	public String getSellerName() {
+		return sellerName;
+	}
+
+	public String getCategoryName() {
+		return categoryName;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+}
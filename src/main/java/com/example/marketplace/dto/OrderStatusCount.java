@@ -0,0 +1,23 @@
+package com.example.marketplace.dto;
+
+/**
+ * ステータス別の注文件数（統計画面用）
+ */
+public class OrderStatusCount {
+
+	private final String status;
+	private final long count;
+
+	public OrderStatusCount(String status, long count) {
+		this.status = status;
+		this.count = count;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public long getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,11 @@
+package com.example.marketplace.dto;
+
+/**
+ * 購入開始の結果（決済確認画面へ渡す値）
+ * 冪等キーの記録に保存され、同じキーでの再送時にそのまま返される
+ *
+ * @param clientSecret Stripe PaymentIntent のクライアントシークレット
+ * @param itemId       購入対象の商品ID
+ */
+public record PaymentStart(String clientSecret, Long itemId) {
+}
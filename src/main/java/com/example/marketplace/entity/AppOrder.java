@@ -37,6 +37,12 @@ public class AppOrder {
 	@JoinColumn(name = "buyer_id", nullable = false)
 	private User buyer;
 
+	/**
+	 * 出品者 ID（商品の出品者の複製。販売履歴を商品テーブルを経由せず出品者ごとに新しい順で引くため）
+	 */
+	@Column(name = "seller_id", nullable = false)
+	private Long sellerId;
+
 	/**
 	 * 購入価格
 	 */
@@ -62,6 +68,12 @@ public class AppOrder {
 	@Column(name = "payment_intent_id", length = 128, unique = true)
 	private String paymentIntentId;
 
+	/**
+	 * 決済待ち注文の照合処理の確保期限（期限内は他ノードの照合処理が取得しない）
+	 */
+	@Column(name = "reconcile_after")
+	private LocalDateTime reconcileAfter;
+
 	public AppOrder() {
 	}
 
@@ -100,6 +112,14 @@ public class AppOrder {
 		this.buyer = buyer;
 	}
 
+	public Long getSellerId() {
+		return sellerId;
+	}
+
+	public void setSellerId(Long sellerId) {
+		this.sellerId = sellerId;
+	}
+
 	public BigDecimal getPrice() {
 		return price;
 	}
@@ -131,4 +151,12 @@ public class AppOrder {
 	public void setPaymentIntentId(String paymentIntentId) {
 		this.paymentIntentId = paymentIntentId;
 	}
+
+	public LocalDateTime getReconcileAfter() {
+		return reconcileAfter;
+	}
+
+	public void setReconcileAfter(LocalDateTime reconcileAfter) {
+		this.reconcileAfter = reconcileAfter;
+	}
 }
@@ -0,0 +1,83 @@
+package com.example.marketplace.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * 変更記録（change_feed）
+ * ノードごとのメモリ上のキャッシュ・インデックスを他ノードの変更に追従させるため、
+ * 変更したトランザクションで「何が（topic）・どれが（entityId）」変わったかを登録する
+ * 各ノードは ChangeFeedService で定期的に直近の記録を読み、購読者へ通知する
+ */
+@Entity
+@Table(name = "change_feed")
+public class ChangeFeedEntry {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	/**
+	 * 変更の種類（user / item / category など）
+	 */
+	@Column(nullable = false, length = 50)
+	private String topic;
+
+	/**
+	 * 変更された対象の ID
+	 */
+	@Column(name = "entity_id", nullable = false)
+	private Long entityId;
+
+	/**
+	 * 登録日時
+	 */
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt = LocalDateTime.now();
+
+	public ChangeFeedEntry() {
+	}
+
+	public ChangeFeedEntry(String topic, Long entityId) {
+		this.topic = topic;
+		this.entityId = entityId;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getTopic() {
+		return topic;
+	}
+
+	public void setTopic(String topic) {
+		this.topic = topic;
+	}
+
+	public Long getEntityId() {
+		return entityId;
+	}
+
+	public void setEntityId(Long entityId) {
+		this.entityId = entityId;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+}
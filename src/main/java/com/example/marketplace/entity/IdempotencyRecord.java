@@ -0,0 +1,107 @@
+package com.example.marketplace.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * 冪等キーの記録（idempotency_record）
+ * 同じキーで再送された POST には、処理をやり直さず保存済みの結果を返す
+ */
+@Entity
+@Table(name = "idempotency_record")
+public class IdempotencyRecord {
+
+	// 処理中
+	public static final String STATUS_IN_PROGRESS = "IN_PROGRESS";
+	// 処理完了（response に結果を保持）
+	public static final String STATUS_COMPLETED = "COMPLETED";
+
+	/**
+	 * 用途:ユーザーID:キー
+	 */
+	@Id
+	@Column(length = 255)
+	private String id;
+
+	/**
+	 * リクエスト内容の要約（同じキーが別の内容で使われた場合の検出用）
+	 */
+	@Column(name = "request_fingerprint", nullable = false, length = 255)
+	private String requestFingerprint;
+
+	/**
+	 * 状態（IN_PROGRESS / COMPLETED）
+	 */
+	@Column(nullable = false, length = 20)
+	private String status = STATUS_IN_PROGRESS;
+
+	/**
+	 * 処理結果（JSON）
+	 */
+	@Column(columnDefinition = "TEXT")
+	private String response;
+
+	/**
+	 * 作成日時
+	 */
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt = LocalDateTime.now();
+
+	/**
+	 * 有効期限（期限後は同じキーでも新しいリクエストとして扱う）
+	 */
+	@Column(name = "expires_at", nullable = false)
+	private LocalDateTime expiresAt;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getRequestFingerprint() {
+		return requestFingerprint;
+	}
+
+	public void setRequestFingerprint(String requestFingerprint) {
+		this.requestFingerprint = requestFingerprint;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public String getResponse() {
+		return response;
+	}
+
+	public void setResponse(String response) {
+		this.response = response;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public LocalDateTime getExpiresAt() {
+		return expiresAt;
+	}
+
+	public void setExpiresAt(LocalDateTime expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+}
@@ -0,0 +1,89 @@
+package com.example.marketplace.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * ローカル保存画像の実体（image_blob）
+ * 内容の SHA-256 ごとに 1 件。同じ画像を使う商品の数を参照数として持ち、
+ * 参照数 0 のまま猶予期間を過ぎた画像はバックグラウンドで削除される
+ */
+@Entity
+@Table(name = "image_blob")
+public class ImageBlob {
+
+	/**
+	 * 内容の SHA-256（16 進小文字）
+	 */
+	@Id
+	@Column(length = 64)
+	private String sha256;
+
+	/**
+	 * 元画像の公開 URL（/images/ab/cd/SHA-256.拡張子）
+	 */
+	@Column(nullable = false, columnDefinition = "TEXT")
+	private String url;
+
+	/**
+	 * 参照している商品の数
+	 */
+	@Column(name = "ref_count", nullable = false)
+	private int refCount;
+
+	/**
+	 * 作成日時
+	 */
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt = LocalDateTime.now();
+
+	/**
+	 * 参照数の最終更新日時（削除・再集計の猶予期間の起点）
+	 */
+	@Column(name = "updated_at", nullable = false)
+	private LocalDateTime updatedAt = LocalDateTime.now();
+
+	public String getSha256() {
+		return sha256;
+	}
+
+	public void setSha256(String sha256) {
+		this.sha256 = sha256;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	public int getRefCount() {
+		return refCount;
+	}
+
+	public void setRefCount(int refCount) {
+		this.refCount = refCount;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public LocalDateTime getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(LocalDateTime updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+}
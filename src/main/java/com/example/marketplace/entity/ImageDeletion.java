@@ -0,0 +1,128 @@
+package com.example.marketplace.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * 画像削除の待ちキュー（image_deletion）
+ * 外部の画像ホスト（Cloudinary）上の画像の削除をバックグラウンドで行い、失敗時は再試行する
+ * 削除に成功した行はキューから取り除く
+ */
+@Entity
+@Table(name = "image_deletion")
+public class ImageDeletion {
+
+	// 削除待ち
+	public static final String STATUS_PENDING = "PENDING";
+	// 削除断念（デッドレター）
+	public static final String STATUS_DEAD = "DEAD";
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	/**
+	 * 削除する画像の URL
+	 */
+	@Column(name = "image_url", nullable = false, columnDefinition = "TEXT")
+	private String imageUrl;
+
+	/**
+	 * 状態（PENDING / DEAD）
+	 */
+	@Column(nullable = false, length = 20)
+	private String status = STATUS_PENDING;
+
+	/**
+	 * 削除試行回数
+	 */
+	@Column(nullable = false)
+	private int attempts;
+
+	/**
+	 * 次回の削除可能日時（処理中は処理確保期限として使う）
+	 */
+	@Column(name = "next_attempt_at", nullable = false)
+	private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+	/**
+	 * 直近の失敗理由
+	 */
+	@Column(name = "last_error", columnDefinition = "TEXT")
+	private String lastError;
+
+	/**
+	 * 登録日時
+	 */
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt = LocalDateTime.now();
+
+	public ImageDeletion() {
+	}
+
+	public ImageDeletion(String imageUrl) {
+		this.imageUrl = imageUrl;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getImageUrl() {
+		return imageUrl;
+	}
+
+	public void setImageUrl(String imageUrl) {
+		this.imageUrl = imageUrl;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	public LocalDateTime getNextAttemptAt() {
+		return nextAttemptAt;
+	}
+
+	public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+		this.nextAttemptAt = nextAttemptAt;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+}
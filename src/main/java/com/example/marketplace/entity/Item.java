@@ -11,14 +11,27 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+import org.hibernate.annotations.DynamicUpdate;
 
 /**
  * 出品商品（item）
+ * 画像の URL はバックグラウンドのアップロード完了時に個別に更新されるため、
+ * 更新時は変更した列だけを書き込む（読み込み後に更新された画像 URL を古い値で上書きしない）
  */
 @Entity
 @Table(name = "item")
+@DynamicUpdate
 public class Item {
 
+	// 画像のアップロード中（URL は未設定、または差し替え前の画像）
+	public static final String IMAGE_PENDING = "PENDING";
+	// 画像のアップロード完了
+	public static final String IMAGE_READY = "READY";
+	// 画像のアップロード失敗
+	public static final String IMAGE_FAILED = "FAILED";
+
 	/**
 	 * 商品ID
 	 */
@@ -65,17 +78,60 @@ public class Item {
 	private String status = "出品中";
 
 	/**
-	 * 画像URL
+	 * 画像URL（アップロードされた元画像）
 	 */
 	@Column(name = "image_url")
 	private String imageUrl;
 
+	/**
+	 * 詳細画面用の縮小画像URL（未生成の場合は null。元画像で代替）
+	 */
+	@Column(name = "detail_url")
+	private String detailUrl;
+
+	/**
+	 * 一覧カード用のサムネイル画像URL（未生成の場合は null。元画像で代替）
+	 */
+	@Column(name = "thumbnail_url")
+	private String thumbnailUrl;
+
+	/**
+	 * 画像の状態（PENDING / READY / FAILED。画像を添付していない商品は null）
+	 */
+	@Column(name = "image_status", length = 20)
+	private String imageStatus;
+
+	/**
+	 * 画像のアップロードを開始した日時（PENDING のまま一定時間を過ぎたら FAILED にする）
+	 */
+	@Column(name = "image_pending_since")
+	private LocalDateTime imagePendingSince;
+
 	/**
 	 * 登録日時
 	 */
 	@Column(name = "created_at", nullable = false)
 	private LocalDateTime createdAt = LocalDateTime.now();
 
+	/**
+	 * 楽観ロック用のバージョン（同時購入・同時編集の検出に使用）
+	 */
+	@Version
+	@Column(nullable = false)
+	private Long version;
+
+	/**
+	 * 購入手続き中の買い手ID（決済完了または期限切れまで他の買い手は購入できない）
+	 */
+	@Column(name = "hold_buyer_id")
+	private Long holdBuyerId;
+
+	/**
+	 * 購入手続きの確保期限
+	 */
+	@Column(name = "hold_until")
+	private LocalDateTime holdUntil;
+
 	public Item() {
 	}
 
@@ -156,6 +212,38 @@ public class Item {
 		this.imageUrl = imageUrl;
 	}
 
+	public String getDetailUrl() {
+		return detailUrl;
+	}
+
+	public void setDetailUrl(String detailUrl) {
+		this.detailUrl = detailUrl;
+	}
+
+	public String getThumbnailUrl() {
+		return thumbnailUrl;
+	}
+
+	public void setThumbnailUrl(String thumbnailUrl) {
+		this.thumbnailUrl = thumbnailUrl;
+	}
+
+	public String getImageStatus() {
+		return imageStatus;
+	}
+
+	public void setImageStatus(String imageStatus) {
+		this.imageStatus = imageStatus;
+	}
+
+	public LocalDateTime getImagePendingSince() {
+		return imagePendingSince;
+	}
+
+	public void setImagePendingSince(LocalDateTime imagePendingSince) {
+		this.imagePendingSince = imagePendingSince;
+	}
+
 	public LocalDateTime getCreatedAt() {
 		return createdAt;
 	}
@@ -163,4 +251,40 @@ public class Item {
 	public void setCreatedAt(LocalDateTime createdAt) {
 		this.createdAt = createdAt;
 	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
+	public Long getHoldBuyerId() {
+		return holdBuyerId;
+	}
+
+	public void setHoldBuyerId(Long holdBuyerId) {
+		this.holdBuyerId = holdBuyerId;
+	}
+
+	public LocalDateTime getHoldUntil() {
+		return holdUntil;
+	}
+
+	public void setHoldUntil(LocalDateTime holdUntil) {
+		this.holdUntil = holdUntil;
+	}
+
+	// 指定の買い手以外が期限内の購入手続きを確保しているか
+	public boolean isHeldByOther(Long buyerId, LocalDateTime now) {
+		return holdBuyerId != null && !holdBuyerId.equals(buyerId)
+				&& holdUntil != null && holdUntil.isAfter(now);
+	}
+
+	// 購入手続きの確保を解除
+	public void clearHold() {
+		this.holdBuyerId = null;
+		this.holdUntil = null;
+	}
 }
@@ -0,0 +1,180 @@
+package com.example.marketplace.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+
+/**
+ * LINE 通知の送信待ちキュー（notification_outbox）
+ * 業務処理と同じトランザクションで登録し、バックグラウンドで送信する
+ */
+@Entity
+@Table(name = "notification_outbox")
+public class NotificationOutbox {
+
+	// 送信待ち
+	public static final String STATUS_PENDING = "PENDING";
+	// 送信処理中（他ノードに取られないよう一定時間ロック）
+	public static final String STATUS_SENDING = "SENDING";
+	// 送信済み
+	public static final String STATUS_SENT = "SENT";
+	// リトライ上限到達などで送信を断念
+	public static final String STATUS_DEAD = "DEAD";
+
+	/**
+	 * 通知ID
+	 */
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	/**
+	 * 通知先ユーザー（送信時点の LINE トークンを使用）
+	 */
+	@ManyToOne
+	@JoinColumn(name = "recipient_user_id", nullable = false)
+	private User recipient;
+
+	/**
+	 * 通知本文
+	 */
+	@Column(columnDefinition = "TEXT", nullable = false)
+	private String message;
+
+	/**
+	 * 状態（PENDING / SENDING / SENT / DEAD）
+	 */
+	@Column(nullable = false, length = 20)
+	private String status = STATUS_PENDING;
+
+	/**
+	 * 送信試行回数
+	 */
+	@Column(nullable = false)
+	private int attempts;
+
+	/**
+	 * 次回送信可能日時（リトライ時は指数バックオフで後ろへずらす）
+	 */
+	@Column(name = "next_attempt_at", nullable = false)
+	private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+	/**
+	 * 送信処理中ロックの期限（期限切れなら再取得可能）
+	 */
+	@Column(name = "locked_until")
+	private LocalDateTime lockedUntil;
+
+	/**
+	 * 直近の失敗理由
+	 */
+	@Column(name = "last_error", columnDefinition = "TEXT")
+	private String lastError;
+
+	/**
+	 * 登録日時
+	 */
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt = LocalDateTime.now();
+
+	/**
+	 * 送信完了日時
+	 */
+	@Column(name = "sent_at")
+	private LocalDateTime sentAt;
+
+	public NotificationOutbox() {
+	}
+
+	public NotificationOutbox(User recipient, String message) {
+		this.recipient = recipient;
+		this.message = message;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public User getRecipient() {
+		return recipient;
+	}
+
+	public void setRecipient(User recipient) {
+		this.recipient = recipient;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	public LocalDateTime getNextAttemptAt() {
+		return nextAttemptAt;
+	}
+
+	public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+		this.nextAttemptAt = nextAttemptAt;
+	}
+
+	public LocalDateTime getLockedUntil() {
+		return lockedUntil;
+	}
+
+	public void setLockedUntil(LocalDateTime lockedUntil) {
+		this.lockedUntil = lockedUntil;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public LocalDateTime getSentAt() {
+		return sentAt;
+	}
+
+	public void setSentAt(LocalDateTime sentAt) {
+		this.sentAt = sentAt;
+	}
+}
@@ -0,0 +1,93 @@
+package com.example.marketplace.entity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * 日次売上集計（order_daily_stats）
+ * 注文の作成日 × ステータスごとの件数・金額合計。注文の作成・状態変更時に加減算される
+ */
+@Entity
+@Table(name = "order_daily_stats")
+@IdClass(OrderDailyStatsId.class)
+public class OrderDailyStats {
+
+	/**
+	 * 集計日（注文の作成日）
+	 */
+	@Id
+	@Column(name = "stat_date")
+	private LocalDate statDate;
+
+	/**
+	 * 注文ステータス
+	 */
+	@Id
+	@Column(length = 20)
+	private String status;
+
+	/**
+	 * 注文件数
+	 */
+	@Column(name = "order_count", nullable = false)
+	private long orderCount;
+
+	/**
+	 * 金額合計
+	 */
+	@Column(name = "total_price", nullable = false, precision = 14, scale = 2)
+	private BigDecimal totalPrice = BigDecimal.ZERO;
+
+	/**
+	 * 最終更新日時
+	 */
+	@Column(name = "updated_at", nullable = false)
+	private LocalDateTime updatedAt = LocalDateTime.now();
+
+	public LocalDate getStatDate() {
+		return statDate;
+	}
+
+	public void setStatDate(LocalDate statDate) {
+		this.statDate = statDate;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public long getOrderCount() {
+		return orderCount;
+	}
+
+	public void setOrderCount(long orderCount) {
+		this.orderCount = orderCount;
+	}
+
+	public BigDecimal getTotalPrice() {
+		return totalPrice;
+	}
+
+	public void setTotalPrice(BigDecimal totalPrice) {
+		this.totalPrice = totalPrice;
+	}
+
+	public LocalDateTime getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(LocalDateTime updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+}
@@ -0,0 +1,49 @@
+package com.example.marketplace.entity;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * 日次売上集計（order_daily_stats）の複合主キー（日付 × ステータス）
+ */
+public class OrderDailyStatsId implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private LocalDate statDate;
+
+	private String status;
+
+	public OrderDailyStatsId() {
+	}
+
+	public OrderDailyStatsId(LocalDate statDate, String status) {
+		this.statDate = statDate;
+		this.status = status;
+	}
+
+	public LocalDate getStatDate() {
+		return statDate;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof OrderDailyStatsId other)) {
+			return false;
+		}
+		return Objects.equals(statDate, other.statDate) && Objects.equals(status, other.status);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(statDate, status);
+	}
+}
@@ -0,0 +1,162 @@
+package com.example.marketplace.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * 出品者ごとの評価集計（seller_rating）
+ * レビュー投稿時に加算更新され、平均評価・星別件数を 1 行で参照できる
+ */
+@Entity
+@Table(name = "seller_rating")
+public class SellerRating {
+
+	/**
+	 * 出品者ID（users.id）
+	 */
+	@Id
+	@Column(name = "seller_id")
+	private Long sellerId;
+
+	/**
+	 * レビュー件数
+	 */
+	@Column(name = "review_count", nullable = false)
+	private long reviewCount;
+
+	/**
+	 * 評価点の合計
+	 */
+	@Column(name = "rating_sum", nullable = false)
+	private long ratingSum;
+
+	/**
+	 * 星 1〜5 の件数
+	 */
+	@Column(name = "star1_count", nullable = false)
+	private long star1Count;
+
+	@Column(name = "star2_count", nullable = false)
+	private long star2Count;
+
+	@Column(name = "star3_count", nullable = false)
+	private long star3Count;
+
+	@Column(name = "star4_count", nullable = false)
+	private long star4Count;
+
+	@Column(name = "star5_count", nullable = false)
+	private long star5Count;
+
+	/**
+	 * 最終更新日時
+	 */
+	@Column(name = "updated_at", nullable = false)
+	private LocalDateTime updatedAt = LocalDateTime.now();
+
+	public SellerRating() {
+	}
+
+	public SellerRating(Long sellerId) {
+		this.sellerId = sellerId;
+	}
+
+	/**
+	 * 平均評価（レビューが無い場合は 0）
+	 */
+	public double getAverage() {
+		return reviewCount == 0 ? 0.0 : (double) ratingSum / reviewCount;
+	}
+
+	/**
+	 * 指定した星の件数
+	 *
+	 * @param star 星の数（1〜5）
+	 */
+	public long getStarCount(int star) {
+		return switch (star) {
+		case 1 -> star1Count;
+		case 2 -> star2Count;
+		case 3 -> star3Count;
+		case 4 -> star4Count;
+		case 5 -> star5Count;
+		default -> throw new IllegalArgumentException("Rating must be between 1 and 5: " + star);
+		};
+	}
+
+	public Long getSellerId() {
+		return sellerId;
+	}
+
+	public void setSellerId(Long sellerId) {
+		this.sellerId = sellerId;
+	}
+
+	public long getReviewCount() {
+		return reviewCount;
+	}
+
+	public void setReviewCount(long reviewCount) {
+		this.reviewCount = reviewCount;
+	}
+
+	public long getRatingSum() {
+		return ratingSum;
+	}
+
+	public void setRatingSum(long ratingSum) {
+		this.ratingSum = ratingSum;
+	}
+
+	public long getStar1Count() {
+		return star1Count;
+	}
+
+	public void setStar1Count(long star1Count) {
+		this.star1Count = star1Count;
+	}
+
+	public long getStar2Count() {
+		return star2Count;
+	}
+
+	public void setStar2Count(long star2Count) {
+		this.star2Count = star2Count;
+	}
+
+	public long getStar3Count() {
+		return star3Count;
+	}
+
+	public void setStar3Count(long star3Count) {
+		this.star3Count = star3Count;
+	}
+
+	public long getStar4Count() {
+		return star4Count;
+	}
+
+	public void setStar4Count(long star4Count) {
+		this.star4Count = star4Count;
+	}
+
+	public long getStar5Count() {
+		return star5Count;
+	}
+
+	public void setStar5Count(long star5Count) {
+		this.star5Count = star5Count;
+	}
+
+	public LocalDateTime getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(LocalDateTime updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+}
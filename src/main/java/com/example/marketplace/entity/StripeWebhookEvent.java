@@ -0,0 +1,183 @@
+package com.example.marketplace.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Stripe Webhook の受信箱（stripe_webhook_event）
+ * 署名検証済みのイベントをイベントID単位で 1 回だけ保存し、バックグラウンドでまとめて処理する
+ */
+@Entity
+@Table(name = "stripe_webhook_event")
+public class StripeWebhookEvent {
+
+	// 受信済み（未処理）
+	public static final String STATUS_RECEIVED = "RECEIVED";
+	// 処理中（他ノードに取られないよう一定時間ロック）
+	public static final String STATUS_PROCESSING = "PROCESSING";
+	// 処理済み
+	public static final String STATUS_PROCESSED = "PROCESSED";
+	// 対象外（扱わないイベント種別・対応する注文なし）
+	public static final String STATUS_IGNORED = "IGNORED";
+	// リトライ上限到達で処理を断念
+	public static final String STATUS_FAILED = "FAILED";
+
+	/**
+	 * Stripe のイベントID（evt_...）。重複受信の排除に使用
+	 */
+	@Id
+	@Column(length = 255)
+	private String id;
+
+	/**
+	 * イベント種別（payment_intent.succeeded など）
+	 */
+	@Column(nullable = false, length = 100)
+	private String type;
+
+	/**
+	 * イベント対象オブジェクトのID（PaymentIntent ID など）
+	 */
+	@Column(name = "object_id", length = 255)
+	private String objectId;
+
+	/**
+	 * 受信したペイロード（JSON）
+	 */
+	@Column(columnDefinition = "TEXT", nullable = false)
+	private String payload;
+
+	/**
+	 * 状態（RECEIVED / PROCESSING / PROCESSED / IGNORED / FAILED）
+	 */
+	@Column(nullable = false, length = 20)
+	private String status = STATUS_RECEIVED;
+
+	/**
+	 * 処理試行回数
+	 */
+	@Column(nullable = false)
+	private int attempts;
+
+	/**
+	 * 次回処理可能日時
+	 */
+	@Column(name = "next_attempt_at", nullable = false)
+	private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+	/**
+	 * 処理中ロックの期限
+	 */
+	@Column(name = "locked_until")
+	private LocalDateTime lockedUntil;
+
+	/**
+	 * 直近の失敗理由
+	 */
+	@Column(name = "last_error", columnDefinition = "TEXT")
+	private String lastError;
+
+	/**
+	 * 受信日時
+	 */
+	@Column(name = "received_at", nullable = false)
+	private LocalDateTime receivedAt = LocalDateTime.now();
+
+	/**
+	 * 処理完了日時
+	 */
+	@Column(name = "processed_at")
+	private LocalDateTime processedAt;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public String getObjectId() {
+		return objectId;
+	}
+
+	public void setObjectId(String objectId) {
+		this.objectId = objectId;
+	}
+
+	public String getPayload() {
+		return payload;
+	}
+
+	public void setPayload(String payload) {
+		this.payload = payload;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+	public LocalDateTime getNextAttemptAt() {
+		return nextAttemptAt;
+	}
+
+	public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+		this.nextAttemptAt = nextAttemptAt;
+	}
+
+	public LocalDateTime getLockedUntil() {
+		return lockedUntil;
+	}
+
+	public void setLockedUntil(LocalDateTime lockedUntil) {
+		this.lockedUntil = lockedUntil;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(String lastError) {
+		this.lastError = lastError;
+	}
+
+	public LocalDateTime getReceivedAt() {
+		return receivedAt;
+	}
+
+	public void setReceivedAt(LocalDateTime receivedAt) {
+		this.receivedAt = receivedAt;
+	}
+
+	public LocalDateTime getProcessedAt() {
+		return processedAt;
+	}
+
+	public void setProcessedAt(LocalDateTime processedAt) {
+		this.processedAt = processedAt;
+	}
+}
@@ -1,11 +1,18 @@
 package com.example.marketplace.repository;
 
-//コレクションや Optional 用
+//日時・コレクションや Optional 用
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 //Spring Data JPA の import
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.marketplace.entity.AppOrder;
@@ -13,12 +20,51 @@ import com.example.marketplace.entity.User;
 
 @Repository
 public interface AppOrderRepository extends JpaRepository<AppOrder, Long> {
-	//買い手で注文一覧を取得
-	List<AppOrder> findByBuyer(User buyer);
+	//買い手の注文履歴のうち、カーソルより後ろ（古い側）を新しい順に取得（idx_order_buyer_created を使用）
+	//画面で参照する商品・出品者・カテゴリを 1 文で取得し、行ごとの追加クエリを発生させない
+	@Query("select o from AppOrder o join fetch o.item i join fetch i.seller left join fetch i.category"
+			+ " join fetch o.buyer where o.buyer = :buyer and o.status in :statuses"
+			+ " and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id))"
+			+ " order by o.createdAt desc, o.id desc")
+	Slice<AppOrder> findBuyerHistoryBefore(@Param("buyer") User buyer,
+			@Param("statuses") Collection<String> statuses,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
 
-	//出品者で注文一覧を取得（Item の seller 経由）
-	List<AppOrder> findByItem_Seller(User seller);
+	//買い手の指定ステータスの最新注文を 1 件取得（idx_order_buyer_created を使用）
+	Optional<AppOrder> findFirstByBuyerAndStatusInOrderByCreatedAtDescIdDesc(User buyer,
+			Collection<String> statuses);
+
+	//出品者の販売履歴のうち、カーソルより後ろ（古い側）を新しい順に取得（idx_order_seller_created を使用）
+	//商品テーブルを経由せず注文の seller_id で絞り込むため、販売件数が多くても先頭から必要な件数だけ読む
+	@Query("select o from AppOrder o join fetch o.item i join fetch i.seller left join fetch i.category"
+			+ " join fetch o.buyer where o.sellerId = :sellerId and o.status in :statuses"
+			+ " and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id))"
+			+ " order by o.createdAt desc, o.id desc")
+	Slice<AppOrder> findSellerHistoryBefore(@Param("sellerId") Long sellerId,
+			@Param("statuses") Collection<String> statuses,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
 
 	// 追加
 	Optional<AppOrder> findByPaymentIntentId(String paymentIntentId);
-}
\ No newline at end of file
+
+	//照合対象の古い決済待ち注文を ID 順（afterId より後）に行ロック付きで取得
+	//SKIP LOCKED と照合確保期限により、複数ノードで同時に動いても同じ注文を取り合わない
+	@Query(value = "SELECT id AS id, payment_intent_id AS paymentIntentId FROM app_order"
+			+ " WHERE status = '決済待ち' AND created_at < :cutoff"
+			+ " AND (reconcile_after IS NULL OR reconcile_after < :now) AND id > :afterId"
+			+ " ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+	List<StalePendingOrder> findStalePendingForUpdate(@Param("cutoff") LocalDateTime cutoff,
+			@Param("now") LocalDateTime now, @Param("afterId") Long afterId, @Param("limit") int limit);
+
+	//照合処理の確保期限をまとめて設定
+	@Modifying
+	@Query("update AppOrder o set o.reconcileAfter = :until where o.id in :ids")
+	int markReconciling(@Param("ids") Collection<Long> ids, @Param("until") LocalDateTime until);
+
+	//照合対象の注文（ID と PaymentIntent ID のみ）
+	interface StalePendingOrder {
+		Long getId();
+
+		String getPaymentIntentId();
+	}
+}
@@ -0,0 +1,30 @@
+package com.example.marketplace.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+//Spring Data JPA
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+//リポジトリアノテーション
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.marketplace.entity.ChangeFeedEntry;
+
+//ChangeFeedEntry エンティティのリポジトリ
+@Repository
+public interface ChangeFeedRepository extends JpaRepository<ChangeFeedEntry, Long> {
+
+	//指定日時以降の変更記録（ID 順）
+	@Query("select c from ChangeFeedEntry c where c.createdAt >= :since order by c.id")
+	List<ChangeFeedEntry> findSince(@Param("since") LocalDateTime since);
+
+	//古い変更記録を削除
+	@Transactional
+	@Modifying
+	@Query("delete from ChangeFeedEntry c where c.createdAt < :cutoff")
+	int deleteOlderThan(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -1,19 +1,32 @@
 package com.example.marketplace.repository;
 
 //取得結果のリスト型
+import java.time.LocalDateTime;
 import java.util.List;
 
+//ページング用の型
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 //Spring Data JPA
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 //リポジトリ・ステレオタイプ
 import org.springframework.stereotype.Repository;
 
 import com.example.marketplace.entity.Chat;
-import com.example.marketplace.entity.Item;
 
 //Chat エンティティ用のリポジトリ
 @Repository
 public interface ChatRepository extends JpaRepository<Chat, Long> {
-	//指定商品のチャット履歴を作成日時昇順で取得
-	List<Chat> findByItemOrderByCreatedAtAsc(Item item);
+	//指定商品のチャット履歴を、カーソル位置より古いものから新しい順に取得
+	//(item_id, created_at, id) の複合インデックスで必要件数だけ読む
+	@Query("select c from Chat c join fetch c.sender where c.item.id = :itemId"
+			+ " and (c.createdAt < :createdAt or (c.createdAt = :createdAt and c.id < :id))"
+			+ " order by c.createdAt desc, c.id desc")
+	Slice<Chat> findByItemIdBefore(@Param("itemId") Long itemId,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+	//指定商品で、指定 ID より後のチャットを ID 昇順で取得（SSE 再接続時の取りこぼし分）
+	List<Chat> findByItemIdAndIdGreaterThanOrderByIdAsc(Long itemId, Long id);
 }
\ No newline at end of file
@@ -6,9 +6,12 @@ import java.util.Optional;
 
 //Spring Data JPA
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 //リポジトリアノテーション
 import org.springframework.stereotype.Repository;
 
+import com.example.marketplace.dto.ItemCard;
 import com.example.marketplace.entity.FavoriteItem;
 import com.example.marketplace.entity.Item;
 import com.example.marketplace.entity.User;
@@ -19,8 +22,12 @@ public interface FavoriteItemRepository extends JpaRepository<FavoriteItem, Long
 	//ユーザーと商品で一意に検索（ユニーク制約と対応）
 	Optional<FavoriteItem> findByUserAndItem(User user, Item item);
 
-	//ユーザーのお気に入り商品を一覧取得
-	List<FavoriteItem> findByUser(User user);
+	//ユーザーのお気に入り商品をカード形式で一覧取得（登録の新しい順）
+	@Query("select new com.example.marketplace.dto.ItemCard("
+			+ "i.id, i.name, i.price, coalesce(i.thumbnailUrl, i.imageUrl), s.name, c.name, i.status, i.createdAt)"
+			+ " from FavoriteItem f join f.item i join i.seller s left join i.category c"
+			+ " where f.user = :user order by f.createdAt desc, f.id desc")
+	List<ItemCard> findItemCardsByUser(@Param("user") User user);
 
 	//既にお気に入り済みか存在チェック（二重登録防止用）
 	boolean existsByUserAndItem(User user, Item item);
@@ -0,0 +1,55 @@
+package com.example.marketplace.repository;
+
+import java.time.LocalDateTime;
+
+//Spring Data JPA
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+//リポジトリアノテーション
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.marketplace.entity.IdempotencyRecord;
+
+//IdempotencyRecord エンティティのリポジトリ
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+	//キーを処理中として確保（未使用・期限切れ・処理中のまま lease が切れたなら 1、他のリクエストが使用中なら 0）
+	//一意制約で判定するため、複数ノードから同時に来ても確保できるのは 1 つだけ
+	//時刻は DB の CURRENT_TIMESTAMP ではなくアプリから渡し、比較の両辺を同じ時計にそろえる
+	//created_at は確保した時刻で、完了・解放のときに自分の確保かどうかの判定に使う
+	@Transactional
+	@Modifying
+	@Query(value = "INSERT INTO idempotency_record (id, request_fingerprint, status, created_at, expires_at)"
+			+ " VALUES (:id, :fingerprint, 'IN_PROGRESS', :now, :leaseUntil)"
+			+ " ON CONFLICT (id) DO UPDATE SET request_fingerprint = EXCLUDED.request_fingerprint,"
+			+ " status = 'IN_PROGRESS', response = NULL, created_at = EXCLUDED.created_at,"
+			+ " expires_at = EXCLUDED.expires_at"
+			+ " WHERE idempotency_record.expires_at < :now", nativeQuery = true)
+	int claim(@Param("id") String id, @Param("fingerprint") String fingerprint,
+			@Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+	//処理結果を保存し、結果の保存期限まで有効にする（lease 切れで他のリクエストに取られていたら 0）
+	@Transactional
+	@Modifying
+	@Query("update IdempotencyRecord r set r.status = 'COMPLETED', r.response = :response, r.expiresAt = :expiresAt"
+			+ " where r.id = :id and r.status = 'IN_PROGRESS' and r.createdAt = :claimedAt")
+	int complete(@Param("id") String id, @Param("claimedAt") LocalDateTime claimedAt,
+			@Param("response") String response, @Param("expiresAt") LocalDateTime expiresAt);
+
+	//処理失敗時にキーを解放（同じキーでやり直せるようにする。他のリクエストが取り直した記録は消さない）
+	@Transactional
+	@Modifying
+	@Query("delete from IdempotencyRecord r where r.id = :id and r.status = 'IN_PROGRESS'"
+			+ " and r.createdAt = :claimedAt")
+	int release(@Param("id") String id, @Param("claimedAt") LocalDateTime claimedAt);
+
+	//期限切れの記録を削除
+	@Transactional
+	@Modifying
+	@Query("delete from IdempotencyRecord r where r.expiresAt < :now")
+	int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,52 @@
+package com.example.marketplace.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+//Spring Data JPA
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+//リポジトリアノテーション
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.marketplace.entity.ImageBlob;
+
+//ImageBlob エンティティのリポジトリ
+@Repository
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, String> {
+
+	//参照を 1 つ追加（未登録なら参照数 1 で登録、登録済みなら URL はそのままで参照数を加算）
+	@Transactional
+	@Modifying
+	@Query(value = "INSERT INTO image_blob (sha256, url, ref_count, created_at, updated_at)"
+			+ " VALUES (:sha256, :url, 1, :now, :now)"
+			+ " ON CONFLICT (sha256) DO UPDATE SET ref_count = image_blob.ref_count + 1, updated_at = :now",
+			nativeQuery = true)
+	int acquire(@Param("sha256") String sha256, @Param("url") String url, @Param("now") LocalDateTime now);
+
+	//参照を 1 つ解除（0 未満にはしない）
+	@Transactional
+	@Modifying
+	@Query(value = "UPDATE image_blob SET ref_count = GREATEST(ref_count - 1, 0), updated_at = :now"
+			+ " WHERE sha256 = :sha256", nativeQuery = true)
+	int release(@Param("sha256") String sha256, @Param("now") LocalDateTime now);
+
+	//参照数 0 のまま猶予期間を過ぎた画像を行ロック付きで取得（他ノードが処理中の行は飛ばす）
+	@Query(value = "SELECT * FROM image_blob WHERE ref_count = 0 AND updated_at < :cutoff"
+			+ " ORDER BY updated_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+	List<ImageBlob> findCollectableForUpdate(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+
+	//最近更新された画像の参照数を、実際に参照している商品の数で数え直す
+	//アップロード後に商品の保存が失敗した場合などに残る、取り消されなかった参照を回収する
+	@Transactional
+	@Modifying
+	@Query(value = "UPDATE image_blob b SET ref_count = c.actual, updated_at = :now"
+			+ " FROM (SELECT b2.sha256, (SELECT COUNT(*) FROM item i WHERE i.image_url = b2.url) AS actual"
+			+ " FROM image_blob b2 WHERE b2.updated_at >= :since AND b2.updated_at < :cutoff) c"
+			+ " WHERE b.sha256 = c.sha256 AND b.ref_count <> c.actual", nativeQuery = true)
+	int recount(@Param("since") LocalDateTime since, @Param("cutoff") LocalDateTime cutoff,
+			@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,38 @@
+package com.example.marketplace.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+//Spring Data JPA
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+//リポジトリアノテーション
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.marketplace.entity.ImageDeletion;
+
+//ImageDeletion エンティティのリポジトリ
+@Repository
+public interface ImageDeletionRepository extends JpaRepository<ImageDeletion, Long> {
+
+	//削除期限が来た画像を行ロック付きで取得（他ノードが処理中の行は飛ばす）
+	@Query(value = "SELECT * FROM image_deletion WHERE status = 'PENDING' AND next_attempt_at <= :now"
+			+ " ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+	List<ImageDeletion> findDueForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+	//削除失敗（次回の削除日時を設定して待ちへ戻す）
+	@Transactional
+	@Modifying
+	@Query("update ImageDeletion d set d.nextAttemptAt = :nextAttemptAt, d.lastError = :error where d.id = :id")
+	int markRetry(@Param("id") Long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+			@Param("error") String error);
+
+	//削除断念（デッドレター）
+	@Transactional
+	@Modifying
+	@Query("update ImageDeletion d set d.status = 'DEAD', d.lastError = :error where d.id = :id")
+	int markDead(@Param("id") Long id, @Param("error") String error);
+}
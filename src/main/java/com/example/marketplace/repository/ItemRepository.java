@@ -1,35 +1,158 @@
 package com.example.marketplace.repository;
 
 // 一覧取得で使用
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 // ページング用の型
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 // Spring Data JPA
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 // リポジトリアノテーション
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.example.marketplace.dto.ItemCard;
 import com.example.marketplace.entity.Item;
 import com.example.marketplace.entity.User;
 
 // Item エンティティのリポジトリ
 @Repository
 public interface ItemRepository extends JpaRepository<Item, Long> {
+
+	// 一覧カード用の SELECT 句（出品者名・カテゴリ名を JOIN で同時に取得し、関連エンティティは読み込まない）
+	// 画像はサムネイルを優先し、未生成の商品は元画像を使う
+	String CARD_SELECT = "select new com.example.marketplace.dto.ItemCard("
+			+ "i.id, i.name, i.price, coalesce(i.thumbnailUrl, i.imageUrl), s.name, c.name, i.status, i.createdAt)"
+			+ " from Item i join i.seller s left join i.category c";
+
+	// 一覧カードの並び順（新しい順、同時刻は ID 降順）
+	String CARD_ORDER = " order by i.createdAt desc, i.id desc";
+
+	// カーソル位置より後ろ（古い側）を取得する条件
+	String BEFORE_CURSOR = " and (i.createdAt < :createdAt or (i.createdAt = :createdAt and i.id < :id))";
+
 	// 名前の部分一致 + ステータスでページング検索（大文字小文字無視）
-	Page<Item> findByNameContainingIgnoreCaseAndStatus(String name, String status, Pageable pageable);
+	@Query(value = CARD_SELECT
+			+ " where lower(i.name) like lower(concat('%', :name, '%')) and i.status = :status" + CARD_ORDER,
+			countQuery = "select count(i) from Item i"
+					+ " where lower(i.name) like lower(concat('%', :name, '%')) and i.status = :status")
+	Page<ItemCard> findCardsByNameContainingIgnoreCaseAndStatus(@Param("name") String name,
+			@Param("status") String status, Pageable pageable);
 
 	// カテゴリ ID + ステータスでページング検索
-	Page<Item> findByCategoryIdAndStatus(Long categoryId, String status, Pageable pageable);
+	@Query(value = CARD_SELECT + " where c.id = :categoryId and i.status = :status" + CARD_ORDER,
+			countQuery = "select count(i) from Item i where i.category.id = :categoryId and i.status = :status")
+	Page<ItemCard> findCardsByCategoryIdAndStatus(@Param("categoryId") Long categoryId,
+			@Param("status") String status, Pageable pageable);
 
 	// 名前の部分一致 + カテゴリ ID + ステータスでページング検索
-	Page<Item> findByNameContainingIgnoreCaseAndCategoryIdAndStatus(String name, Long categoryId, String status,
-			Pageable pageable);
+	@Query(value = CARD_SELECT
+			+ " where lower(i.name) like lower(concat('%', :name, '%')) and c.id = :categoryId and i.status = :status"
+			+ CARD_ORDER,
+			countQuery = "select count(i) from Item i"
+					+ " where lower(i.name) like lower(concat('%', :name, '%'))"
+					+ " and i.category.id = :categoryId and i.status = :status")
+	Page<ItemCard> findCardsByNameContainingIgnoreCaseAndCategoryIdAndStatus(@Param("name") String name,
+			@Param("categoryId") Long categoryId, @Param("status") String status, Pageable pageable);
 
 	// ステータスのみでページング取得（公開中一覧など）
-	Page<Item> findByStatus(String status, Pageable pageable);
+	@Query(value = CARD_SELECT + " where i.status = :status" + CARD_ORDER,
+			countQuery = "select count(i) from Item i where i.status = :status")
+	Page<ItemCard> findCardsByStatus(@Param("status") String status, Pageable pageable);
+
+	// ID 指定でカードを取得（全文検索結果のページ分の取得用、順序は呼び出し側で並べ直す）
+	// インデックスは他ノードの変更を少し遅れて反映するため、ステータスは DB の値で確認し直す
+	@Query(CARD_SELECT + " where i.id in :ids and i.status = :status")
+	List<ItemCard> findCardsByIdInAndStatus(@Param("ids") Collection<Long> ids, @Param("status") String status);
+
+	// 全商品のカード一覧（管理用）
+	@Query(CARD_SELECT + CARD_ORDER)
+	List<ItemCard> findAllCards();
+
+	// 出品者ごとの商品カード一覧
+	@Query(CARD_SELECT + " where i.seller = :seller" + CARD_ORDER)
+	List<ItemCard> findCardsBySeller(@Param("seller") User seller);
+
+	// ---- カーソル（キーセット）ページング ----
+	// (createdAt, id) の降順で、カーソル位置より古いものを取得する
+	// Slice を返すため COUNT クエリは発行されない
+
+	// ステータスのみ
+	@Query(CARD_SELECT + " where i.status = :status" + BEFORE_CURSOR + CARD_ORDER)
+	Slice<ItemCard> findCardsByStatusBefore(@Param("status") String status,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+	// カテゴリ ID + ステータス
+	@Query(CARD_SELECT + " where c.id = :categoryId and i.status = :status" + BEFORE_CURSOR + CARD_ORDER)
+	Slice<ItemCard> findCardsByCategoryIdAndStatusBefore(@Param("categoryId") Long categoryId,
+			@Param("status") String status,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+	// 名前の部分一致 + ステータス
+	@Query(CARD_SELECT + " where lower(i.name) like lower(concat('%', :name, '%')) and i.status = :status"
+			+ BEFORE_CURSOR + CARD_ORDER)
+	Slice<ItemCard> findCardsByNameContainingIgnoreCaseAndStatusBefore(@Param("name") String name,
+			@Param("status") String status,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+	// 名前の部分一致 + カテゴリ ID + ステータス
+	@Query(CARD_SELECT + " where lower(i.name) like lower(concat('%', :name, '%'))"
+			+ " and c.id = :categoryId and i.status = :status" + BEFORE_CURSOR + CARD_ORDER)
+	Slice<ItemCard> findCardsByNameContainingIgnoreCaseAndCategoryIdAndStatusBefore(@Param("name") String name,
+			@Param("categoryId") Long categoryId, @Param("status") String status,
+			@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+	// ---- 画像（バックグラウンドのアップロード完了時の更新） ----
+
+	// 現在の画像 URL を行ロック付きで取得（商品が無い場合・画像未設定の場合は null）
+	@Query(value = "SELECT image_url FROM item WHERE id = :id FOR UPDATE", nativeQuery = true)
+	String lockImageUrl(@Param("id") Long id);
+
+	// 現在の画像の列のみを取得（編集画面で読み込んだ後に画像が更新されていないかの確認用）
+	@Query("select i.imageUrl as imageUrl, i.detailUrl as detailUrl, i.thumbnailUrl as thumbnailUrl,"
+			+ " i.imageStatus as imageStatus, i.imagePendingSince as imagePendingSince"
+			+ " from Item i where i.id = :id")
+	Optional<ItemImage> findImageById(@Param("id") Long id);
+
+	// アップロードした画像の URL を設定して完了にする
+	@Modifying
+	@Query("update Item i set i.imageUrl = :imageUrl, i.detailUrl = :detailUrl, i.thumbnailUrl = :thumbnailUrl,"
+			+ " i.imageStatus = 'READY' where i.id = :id")
+	int updateImage(@Param("id") Long id, @Param("imageUrl") String imageUrl,
+			@Param("detailUrl") String detailUrl, @Param("thumbnailUrl") String thumbnailUrl);
+
+	// 画像の状態のみを更新
+	@Transactional
+	@Modifying
+	@Query("update Item i set i.imageStatus = :imageStatus where i.id = :id")
+	int updateImageStatus(@Param("id") Long id, @Param("imageStatus") String imageStatus);
+
+	// アップロード開始から一定時間を過ぎても PENDING のままの商品を FAILED にする（アップロード中にノードが止まった場合）
+	// 開始日時の列を追加する前の商品は登録日時で判定する
+	@Transactional
+	@Modifying
+	@Query("update Item i set i.imageStatus = 'FAILED' where i.imageStatus = 'PENDING'"
+			+ " and coalesce(i.imagePendingSince, i.createdAt) < :cutoff")
+	int failStalePendingImages(@Param("cutoff") LocalDateTime cutoff);
+
+	// 画像の列（元画像・縮小版の URL と状態）
+	interface ItemImage {
+		String getImageUrl();
+
+		String getDetailUrl();
+
+		String getThumbnailUrl();
+
+		String getImageStatus();
 
-	// 出品者ごとの商品一覧
-	List<Item> findBySeller(User seller);
-}
\ No newline at end of file
+		LocalDateTime getImagePendingSince();
+	}
+}
@@ -0,0 +1,46 @@
+package com.example.marketplace.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+//Spring Data JPA
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+//リポジトリアノテーション
+import org.springframework.stereotype.Repository;
+
+import com.example.marketplace.entity.NotificationOutbox;
+
+//NotificationOutbox エンティティのリポジトリ
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+	//送信期限が来た通知（およびロック期限切れの処理中通知）を行ロック付きで取得
+	//SKIP LOCKED により、複数ノードが同時に取得しても同じ行を奪い合わない
+	@Query(value = "SELECT * FROM notification_outbox"
+			+ " WHERE (status = 'PENDING' AND next_attempt_at <= :now)"
+			+ " OR (status = 'SENDING' AND locked_until < :now)"
+			+ " ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+	List<NotificationOutbox> findDueForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+	//送信成功
+	@Modifying
+	@Query("update NotificationOutbox o set o.status = 'SENT', o.sentAt = :now, o.lockedUntil = null,"
+			+ " o.lastError = null where o.id = :id")
+	int markSent(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+	//送信失敗（次回送信日時を設定して待ちへ戻す）
+	@Modifying
+	@Query("update NotificationOutbox o set o.status = 'PENDING', o.nextAttemptAt = :nextAttemptAt,"
+			+ " o.lockedUntil = null, o.lastError = :error where o.id = :id")
+	int markRetry(@Param("id") Long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+			@Param("error") String error);
+
+	//送信断念（デッドレター）
+	@Modifying
+	@Query("update NotificationOutbox o set o.status = 'DEAD', o.lockedUntil = null, o.lastError = :error"
+			+ " where o.id = :id")
+	int markDead(@Param("id") Long id, @Param("error") String error);
+}
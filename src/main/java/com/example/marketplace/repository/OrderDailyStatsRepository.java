@@ -0,0 +1,48 @@
+package com.example.marketplace.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+//Spring Data JPA
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+//リポジトリアノテーション
+import org.springframework.stereotype.Repository;
+
+import com.example.marketplace.dto.OrderStatusCount;
+import com.example.marketplace.entity.OrderDailyStats;
+import com.example.marketplace.entity.OrderDailyStatsId;
+
+//OrderDailyStats エンティティのリポジトリ（主キーは日付 × ステータス）
+@Repository
+public interface OrderDailyStatsRepository extends JpaRepository<OrderDailyStats, OrderDailyStatsId> {
+
+	//指定日・ステータスの集計へ件数と金額を加算（負数で減算。行が無ければ作成）
+	//同時更新でも取りこぼさないよう、読み込まずに DB 側で加算する
+	@Modifying
+	@Query(value = "INSERT INTO order_daily_stats (stat_date, status, order_count, total_price, updated_at)"
+			+ " VALUES (:statDate, :status, :countDelta, :priceDelta, CURRENT_TIMESTAMP)"
+			+ " ON CONFLICT (stat_date, status) DO UPDATE SET"
+			+ " order_count = order_daily_stats.order_count + EXCLUDED.order_count,"
+			+ " total_price = order_daily_stats.total_price + EXCLUDED.total_price,"
+			+ " updated_at = EXCLUDED.updated_at", nativeQuery = true)
+	int adjust(@Param("statDate") LocalDate statDate, @Param("status") String status,
+			@Param("countDelta") long countDelta, @Param("priceDelta") BigDecimal priceDelta);
+
+	//期間内・指定ステータスの金額合計
+	@Query("select coalesce(sum(s.totalPrice), 0) from OrderDailyStats s"
+			+ " where s.statDate between :startDate and :endDate and s.status in :statuses")
+	BigDecimal sumTotalPrice(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate,
+			@Param("statuses") Collection<String> statuses);
+
+	//期間内のステータス別件数（0 件のステータスは除く）
+	@Query("select new com.example.marketplace.dto.OrderStatusCount(s.status, sum(s.orderCount))"
+			+ " from OrderDailyStats s where s.statDate between :startDate and :endDate"
+			+ " group by s.status having sum(s.orderCount) > 0 order by s.status")
+	List<OrderStatusCount> countByStatus(@Param("startDate") LocalDate startDate,
+			@Param("endDate") LocalDate endDate);
+}
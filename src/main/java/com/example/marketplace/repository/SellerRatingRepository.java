@@ -0,0 +1,36 @@
+package com.example.marketplace.repository;
+
+//Spring Data JPA
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+//リポジトリアノテーション
+import org.springframework.stereotype.Repository;
+
+import com.example.marketplace.entity.SellerRating;
+
+//SellerRating エンティティのリポジトリ（主キーは出品者 ID）
+@Repository
+public interface SellerRatingRepository extends JpaRepository<SellerRating, Long> {
+
+	//評価 1 件を集計へ加算（行が無ければ作成）
+	//同時投稿でも取りこぼさないよう、読み込まずに DB 側で加算する
+	@Modifying
+	@Query(value = "INSERT INTO seller_rating (seller_id, review_count, rating_sum,"
+			+ " star1_count, star2_count, star3_count, star4_count, star5_count, updated_at)"
+			+ " VALUES (:sellerId, 1, :rating,"
+			+ " CASE WHEN :rating = 1 THEN 1 ELSE 0 END, CASE WHEN :rating = 2 THEN 1 ELSE 0 END,"
+			+ " CASE WHEN :rating = 3 THEN 1 ELSE 0 END, CASE WHEN :rating = 4 THEN 1 ELSE 0 END,"
+			+ " CASE WHEN :rating = 5 THEN 1 ELSE 0 END, CURRENT_TIMESTAMP)"
+			+ " ON CONFLICT (seller_id) DO UPDATE SET"
+			+ " review_count = seller_rating.review_count + 1,"
+			+ " rating_sum = seller_rating.rating_sum + EXCLUDED.rating_sum,"
+			+ " star1_count = seller_rating.star1_count + EXCLUDED.star1_count,"
+			+ " star2_count = seller_rating.star2_count + EXCLUDED.star2_count,"
+			+ " star3_count = seller_rating.star3_count + EXCLUDED.star3_count,"
+			+ " star4_count = seller_rating.star4_count + EXCLUDED.star4_count,"
+			+ " star5_count = seller_rating.star5_count + EXCLUDED.star5_count,"
+			+ " updated_at = EXCLUDED.updated_at", nativeQuery = true)
+	int addRating(@Param("sellerId") Long sellerId, @Param("rating") int rating);
+}
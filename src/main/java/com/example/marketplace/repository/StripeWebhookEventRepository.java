@@ -0,0 +1,55 @@
+package com.example.marketplace.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+//Spring Data JPA
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+//リポジトリアノテーション
+import org.springframework.stereotype.Repository;
+
+import com.example.marketplace.entity.StripeWebhookEvent;
+
+//StripeWebhookEvent エンティティのリポジトリ（主キーは Stripe のイベントID）
+@Repository
+public interface StripeWebhookEventRepository extends JpaRepository<StripeWebhookEvent, String> {
+
+	//イベントを保存（同じイベントIDが保存済みなら何もしない）
+	//戻り値は新規保存なら 1、重複なら 0
+	@Modifying
+	@Query(value = "INSERT INTO stripe_webhook_event (id, type, object_id, payload, status, attempts,"
+			+ " next_attempt_at, received_at)"
+			+ " VALUES (:id, :type, :objectId, :payload, 'RECEIVED', 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)"
+			+ " ON CONFLICT (id) DO NOTHING", nativeQuery = true)
+	int insertIfAbsent(@Param("id") String id, @Param("type") String type, @Param("objectId") String objectId,
+			@Param("payload") String payload);
+
+	//処理期限が来たイベント（およびロック期限切れの処理中イベント）を受信順に行ロック付きで取得
+	@Query(value = "SELECT * FROM stripe_webhook_event"
+			+ " WHERE (status = 'RECEIVED' AND next_attempt_at <= :now)"
+			+ " OR (status = 'PROCESSING' AND locked_until < :now)"
+			+ " ORDER BY received_at, id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+	List<StripeWebhookEvent> findDueForUpdate(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+	//処理完了（PROCESSED / IGNORED）
+	@Modifying
+	@Query("update StripeWebhookEvent e set e.status = :status, e.processedAt = :now, e.lockedUntil = null,"
+			+ " e.lastError = null where e.id = :id")
+	int markDone(@Param("id") String id, @Param("status") String status, @Param("now") LocalDateTime now);
+
+	//処理失敗（次回処理日時を設定して未処理へ戻す）
+	@Modifying
+	@Query("update StripeWebhookEvent e set e.status = 'RECEIVED', e.nextAttemptAt = :nextAttemptAt,"
+			+ " e.lockedUntil = null, e.lastError = :error where e.id = :id")
+	int markRetry(@Param("id") String id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+			@Param("error") String error);
+
+	//処理断念
+	@Modifying
+	@Query("update StripeWebhookEvent e set e.status = 'FAILED', e.lockedUntil = null, e.lastError = :error"
+			+ " where e.id = :id")
+	int markFailed(@Param("id") String id, @Param("error") String error);
+}
@@ -19,10 +19,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
 	//メールアドレスでユーザーを検索（ログイン/認可で使用）
 	Optional<User> findByEmail(String email);
 
-	// 追加：対象ユーザーの平均評価を取得（レビューが無い場合は null）
-	@Query("select avg(r.rating) from Review r where r.seller.id = :userId")
-	Double averageRatingForUser(@Param("userId") Long userId);
-
-	//追加
-	Optional<User> findByEmailIgnoreCase(String email);
+	//メールアドレスで検索（大文字小文字を区別しない。lower(email) の関数インデックスを使うため lower で比較）
+	@Query("select u from User u where lower(u.email) = lower(:email)")
+	Optional<User> findByEmailIgnoreCase(@Param("email") String email);
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.example.marketplace.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * ハンドラの引数にログイン中のユーザー（User エンティティ）を渡す
+ * 未ログインの場合は null
+ * 例: {@code public String myPage(@CurrentUser User currentUser, Model model)}
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
@@ -0,0 +1,60 @@
+package com.example.marketplace.security;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import com.example.marketplace.entity.User;
+import com.example.marketplace.repository.UserRepository;
+import com.example.marketplace.service.CurrentUserCache;
+
+/**
+ * {@link CurrentUser} を付けた User 型の引数に、ログイン中のユーザーを渡す
+ * プリンシパルのユーザー ID から CurrentUserCache 経由で取得するため、通常はリクエストごとの DB 検索は発生しない
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+	// ログイン中ユーザーのキャッシュ
+	private final CurrentUserCache currentUserCache;
+	// ユーザー ID を持たないプリンシパル（変更前に作られたセッション）用
+	private final UserRepository userRepository;
+
+	public CurrentUserArgumentResolver(CurrentUserCache currentUserCache, UserRepository userRepository) {
+		this.currentUserCache = currentUserCache;
+		this.userRepository = userRepository;
+	}
+
+	@Override
+	public boolean supportsParameter(MethodParameter parameter) {
+		return parameter.hasParameterAnnotation(CurrentUser.class)
+				&& User.class.isAssignableFrom(parameter.getParameterType());
+	}
+
+	@Override
+	public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+			NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+
+		// 未ログインなら null
+		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+		if (auth == null || !auth.isAuthenticated() || auth instanceof AnonymousAuthenticationToken) {
+			return null;
+		}
+
+		// ユーザー ID を持つプリンシパルならキャッシュから取得
+		if (auth.getPrincipal() instanceof LoginUser loginUser) {
+			return currentUserCache.get(loginUser.getId())
+					.orElseThrow(() -> new IllegalStateException("User not found"));
+		}
+
+		// それ以外はメールアドレスで検索
+		return userRepository.findByEmailIgnoreCase(auth.getName())
+				.orElseThrow(() -> new IllegalStateException("User not found"));
+	}
+}
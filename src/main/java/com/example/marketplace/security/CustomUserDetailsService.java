@@ -1,7 +1,13 @@
 package com.example.marketplace.security;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,14 +17,33 @@ import org.springframework.stereotype.Service;
 
 import com.example.marketplace.entity.User;
 import com.example.marketplace.repository.UserRepository;
+import com.example.marketplace.service.CurrentUserCache;
 
+/**
+ * ログイン時のユーザー読み込み
+ * 読み込んだ認証情報はメールアドレス（小文字）ごとに一定時間キャッシュし、ログインが集中しても users テーブルを検索しない
+ * ユーザーの更新・BAN 時は UserCacheInvalidationService が evict で破棄する（他ノードの更新も同様）
+ * 読み込み中に破棄された場合（BAN の確定前に読んだ値など）は、読み込んだ古い値をキャッシュに残さない
+ */
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
 	private final UserRepository users; // User エンティティ操作用リポジトリ
+	private final CurrentUserCache currentUserCache; // ログイン中ユーザーのキャッシュ
+	private final long ttlNanos; // 認証情報キャッシュの有効期限
+	private final int maxEntries; // 認証情報キャッシュの最大件数（超えたら期限切れを捨て、それでも多ければ全件破棄）
+	private final Map<String, CachedUser> cache = new ConcurrentHashMap<>(); // メールアドレス（小文字） → 認証情報
+	// 破棄の世代（evict・clear のたびに進む）
+	// キャッシュのキーはメールアドレスで、読み込むまでユーザー ID が分からないため、ユーザーごとではなく全体で持つ
+	private final AtomicLong generation = new AtomicLong();
 
-	public CustomUserDetailsService(UserRepository users) {
+	public CustomUserDetailsService(UserRepository users, CurrentUserCache currentUserCache,
+			@Value("${user.details-cache.ttl-seconds:300}") long ttlSeconds,
+			@Value("${user.details-cache.max-entries:10000}") int maxEntries) {
 		this.users = users;
+		this.currentUserCache = currentUserCache;
+		this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+		this.maxEntries = maxEntries;
 	}
 
 	@Override
@@ -26,25 +51,81 @@ public class CustomUserDetailsService implements UserDetailsService {
 			throws UsernameNotFoundException {
 
 		// usernameParameter("email") にしているためフォーム入力値は email
-		User u = users.findByEmailIgnoreCase(username)
-				.orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+		String key = username.toLowerCase(Locale.ROOT);
+		long now = System.nanoTime();
+		CachedUser u = cache.get(key);
+		if (u == null || u.isExpired(now)) {
+			// 読み込む前の世代（読み込み中に破棄されたら、読み込んだ値は登録しない）
+			long generation = this.generation.get();
+			long currentUserGeneration = currentUserCache.generation();
+			User user = users.findByEmailIgnoreCase(username)
+					.orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+			u = CachedUser.of(user, now + ttlNanos);
+			put(key, u, now, generation);
+			// 読み込んだユーザーをキャッシュへ登録（ログイン後のリクエストでは users テーブルを検索しない）
+			currentUserCache.put(user, currentUserGeneration);
+		}
 
 		// enabled=false の場合、ログインを拒否
-		if (!u.isEnabled()) {
+		if (!u.enabled()) {
 			throw new DisabledException("Account disabled"); // アカウント無効化
 		}
 
 		// banned=true の場合、ログインを拒否
-		if (u.isBanned()) {
+		if (u.banned()) {
 			throw new DisabledException("Account banned"); // BAN 済ユーザー
 		}
 
-		// Spring Security の UserDetails へ変換
+		// Spring Security の UserDetails へ変換（ユーザー ID・表示名も保持）
+		// 認証後にパスワードが消去されるため、毎回新しいインスタンスを返す
 		// 付与する権限は ROLE_ プレフィックスが必要
-		return new org.springframework.security.core.userdetails.User(
-				u.getEmail(), // 認証 ID（メール）
-				u.getPassword(), // ハッシュ化済パスワード
+		return new LoginUser(
+				u.id(), // ユーザーID
+				u.name(), // 表示名
+				u.email(), // 認証 ID（メール）
+				u.password(), // ハッシュ化済パスワード
 				List.of(
-						new SimpleGrantedAuthority("ROLE_" + u.getRole())));
+						new SimpleGrantedAuthority("ROLE_" + u.role())));
+	}
+
+	// ユーザーの更新時に認証情報のキャッシュを破棄（世代を進めてから破棄し、読み込み中の古い値が後から残らないようにする）
+	public void evict(Long userId) {
+		generation.incrementAndGet();
+		cache.values().removeIf(u -> u.id().equals(userId));
+	}
+
+	// 認証情報のキャッシュを全件破棄
+	public void clear() {
+		generation.incrementAndGet();
+		cache.clear();
+	}
+
+	// 認証情報をキャッシュへ登録してから世代を確認し、読み込み中に破棄されていたら取り消す
+	// （確認より前の破棄は世代で、後の破棄は evict 自身が登録済みの値を消すため、古い値は残らない）
+	private void put(String key, CachedUser user, long now, long generation) {
+		if (cache.size() >= maxEntries) {
+			cache.values().removeIf(u -> u.isExpired(now));
+			if (cache.size() >= maxEntries) {
+				cache.clear();
+			}
+		}
+		cache.put(key, user);
+		if (this.generation.get() != generation) {
+			cache.remove(key, user);
+		}
+	}
+
+	// キャッシュする認証情報（エンティティではなく必要な値だけを持つ）
+	private record CachedUser(Long id, String name, String email, String password, String role,
+			boolean enabled, boolean banned, long expiresAt) {
+
+		static CachedUser of(User u, long expiresAt) {
+			return new CachedUser(u.getId(), u.getName(), u.getEmail(), u.getPassword(), u.getRole(),
+					u.isEnabled(), u.isBanned(), expiresAt);
+		}
+
+		boolean isExpired(long now) {
+			return now - expiresAt > 0;
+		}
 	}
 }
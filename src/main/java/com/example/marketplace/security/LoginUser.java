@@ -0,0 +1,33 @@
+package com.example.marketplace.security;
+
+import java.util.Collection;
+
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * ログイン中のユーザー（認証済みのプリンシパル）
+ * 認証 ID（メール）・パスワード・権限に加えて、ユーザー ID と表示名を保持する
+ * セッションに保存されるため、エンティティではなく必要な値だけを持つ
+ */
+public class LoginUser extends org.springframework.security.core.userdetails.User {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Long id; // ユーザーID
+	private final String name; // 表示名
+
+	public LoginUser(Long id, String name, String email, String password,
+			Collection<? extends GrantedAuthority> authorities) {
+		super(email, password, authorities);
+		this.id = id;
+		this.name = name;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
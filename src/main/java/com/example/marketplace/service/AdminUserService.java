@@ -7,8 +7,10 @@ import java.util.NoSuchElementException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.marketplace.entity.SellerRating;
 import com.example.marketplace.entity.User;
 import com.example.marketplace.entity.UserComplaint;
+import com.example.marketplace.repository.SellerRatingRepository;
 import com.example.marketplace.repository.UserComplaintRepository;
 import com.example.marketplace.repository.UserRepository;
 
@@ -17,11 +19,16 @@ public class AdminUserService {
 
 	private final UserRepository userRepository; // User エンティティ用リポジトリ
 	private final UserComplaintRepository complaintRepository; // 通報情報管理リポジトリ
+	private final SellerRatingRepository sellerRatingRepository; // 出品者評価集計リポジトリ
+	private final UserCacheInvalidationService userCacheInvalidationService; // ユーザー情報のキャッシュの破棄（BAN 状態の変更を即時にログインへ反映）
 
 	// コンストラクタインジェクション
-	public AdminUserService(UserRepository userRepository, UserComplaintRepository complaintRepository) {
+	public AdminUserService(UserRepository userRepository, UserComplaintRepository complaintRepository,
+			SellerRatingRepository sellerRatingRepository, UserCacheInvalidationService userCacheInvalidationService) {
 		this.userRepository = userRepository;
 		this.complaintRepository = complaintRepository;
+		this.sellerRatingRepository = sellerRatingRepository;
+		this.userCacheInvalidationService = userCacheInvalidationService;
 	}
 
 	// 全ユーザー一覧を取得
@@ -35,10 +42,15 @@ public class AdminUserService {
 				.orElseThrow(() -> new NoSuchElementException("User not found: " + id));
 	}
 
-	// 対象ユーザーの平均レビュー評価を取得（null の場合は 0 として返す）
+	// 対象ユーザーの評価集計を取得（レビューが無い場合は 0 件の集計）
+	public SellerRating ratingSummary(Long userId) {
+		return sellerRatingRepository.findById(userId)
+				.orElseGet(() -> new SellerRating(userId));
+	}
+
+	// 対象ユーザーの平均レビュー評価を取得（レビューが無い場合は 0 として返す）
 	public Double averageRating(Long userId) {
-		Double avg = userRepository.averageRatingForUser(userId);
-		return (avg == null) ? 0.0 : avg;
+		return ratingSummary(userId).getAverage();
 	}
 
 	// 指定ユーザーの通報件数を取得
@@ -64,6 +76,7 @@ public class AdminUserService {
 			u.setEnabled(false);
 		}
 		userRepository.save(u);
+		userCacheInvalidationService.invalidate(targetUserId);
 	}
 
 	// BAN 解除（元の状態へ戻す）
@@ -76,5 +89,6 @@ public class AdminUserService {
 		u.setBannedByAdminId(null);
 		u.setEnabled(true); // BAN 解除後ログイン有効化
 		userRepository.save(u);
+		userCacheInvalidationService.invalidate(targetUserId);
 	}
 }
@@ -9,12 +9,15 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 //Spring 注釈
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.marketplace.entity.AppOrder;
 import com.example.marketplace.entity.Item;
@@ -28,36 +31,103 @@ import com.stripe.model.PaymentIntent;
 @Service
 public class AppOrderService {
 
+	// 注文ステータスの一覧（注文履歴の絞り込み条件）
+	public static final List<String> ORDER_STATUSES = List.of("決済待ち", "購入済", "発送済", "キャンセル");
+
 	//リポジトリと周辺サービス
 	private final AppOrderRepository appOrderRepository;
 	private final ItemRepository itemRepository;
 	private final ItemService itemService;
 	private final StripeService stripeService;
-	private final LineNotifyService lineNotifyService;
+	private final NotificationOutboxService notificationOutboxService;
+	private final OrderStatsService orderStatsService;
+	//購入処理を短いトランザクションに分けるためのテンプレート
+	private final TransactionTemplate transactionTemplate;
+	//購入手続き中の商品のメモリ上の確保表
+	private final ItemReservationService itemReservationService;
 
 	//依存の注入
 	public AppOrderService(AppOrderRepository appOrderRepository,
 			ItemRepository itemRepository,
 			ItemService itemService,
 			ObjectProvider<StripeService> stripeServiceProvider,
-			LineNotifyService lineNotifyService) {
+			NotificationOutboxService notificationOutboxService,
+			OrderStatsService orderStatsService,
+			TransactionTemplate transactionTemplate,
+			ItemReservationService itemReservationService) {
 
 		//各依存をフィールドに保持
 		this.appOrderRepository = appOrderRepository;
 		this.itemRepository = itemRepository;
 		this.itemService = itemService;
 		this.stripeService = stripeServiceProvider.getIfAvailable();
-		this.lineNotifyService = lineNotifyService;
+		this.notificationOutboxService = notificationOutboxService;
+		this.orderStatsService = orderStatsService;
+		this.transactionTemplate = transactionTemplate;
+		this.itemReservationService = itemReservationService;
 	}
 
-	//購入開始：PaymentIntent 作成＋注文を“決済待ち”で作成（PaymentIntent ID を保存）
-	@Transactional
+	//購入開始：注文を“決済待ち”で確保 → PaymentIntent 作成 → PaymentIntent ID を保存
+	//Stripe 呼び出し中は DB 接続を保持しないよう、前後を短いトランザクションに分ける
 	public PaymentIntent initiatePurchase(Long itemId, User buyer) throws StripeException {
 		if (stripeService == null) {
 			throw new IllegalStateException(
 					"Stripe is not configured. Set STRIPE_SECRET_KEY / STRIPE_PUBLIC_KEY to enable payments.");
 		}
 
+		//0. メモリ上の確保表で先着判定（他の買い手が手続き中なら DB に問い合わせずに断る）
+		if (!itemReservationService.tryReserve(itemId, buyer.getId())) {
+			throw new IllegalStateException("Item is being purchased by another user.");
+		}
+
+		//1. 商品を確保し、注文を“決済待ち”で作成（短いトランザクション）
+		AppOrder order;
+		try {
+			order = transactionTemplate.execute(status -> reserveOrder(itemId, buyer));
+		} catch (OptimisticLockingFailureException e) {
+			//同時に別の買い手（または出品者の編集）が商品を更新した
+			itemReservationService.release(itemId, buyer.getId());
+			throw new IllegalStateException("Item is being purchased by another user.");
+		} catch (RuntimeException e) {
+			itemReservationService.release(itemId, buyer.getId());
+			throw e;
+		}
+
+		//2. Stripeへ PaymentIntent 作成（トランザクション外。JPY は最小単位が 1 円のため create 側で考慮）
+		PaymentIntent paymentIntent;
+		try {
+			paymentIntent = stripeService.createPaymentIntent(
+					order.getId(),
+					order.getPrice(),
+					"jpy",
+					"購入: " + order.getItem().getName());
+		} catch (StripeException | RuntimeException e) {
+			//作成に失敗したら確保した注文を取り消す
+			cancelPendingOrder(order.getId());
+			throw e;
+		}
+
+		//3. PaymentIntent ID を注文へ保存（短いトランザクション）
+		try {
+			transactionTemplate.executeWithoutResult(status -> attachPaymentIntent(order.getId(), paymentIntent));
+		} catch (RuntimeException e) {
+			//保存に失敗したら PaymentIntent と注文の両方を取り消す（補償処理）
+			try {
+				stripeService.cancelPaymentIntent(paymentIntent.getId());
+			} catch (StripeException | RuntimeException cancelError) {
+				System.err.println("Failed to cancel PaymentIntent " + paymentIntent.getId() + ": "
+						+ cancelError.getMessage());
+			}
+			cancelPendingOrder(order.getId());
+			throw e;
+		}
+
+		//フロントへ client_secret 等を返すため Intent を返却
+		return paymentIntent;
+	}
+
+	//商品の購入可否を確認し、注文を“決済待ち”で作成
+	private AppOrder reserveOrder(Long itemId, User buyer) {
 		//商品を取得（なければ 400）
 		Item item = itemRepository.findById(itemId)
 				.orElseThrow(() -> new IllegalArgumentException("Item not found"));
@@ -67,44 +137,97 @@ public class AppOrderService {
 			throw new IllegalStateException("Item is not available for purchase.");
 		}
 
-		//Stripeへ PaymentIntent 作成（JPY は最小単位が 1 円のため create 側で考慮）
-		PaymentIntent paymentIntent = stripeService.createPaymentIntent(
-				item.getPrice(),
-				"jpy",
-				"購入: " + item.getName());
+		//他の買い手が期限内の購入手続き中ならエラー
+		LocalDateTime now = LocalDateTime.now();
+		if (item.isHeldByOther(buyer.getId(), now)) {
+			throw new IllegalStateException("Item is being purchased by another user.");
+		}
+
+		//商品を確保（バージョンが更新され、同時に確保しようとした側はコミット時に失敗する）
+		item.setHoldBuyerId(buyer.getId());
+		item.setHoldUntil(now.plus(itemReservationService.getHoldDuration()));
+		itemRepository.save(item);
 
-		//注文を“決済待ち”で作成し、PaymentIntent ID を確実に保存
+		//注文を“決済待ち”で作成（PaymentIntent ID は作成後に保存）
 		AppOrder appOrder = new AppOrder();
 
 		//商品を紐付け
 		appOrder.setItem(item);
 		//買い手を紐付け
 		appOrder.setBuyer(buyer);
+		//出品者（販売履歴の検索用）
+		appOrder.setSellerId(item.getSeller().getId());
 		//金額を固定
 		appOrder.setPrice(item.getPrice());
 		//ステータスを決済待ちへ
 		appOrder.setStatus("決済待ち");
-		//PaymentIntent ID を保存（これで後続完了時に 1 件特定できる）
-		appOrder.setPaymentIntentId(paymentIntent.getId());
 		//作成日時
-		appOrder.setCreatedAt(LocalDateTime.now());
+		appOrder.setCreatedAt(now);
 
 		//DB へ保存
+		AppOrder saved = appOrderRepository.save(appOrder);
+		//日次売上集計へ加算
+		orderStatsService.recordCreated(saved);
+		return saved;
+	}
+
+	//PaymentIntent ID を保存（これで後続完了時に 1 件特定できる）
+	private void attachPaymentIntent(Long orderId, PaymentIntent paymentIntent) {
+		AppOrder appOrder = appOrderRepository.findById(orderId)
+				.orElseThrow(() -> new IllegalStateException("Order not found: " + orderId));
+		//確保後に取り消された注文には紐付けない
+		if (!"決済待ち".equals(appOrder.getStatus())) {
+			throw new IllegalStateException("Order is no longer awaiting payment: " + orderId);
+		}
+		appOrder.setPaymentIntentId(paymentIntent.getId());
 		appOrderRepository.save(appOrder);
+	}
 
-		//フロントへ client_secret 等を返すため Intent を返却
-		return paymentIntent;
+	//決済待ちの注文をキャンセルし、商品の確保も解除（失敗しても例外は投げず、ログのみ）
+	private void cancelPendingOrder(Long orderId) {
+		try {
+			transactionTemplate.executeWithoutResult(status -> appOrderRepository.findById(orderId)
+					.filter(o -> "決済待ち".equals(o.getStatus()))
+					.ifPresent(o -> {
+						orderStatsService.recordTransition(o, o.getStatus(), "キャンセル");
+						o.setStatus("キャンセル");
+						appOrderRepository.save(o);
+						releaseHold(o);
+					}));
+		} catch (RuntimeException e) {
+			System.err.println("Failed to cancel pending order " + orderId + ": " + e.getMessage());
+		}
+	}
+
+	//注文の買い手による商品の確保を解除（DB・メモリの両方）
+	private void releaseHold(AppOrder order) {
+		Item item = order.getItem();
+		Long buyerId = order.getBuyer().getId();
+		if (buyerId.equals(item.getHoldBuyerId())) {
+			item.clearHold();
+			itemRepository.save(item);
+		}
+		TransactionHooks.afterCommit(() -> itemReservationService.release(item.getId(), buyerId));
 	}
 
 	//決済完了：PaymentIntent ID で1 件を厳密に取得して確定処理
-	@Transactional
+	//Stripe への状態確認はトランザクション外で行い、確定だけを短いトランザクションで行う
 	public AppOrder completePurchase(String paymentIntentId) throws StripeException {
 		if (stripeService == null) {
 			throw new IllegalStateException(
 					"Stripe is not configured. Set STRIPE_SECRET_KEY / STRIPE_PUBLIC_KEY to enable payments.");
 		}
 
-		// Stripe から Intent の最新状態を取得
+		//保存済みの注文を PaymentIntent ID で 1 件特定（ここが安全化の肝）
+		AppOrder existing = appOrderRepository.findByPaymentIntentId(paymentIntentId)
+				.orElseThrow(() -> new IllegalStateException("Order for PaymentIntent not found."));
+
+		//既に確定済みなら冪等に成功扱い（Stripe へも問い合わせない）
+		if (isCompleted(existing)) {
+			return existing;
+		}
+
+		// Stripe から Intent の最新状態を取得（トランザクション外）
 		PaymentIntent paymentIntent = stripeService.retrievePaymentIntent(paymentIntentId);
 
 		// 成功以外はエラー
@@ -112,21 +235,88 @@ public class AppOrderService {
 			throw new IllegalStateException("Payment not succeeded. Status: " + paymentIntent.getStatus());
 		}
 
-		//保存済みの注文を PaymentIntent ID で 1 件特定（ここが安全化の肝）
+		// 確定処理（確定できなければ返金済み）
+		AppOrder confirmed = confirmPayment(existing.getId(), paymentIntentId);
+		if (confirmed == null) {
+			throw new IllegalStateException("The order could not be completed. The payment has been refunded.");
+		}
+		return confirmed;
+	}
+
+	//Webhook（payment_intent.succeeded）による確定：Stripe へ問い合わせずに確定する
+	//対応する注文が無ければ false
+	public boolean handlePaymentSucceeded(String paymentIntentId) throws StripeException {
+		Optional<AppOrder> order = appOrderRepository.findByPaymentIntentId(paymentIntentId);
+		if (order.isEmpty()) {
+			return false;
+		}
+		if (!isCompleted(order.get())) {
+			confirmPayment(order.get().getId(), paymentIntentId);
+		}
+		return true;
+	}
+
+	//Webhook（payment_intent.canceled）による取り消し：決済待ちの注文をキャンセル
+	//対応する注文が無ければ false
+	public boolean handlePaymentCanceled(String paymentIntentId) {
+		Optional<AppOrder> order = appOrderRepository.findByPaymentIntentId(paymentIntentId);
+		order.ifPresent(o -> cancelPendingOrder(o.getId()));
+		return order.isPresent();
+	}
+
+	//支払い済みの注文を確定（短いトランザクション）
+	//同じ商品の同時確定で楽観ロックに失敗したら、最新状態で 1 回だけやり直す
+	//確定できない（商品が他の買い手に売れた・注文が取り消し済み）場合は返金して null を返す
+	private AppOrder confirmPayment(Long orderId, String paymentIntentId) throws StripeException {
+		if (stripeService == null) {
+			throw new IllegalStateException(
+					"Stripe is not configured. Set STRIPE_SECRET_KEY / STRIPE_PUBLIC_KEY to enable payments.");
+		}
+		AppOrder confirmed;
+		try {
+			confirmed = transactionTemplate.execute(status -> confirmPaidOrder(paymentIntentId));
+		} catch (OptimisticLockingFailureException e) {
+			confirmed = transactionTemplate.execute(status -> confirmPaidOrder(paymentIntentId));
+		}
+		if (confirmed != null) {
+			return confirmed;
+		}
+
+		// 決済中に確保期限が切れて商品が他の買い手に売れた、または注文が取り消されていた：返金して注文をキャンセル（補償処理）
+		stripeService.refundPaymentIntent(paymentIntentId);
+		cancelPendingOrder(orderId);
+		return null;
+	}
+
+	//支払い済みの注文を確定（購入済へ更新・商品を売却済へ・売り手へ通知）
+	//注文が取り消し済み、または商品が既に他の買い手のものになっていれば何もせず null を返す
+	private AppOrder confirmPaidOrder(String paymentIntentId) {
+		//トランザクション内で最新状態を読み直す
 		AppOrder appOrder = appOrderRepository.findByPaymentIntentId(paymentIntentId)
 				.orElseThrow(() -> new IllegalStateException("Order for PaymentIntent not found."));
 
-		//既に確定済みなら冪等に成功扱い
-		if ("購入済".equals(appOrder.getStatus()) || "発送済".equals(appOrder.getStatus())) {
+		//並行して確定済みなら冪等に成功扱い
+		if (isCompleted(appOrder)) {
 			// そのまま返す（再通知などはしない）
 			return appOrder;
 		}
+		//取り消し済みの注文は確定しない
+		if (!"決済待ち".equals(appOrder.getStatus())) {
+			return null;
+		}
+		//売却済み、または他の買い手が期限内の購入手続き中
+		Item item = appOrder.getItem();
+		if (!"出品中".equals(item.getStatus())
+				|| item.isHeldByOther(appOrder.getBuyer().getId(), LocalDateTime.now())) {
+			return null;
+		}
 
-		// ステータスを購入済へ
+		// ステータスを購入済へ（日次売上集計も移し替え）
+		orderStatsService.recordTransition(appOrder, appOrder.getStatus(), "購入済");
 		appOrder.setStatus("購入済");
 
-		// 商品を売却済みに更新（在庫 1 想定）
-		itemService.markItemAsSold(appOrder.getItem().getId());
+		// 商品を売却済みに更新（在庫 1 想定。確保も解除される）
+		itemService.markItemAsSold(item.getId());
 
 		// 保存
 		AppOrder savedOrder = appOrderRepository.save(appOrder);
@@ -139,30 +329,73 @@ public class AppOrderService {
 					savedOrder.getBuyer().getName(),
 					savedOrder.getPrice());
 
-			// 例外は内側で処理してログ出し
-			lineNotifyService.sendMessage(savedOrder.getItem().getSeller().getLineNotifyToken(), message);
+			// 同じトランザクションで送信待ちキューへ登録（送信はバックグラウンド）
+			notificationOutboxService.enqueue(savedOrder.getItem().getSeller(), message);
 		}
 
 		// 確定した注文を返す
 		return savedOrder;
 	}
 
+	//放置された決済待ち注文をまとめてキャンセルし、商品の確保を解除（1 トランザクション・一括更新）
+	//照合中に状態が変わった注文（決済待ち以外）は対象外
+	@Transactional
+	public int expirePendingOrders(List<Long> orderIds) {
+		List<AppOrder> orders = appOrderRepository.findAllById(orderIds).stream()
+				.filter(o -> "決済待ち".equals(o.getStatus()))
+				.toList();
+		if (orders.isEmpty()) {
+			return 0;
+		}
+		orderStatsService.recordTransitions(orders, "決済待ち", "キャンセル");
+		for (AppOrder o : orders) {
+			o.setStatus("キャンセル");
+			releaseHold(o);
+		}
+		appOrderRepository.saveAll(orders);
+		return orders.size();
+	}
+
+	//購入済・発送済なら確定済み
+	private boolean isCompleted(AppOrder appOrder) {
+		return "購入済".equals(appOrder.getStatus()) || "発送済".equals(appOrder.getStatus());
+	}
+
 	// すべての注文取得（管理者ダッシュボード等）
 	public List<AppOrder> getAllOrders() {
 		// 全件を返す
 		return appOrderRepository.findAll();
 	}
 
-	// 買い手別の注文一覧
-	public List<AppOrder> getOrdersByBuyer(User buyer) {
-		// リポジトリ委譲
-		return appOrderRepository.findByBuyer(buyer);
+	// 買い手の購入履歴：新しい順に、カーソル位置より後ろを size 件返す（status 指定時はそのステータスのみ）
+	public Slice<AppOrder> getBuyerHistory(User buyer, String status, KeysetCursor cursor, int size) {
+		// カーソル未指定なら先頭ページ
+		KeysetCursor c = (cursor != null) ? cursor : KeysetCursor.FIRST;
+		return appOrderRepository.findBuyerHistoryBefore(buyer, statusFilter(status),
+				c.createdAt(), c.id(), PageRequest.of(0, size));
+	}
+
+	// 出品者の販売履歴：新しい順に、カーソル位置より後ろを size 件返す（status 指定時はそのステータスのみ）
+	public Slice<AppOrder> getSellerHistory(User seller, String status, KeysetCursor cursor, int size) {
+		// カーソル未指定なら先頭ページ
+		KeysetCursor c = (cursor != null) ? cursor : KeysetCursor.FIRST;
+		return appOrderRepository.findSellerHistoryBefore(seller.getId(), statusFilter(status),
+				c.createdAt(), c.id(), PageRequest.of(0, size));
+	}
+
+	// 注文履歴の次ページ用カーソル（続きが無ければ null）
+	public String nextHistoryCursor(Slice<AppOrder> history) {
+		if (!history.hasNext() || history.isEmpty()) {
+			return null;
+		}
+		// 表示中で最も古い注文の位置
+		AppOrder last = history.getContent().get(history.getNumberOfElements() - 1);
+		return KeysetCursor.of(last.getCreatedAt(), last.getId()).toString();
 	}
 
-	// 売り手別の注文一覧
-	public List<AppOrder> getOrdersBySeller(User seller) {
-		// リポジトリ委譲
-		return appOrderRepository.findByItem_Seller(seller);
+	// 絞り込み対象のステータス（未指定・不明な値なら全ステータス）
+	private static List<String> statusFilter(String status) {
+		return ORDER_STATUSES.contains(status) ? List.of(status) : ORDER_STATUSES;
 	}
 
 	// 発送処理：ステータスと通知
@@ -173,7 +406,8 @@ public class AppOrderService {
 		AppOrder appOrder = appOrderRepository.findById(orderId)
 				.orElseThrow(() -> new IllegalArgumentException("Order not found"));
 
-		// ステータス更新
+		// ステータス更新（日次売上集計も移し替え）
+		orderStatsService.recordTransition(appOrder, appOrder.getStatus(), "発送済");
 		appOrder.setStatus("発送済");
 
 		// 保存
@@ -186,8 +420,8 @@ public class AppOrderService {
 					savedOrder.getItem().getName(),
 					savedOrder.getItem().getSeller().getName());
 
-			// 送信試行（失敗はログのみ）
-			lineNotifyService.sendMessage(savedOrder.getBuyer().getLineNotifyToken(), message);
+			// 同じトランザクションで送信待ちキューへ登録（送信はバックグラウンド）
+			notificationOutboxService.enqueue(savedOrder.getBuyer(), message);
 		}
 	}
 
@@ -197,32 +431,21 @@ public class AppOrderService {
 		return appOrderRepository.findById(orderId);
 	}
 
-	// 最新の“購入済”注文 ID（レビュー画面遷移用）
-	public Optional<Long> getLatestCompletedOrderId() {
-		// ステータスが購入済の中で最大 ID を返す
-		return appOrderRepository.findAll().stream()
-				.filter(o -> "購入済".equals(o.getStatus()))
-				.map(AppOrder::getId)
-				.max(Long::compare);
+	// 買い手の最新の確定済み（購入済/発送済）注文（買い手 × 作成日時のインデックスで 1 件だけ読む）
+	public Optional<AppOrder> getLatestCompletedOrderForBuyer(User buyer) {
+		return appOrderRepository.findFirstByBuyerAndStatusInOrderByCreatedAtDescIdDesc(
+				buyer, List.of("購入済", "発送済"));
 	}
 
-	// 指定期間の売上合計
+	// 指定期間の売上合計（日次集計から算出）
 	public BigDecimal getTotalSales(LocalDate startDate, LocalDate endDate) {
-		// 期間内の購入済/発送済のみ合計
-		return appOrderRepository.findAll().stream()
-				.filter(order -> order.getStatus().equals("購入済") || order.getStatus().equals("発送済"))
-				.filter(order -> order.getCreatedAt().toLocalDate().isAfter(startDate.minusDays(1))
-						&& order.getCreatedAt().toLocalDate().isBefore(endDate.plusDays(1)))
-				.map(AppOrder::getPrice)
-				.reduce(BigDecimal.ZERO, BigDecimal::add);
+		// 期間内の購入済/発送済の合計
+		return orderStatsService.getTotalSales(startDate, endDate);
 	}
 
-	// 指定期間のステータス別件数
+	// 指定期間のステータス別件数（日次集計から算出）
 	public Map<String, Long> getOrderCountByStatus(LocalDate startDate, LocalDate endDate) {
-		// 作成日で期間フィルタしてグルーピング
-		return appOrderRepository.findAll().stream()
-				.filter(order -> order.getCreatedAt().toLocalDate().isAfter(startDate.minusDays(1))
-						&& order.getCreatedAt().toLocalDate().isBefore(endDate.plusDays(1)))
-				.collect(Collectors.groupingBy(AppOrder::getStatus, Collectors.counting()));
+		// 作成日で期間を絞ったステータス別件数
+		return orderStatsService.getOrderCountByStatus(startDate, endDate);
 	}
 }
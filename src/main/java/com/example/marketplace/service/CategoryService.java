@@ -1,10 +1,23 @@
 package com.example.marketplace.service;
 
+// スナップショットの生成時刻を扱うための import
+import java.time.Duration;
+import java.time.Instant;
 // 一覧返却に使う List を import
 import java.util.List;
+// id → カテゴリの対応表に使う Map を import
+import java.util.Map;
 // Optional を返すために import
 import java.util.Optional;
+// スナップショットを原子的に差し替えるための import
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+// 設定値を注入するためのアノテーションを import
+import org.springframework.beans.factory.annotation.Value;
+// 並び順指定のための import
+import org.springframework.data.domain.Sort;
 // DI 対象サービスを示すアノテーションを import
 import org.springframework.stereotype.Service;
 
@@ -14,45 +27,115 @@ import com.example.marketplace.entity.Category;
 import com.example.marketplace.repository.CategoryRepository;
 
 // サービス層として登録
+// カテゴリはほとんど変更されないため、読み取りは DB ではなくメモリ上のスナップショットから返す
+// 他ノードでの変更は ChangeFeedService（category）で通知を受けて再読み込みする
 @Service
 public class CategoryService {
 
+	// 変更記録の topic
+	static final String TOPIC = "category";
+
 	// カテゴリリポジトリの参照
 	private final CategoryRepository categoryRepository;
 
+	// ノード間の変更通知
+	private final ChangeFeedService changeFeedService;
+
+	// スナップショットの有効期間（変更通知を取りこぼした場合の保険として、期限切れ時にも再読み込み）
+	private final Duration maxAge;
+
+	// 現在のスナップショット（未構築の間は null）
+	private final AtomicReference<CategorySnapshot> snapshot = new AtomicReference<>();
+
 	// 依存性をコンストラクタで注入
-	public CategoryService(CategoryRepository categoryRepository) {
+	public CategoryService(CategoryRepository categoryRepository,
+			ChangeFeedService changeFeedService,
+			@Value("${category.snapshot.max-age-seconds:300}") long maxAgeSeconds) {
 		// フィールドへ設定
 		this.categoryRepository = categoryRepository;
+		this.changeFeedService = changeFeedService;
+		// 有効期間を設定
+		this.maxAge = Duration.ofSeconds(maxAgeSeconds);
+		// 他ノードでの変更時にスナップショットを再構築
+		changeFeedService.subscribe(TOPIC, id -> refresh(), this::refresh);
 	}
 
-	// すべてのカテゴリを取得
+	// すべてのカテゴリを取得（ID 順）
 	public List<Category> getAllCategories() {
-		// 全件取得を委譲
-		return categoryRepository.findAll();
+		// スナップショットの一覧を返す
+		return currentSnapshot().categories();
 	}
 
 	// 主キーでカテゴリを取得
 	public Optional<Category> getCategoryById(Long id) {
-		// Optional をそのまま返す
-		return categoryRepository.findById(id);
+		// スナップショットの対応表から引く
+		return Optional.ofNullable(currentSnapshot().byId().get(id));
 	}
 
 	// 名称でカテゴリを取得（名称は一意前提）
 	public Optional<Category> getCategoryByName(String name) {
-		// 名称検索を委譲
-		return categoryRepository.findByName(name);
+		// スナップショットから名称一致を探す
+		return currentSnapshot().categories().stream()
+				.filter(c -> c.getName().equals(name))
+				.findFirst();
 	}
 
 	// 新規 / 更新保存
 	public Category saveCategory(Category category) {
 		// save に委譲
-		return categoryRepository.save(category);
+		Category saved = categoryRepository.save(category);
+		// コミット後にスナップショットを再構築し、他ノードへも通知
+		TransactionHooks.afterCommit(this::refresh);
+		changeFeedService.publish(TOPIC, saved.getId());
+		return saved;
 	}
 
 	// 削除
 	public void deleteCategory(Long id) {
 		// ID 指定で削除
 		categoryRepository.deleteById(id);
+		// コミット後にスナップショットを再構築し、他ノードへも通知
+		TransactionHooks.afterCommit(this::refresh);
+		changeFeedService.publish(TOPIC, id);
+	}
+
+	/**
+	 * DB からカテゴリを読み直してスナップショットを差し替える
+	 * 他ノードでカテゴリが変更された場合の再読み込みにも使用する
+	 */
+	public void refresh() {
+		// 読み込み中も旧スナップショットで応答できるよう、構築後に原子的に差し替える
+		List<Category> categories = List.copyOf(categoryRepository.findAll(Sort.by("id")));
+		Map<Long, Category> byId = categories.stream()
+				.collect(Collectors.toUnmodifiableMap(Category::getId, Function.identity()));
+		snapshot.getAndUpdate(old -> new CategorySnapshot(
+				old == null ? 1 : old.version() + 1,
+				categories,
+				byId,
+				Instant.now()));
+	}
+
+	// 現在のスナップショットのバージョン（未構築なら 0）
+	public long getSnapshotVersion() {
+		CategorySnapshot current = snapshot.get();
+		return current == null ? 0 : current.version();
+	}
+
+	// 有効なスナップショットを返す（未構築または期限切れなら再読み込み）
+	private CategorySnapshot currentSnapshot() {
+		CategorySnapshot current = snapshot.get();
+		if (current == null || current.loadedAt().plus(maxAge).isBefore(Instant.now())) {
+			refresh();
+			current = snapshot.get();
+		}
+		return current;
+	}
+
+	// 不変のカテゴリスナップショット（一覧・対応表・バージョン・読み込み時刻）
+	private record CategorySnapshot(
+			long version,
+			List<Category> categories,
+			Map<Long, Category> byId,
+			Instant loadedAt) {
 	}
 }
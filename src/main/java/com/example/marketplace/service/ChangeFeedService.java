@@ -0,0 +1,128 @@
+package com.example.marketplace.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.marketplace.entity.ChangeFeedEntry;
+import com.example.marketplace.repository.ChangeFeedRepository;
+
+/**
+ * ノード間の変更通知（change_feed テーブルのポーリング）
+ * ・publish：変更したトランザクションで変更記録を登録する（ロールバックされた変更は通知されない）
+ * ・各ノードは短い間隔で前回のポーリング以降の記録を読み、未通知のものを topic の購読者へ渡す
+ *   （コミット順と ID 順が前後しても取りこぼさないよう、前回の開始時刻より一定時間前から読み直し、通知済みの ID は飛ばす。
+ *   ポーリングが遅れても読み始める位置は進まないため、遅れた分の記録も通知される）
+ * ・ポーリングが保存期間を超えて止まっていた場合は、記録が削除されている可能性があるため購読者に全件の再同期を依頼する
+ * ・購読者は通知を受けたら対象を DB から読み直す・キャッシュを破棄するなど、何度受けても同じ結果になる処理にする
+ */
+@Service
+public class ChangeFeedService {
+
+	// 変更記録のリポジトリ
+	private final ChangeFeedRepository changeFeedRepository;
+	// 変更記録を読む範囲（ポーリング間隔・トランザクションの長さ・ノード間の時刻のずれより十分長くする）
+	private final Duration window;
+	// 変更記録の保存期間
+	private final Duration retention;
+	// topic → 購読者
+	private final Map<String, List<Consumer<Long>>> subscribers = new ConcurrentHashMap<>();
+	// 記録を取りこぼした可能性がある場合の再同期処理
+	private final List<Runnable> resyncs = new CopyOnWriteArrayList<>();
+	// 次回のポーリングで読み始める日時（前回のポーリング開始時刻 - window。以下はポーリングのスレッドのみが使う）
+	private LocalDateTime readFrom;
+	// readFrom 以降で通知済みの記録の ID
+	private Set<Long> delivered = new HashSet<>();
+
+	// 依存性と設定値をコンストラクタで注入
+	public ChangeFeedService(ChangeFeedRepository changeFeedRepository,
+			@Value("${change-feed.window-seconds:30}") long windowSeconds,
+			@Value("${change-feed.retention-minutes:60}") long retentionMinutes) {
+		this.changeFeedRepository = changeFeedRepository;
+		this.window = Duration.ofSeconds(windowSeconds);
+		this.retention = Duration.ofMinutes(retentionMinutes);
+		// 購読者は起動時に DB から読み込むため、起動時点より前の記録は通知しない
+		this.readFrom = LocalDateTime.now().minus(window);
+	}
+
+	// 変更を登録（呼び出し元のトランザクションに参加する）
+	@Transactional
+	public void publish(String topic, Long entityId) {
+		if (entityId == null) {
+			return;
+		}
+		changeFeedRepository.save(new ChangeFeedEntry(topic, entityId));
+	}
+
+	/**
+	 * topic の変更を購読（起動時に各サービスが登録する）
+	 *
+	 * @param listener 変更された対象の ID を受け取る処理
+	 * @param resync   記録を取りこぼした可能性がある場合に、対象を全件読み直す・キャッシュを全件破棄する処理
+	 */
+	public void subscribe(String topic, Consumer<Long> listener, Runnable resync) {
+		subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(listener);
+		resyncs.add(resync);
+	}
+
+	// 前回のポーリング以降の変更記録を読み、未通知のものを購読者へ渡す
+	@Scheduled(fixedDelayString = "${change-feed.poll-interval-millis:2000}")
+	public void poll() {
+		LocalDateTime started = LocalDateTime.now();
+		// 保存期間を超えて止まっていた（読むべき記録が削除されたかもしれない）：全件を再同期して読み始めを現在へ
+		if (readFrom.isBefore(started.minus(retention))) {
+			System.err.println("Change feed was not polled since " + readFrom + ", resyncing all subscribers.");
+			for (Runnable resync : resyncs) {
+				try {
+					resync.run();
+				} catch (RuntimeException e) {
+					System.err.println("Failed to resync change feed subscriber: " + e.getMessage());
+				}
+			}
+			readFrom = started.minus(window);
+			delivered = new HashSet<>();
+		}
+
+		List<ChangeFeedEntry> entries = changeFeedRepository.findSince(readFrom);
+		LocalDateTime nextReadFrom = started.minus(window);
+		Set<Long> seen = new HashSet<>();
+		for (ChangeFeedEntry entry : entries) {
+			// 次回も読み直す範囲の記録だけ、通知済みとして覚えておく
+			if (!entry.getCreatedAt().isBefore(nextReadFrom)) {
+				seen.add(entry.getId());
+			}
+			if (delivered.contains(entry.getId())) {
+				continue;
+			}
+			for (Consumer<Long> listener : subscribers.getOrDefault(entry.getTopic(), List.of())) {
+				try {
+					listener.accept(entry.getEntityId());
+				} catch (RuntimeException e) {
+					// 1 件の失敗で他の通知を止めない
+					System.err.println("Failed to apply change " + entry.getTopic() + "/" + entry.getEntityId()
+							+ ": " + e.getMessage());
+				}
+			}
+		}
+		// 読み始めを進めるのは読み終えた後（途中で例外になれば次回も同じ位置から読む）
+		readFrom = nextReadFrom;
+		delivered = seen;
+	}
+
+	// 古い変更記録を削除
+	@Scheduled(fixedDelayString = "${change-feed.cleanup-interval-millis:600000}")
+	public void purgeOld() {
+		changeFeedRepository.deleteOlderThan(LocalDateTime.now().minus(retention));
+	}
+}
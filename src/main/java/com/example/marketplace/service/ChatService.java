@@ -3,10 +3,19 @@ package com.example.marketplace.service;
 //送信日時を記録するために LocalDateTime を import
 import java.time.LocalDateTime;
 //履歴表示に使う List を import
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+//設定値を注入するためのアノテーションを import
+import org.springframework.beans.factory.annotation.Value;
+//履歴のページングに使う型を import
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 //DI 対象のサービスであることを示すアノテーションを import
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 //チャットエンティティを扱うための import
 import com.example.marketplace.entity.Chat;
@@ -26,30 +35,55 @@ public class ChatService {
 	private final ChatRepository chatRepository;
 	//商品リポジトリの参照
 	private final ItemRepository itemRepository;
-	//LINE 通知サービスの参照
-	private final LineNotifyService lineNotifyService;
+	//LINE 通知の送信待ちキューの参照
+	private final NotificationOutboxService notificationOutboxService;
+	//チャットのリアルタイム配信サービスの参照
+	private final ChatStreamService chatStreamService;
+	//画面に一度に表示するチャット件数
+	private final int historyPageSize;
 
 	//依存性をコンストラクタで注入
 	public ChatService(ChatRepository chatRepository, ItemRepository itemRepository,
-			LineNotifyService lineNotifyService) {
+			NotificationOutboxService notificationOutboxService, ChatStreamService chatStreamService,
+			@Value("${chat.history.page-size:50}") int historyPageSize) {
 		//フィールドへ設定
 		this.chatRepository = chatRepository;
 		//フィールドへ設定
 		this.itemRepository = itemRepository;
 		//フィールドへ設定
-		this.lineNotifyService = lineNotifyService;
+		this.notificationOutboxService = notificationOutboxService;
+		//フィールドへ設定
+		this.chatStreamService = chatStreamService;
+		//フィールドへ設定
+		this.historyPageSize = historyPageSize;
 	}
 
-	//商品 ID に紐づくチャット履歴を昇順で取得
-	public List<Chat> getChatMessagesByItem(Long itemId) {
-		//商品の存在を確認（なければ 400 相当の例外）
-		Item item = itemRepository.findById(itemId)
-				.orElseThrow(() -> new IllegalArgumentException("Item not found"));
-		// 作成日時昇順でリストを返す
-		return chatRepository.findByItemOrderByCreatedAtAsc(item);
+	//商品 ID に紐づくチャット履歴のうち、カーソルより古い最新 N 件を取得
+	//表示用に古い順へ並べ直して返す（hasNext は、さらに古いメッセージがあるかを表す）
+	public Slice<Chat> getChatHistory(Long itemId, KeysetCursor before) {
+		// カーソル未指定なら最新から
+		KeysetCursor c = (before != null) ? before : KeysetCursor.FIRST;
+		// 新しい順で N 件取得
+		Slice<Chat> latest = chatRepository.findByItemIdBefore(
+				itemId, c.createdAt(), c.id(), PageRequest.of(0, historyPageSize));
+		// 画面表示は古い順
+		List<Chat> ascending = new ArrayList<>(latest.getContent());
+		Collections.reverse(ascending);
+		return new SliceImpl<>(ascending, latest.getPageable(), latest.hasNext());
+	}
+
+	//さらに古い履歴を読み込むためのカーソル（無ければ null）
+	public String olderCursor(Slice<Chat> history) {
+		if (!history.hasNext() || history.isEmpty()) {
+			return null;
+		}
+		// 表示中で最も古いメッセージの位置
+		Chat oldest = history.getContent().get(0);
+		return KeysetCursor.of(oldest.getCreatedAt(), oldest.getId()).toString();
 	}
 
 	// メッセージ送信：保存して相手に LINE 通知（可能なら）を行う
+	@Transactional
 	public Chat sendMessage(Long itemId, User sender, String message) {
 		// 対象商品を取得（存在しなければ例外）
 		Item item = itemRepository.findById(itemId)
@@ -66,15 +100,17 @@ public class ChatService {
 		chat.setCreatedAt(LocalDateTime.now());
 		// 保存して永続化
 		Chat savedChat = chatRepository.save(chat);
+		// 購読中のクライアントへリアルタイム配信（コミット後）
+		TransactionHooks.afterCommit(() -> chatStreamService.publish(savedChat));
 		// 簡易実装：受信者を出品者とみなして通知（詳細な相手判定は拡張で対応）
 		User receiver = item.getSeller();
-		// 受信者が通知トークンを設定していれば通知を送る
+		// 受信者が通知トークンを設定していれば通知を登録（送信はバックグラウンド）
 		if (receiver != null && receiver.getLineNotifyToken() != null) {
 			// 通知本文を作成
 			String notificationMessage = String.format("\n 商品「%s」に関する新しいメッセージ"
 					+ "が届きました！\n 送信者: %s\n メッセージ: %s", item.getName(), sender.getName(), message);
-			// LINE Notifyへ送信
-			lineNotifyService.sendMessage(receiver.getLineNotifyToken(), notificationMessage);
+			// 送信待ちキューへ登録
+			notificationOutboxService.enqueue(receiver, notificationMessage);
 		}
 		// 保存結果を返却
 		return savedChat;
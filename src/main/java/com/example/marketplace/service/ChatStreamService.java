@@ -0,0 +1,129 @@
+package com.example.marketplace.service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.marketplace.entity.Chat;
+import com.example.marketplace.repository.ChatRepository;
+
+/**
+ * 商品ごとのチャットを Server-Sent Events で配信するサービス
+ * 接続中のクライアントをメモリ上で商品 ID ごとに保持し、新着メッセージを全員へ送る
+ * 再接続時は Last-Event-ID（= チャット ID）以降の未受信分を chat テーブルから補う
+ */
+@Service
+public class ChatStreamService {
+
+	// SSE のイベント名
+	private static final String EVENT_NAME = "chat";
+
+	// チャットリポジトリの参照（再接続時の取りこぼし分の取得に使用）
+	private final ChatRepository chatRepository;
+
+	// 接続のタイムアウト（ミリ秒）。切れた場合はブラウザの EventSource が自動で再接続する
+	private final long timeoutMillis;
+
+	// 商品 ID → 接続中のエミッタ集合
+	private final Map<Long, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+	public ChatStreamService(ChatRepository chatRepository,
+			@Value("${chat.stream.timeout-millis:300000}") long timeoutMillis) {
+		this.chatRepository = chatRepository;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	/**
+	 * 商品のチャットを購読する
+	 *
+	 * @param itemId      対象商品 ID
+	 * @param lastEventId 最後に受信したチャット ID（初回接続時は null）
+	 * @return クライアントへ返すエミッタ
+	 */
+	public SseEmitter subscribe(Long itemId, Long lastEventId) {
+		SseEmitter emitter = new SseEmitter(timeoutMillis);
+		// 購読解除との競合で空集合ごと消されないよう、登録は compute 内で行う
+		subscribers.compute(itemId, (id, emitters) -> {
+			Set<SseEmitter> set = (emitters != null) ? emitters : ConcurrentHashMap.newKeySet();
+			set.add(emitter);
+			return set;
+		});
+
+		// 切断・タイムアウト・エラー時は購読を解除
+		Runnable unsubscribe = () -> unsubscribe(itemId, emitter);
+		emitter.onCompletion(unsubscribe);
+		emitter.onTimeout(unsubscribe);
+		emitter.onError(e -> unsubscribe.run());
+
+		// 再接続の場合は未受信分を先に送る
+		if (lastEventId != null) {
+			List<Chat> missed = chatRepository.findByItemIdAndIdGreaterThanOrderByIdAsc(itemId, lastEventId);
+			for (Chat chat : missed) {
+				if (!send(emitter, chat)) {
+					break;
+				}
+			}
+		}
+		return emitter;
+	}
+
+	/**
+	 * 保存済みのチャットを購読中のクライアントへ配信する
+	 */
+	public void publish(Chat chat) {
+		Set<SseEmitter> emitters = subscribers.get(chat.getItem().getId());
+		if (emitters == null) {
+			return;
+		}
+		for (SseEmitter emitter : emitters) {
+			send(emitter, chat);
+		}
+	}
+
+	// 現在の購読数（監視用）
+	public int subscriberCount(Long itemId) {
+		Set<SseEmitter> emitters = subscribers.get(itemId);
+		return emitters == null ? 0 : emitters.size();
+	}
+
+	// 1 件送信。送信できなかった接続は閉じて購読を解除する
+	private boolean send(SseEmitter emitter, Chat chat) {
+		try {
+			emitter.send(SseEmitter.event()
+					.id(String.valueOf(chat.getId()))
+					.name(EVENT_NAME)
+					.data(toPayload(chat), MediaType.APPLICATION_JSON));
+			return true;
+		} catch (IOException | IllegalStateException e) {
+			emitter.completeWithError(e);
+			unsubscribe(chat.getItem().getId(), emitter);
+			return false;
+		}
+	}
+
+	private void unsubscribe(Long itemId, SseEmitter emitter) {
+		subscribers.computeIfPresent(itemId, (id, emitters) -> {
+			emitters.remove(emitter);
+			return emitters.isEmpty() ? null : emitters;
+		});
+	}
+
+	// クライアントへ送る JSON の内容（パスワード等を含めないよう必要な項目のみ）
+	private Map<String, Object> toPayload(Chat chat) {
+		Map<String, Object> payload = new LinkedHashMap<>();
+		payload.put("id", chat.getId());
+		payload.put("senderName", chat.getSender().getName());
+		payload.put("senderId", chat.getSender().getId());
+		payload.put("message", chat.getMessage());
+		payload.put("createdAt", chat.getCreatedAt().toString());
+		return payload;
+	}
+}
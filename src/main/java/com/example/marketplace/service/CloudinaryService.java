@@ -3,6 +3,7 @@ package com.example.marketplace.service;
 // I/O 例外処理のための import
 import java.io.IOException;
 // アップロード結果を受け取る Map を import
+import java.util.List;
 import java.util.Map;
 
 // 設定値を外部から注入するためのアノテーションを import
@@ -10,12 +11,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 // DI 対象のサービスであることを示すアノテーションを import
 import org.springframework.stereotype.Service;
-// Spring のファイルアップロード表現を import
-import org.springframework.web.multipart.MultipartFile;
 
 // Cloudinary の Java SDK のエントリポイントを import
 import com.cloudinary.Cloudinary;
+import com.cloudinary.EagerTransformation;
 import com.cloudinary.utils.ObjectUtils;
+import com.example.marketplace.dto.ImageRenditions;
 
 // サービス層として登録
 @Service
@@ -28,6 +29,9 @@ public class CloudinaryService {
 	// Cloudinary クライアントの参照
 	private final Cloudinary cloudinary;
 
+	// 縮小版のサイズ設定
+	private final ImageRenditionService imageRenditionService;
+
 	// 必要な認証情報をコンストラクタインジェクションで受け取る
 	public CloudinaryService(
 			// クラウド名を application.properties から注入
@@ -35,25 +39,49 @@ public class CloudinaryService {
 			// API キーを注入
 			@Value("${cloudinary.api-key}") String apiKey,
 			// API シークレットを注入
-			@Value("${cloudinary.api-secret}") String apiSecret) {
+			@Value("${cloudinary.api-secret}") String apiSecret,
+			// 縮小版のサイズ設定を注入
+			ImageRenditionService imageRenditionService) {
 
 		// 渡された資格情報で Cloudinary クライアントを初期化
 		this.cloudinary = new Cloudinary(ObjectUtils.asMap(
 				"cloud_name", cloudName,
 				"api_key", apiKey,
 				"api_secret", apiSecret));
+		this.imageRenditionService = imageRenditionService;
 	}
 
-	// 画像をアップロードして公開 URL を返す（空ファイルは null）
-	public String uploadFile(MultipartFile file) throws IOException {
-		if (file.isEmpty())
-			return null;
-
+	// 一時ファイルへ書き出した画像をアップロードして元画像・縮小版の公開 URL を返す
+	// 縮小版は eager 変換としてアップロード時に Cloudinary 側で生成・保存させる
+	// ファイルから送信するため、画像全体をヒープに載せない（一時ファイルの close は呼び出し側で行う）
+	public ImageRenditions uploadImage(SpooledUpload upload) throws IOException {
 		Map<?, ?> uploadResult = cloudinary.uploader()
-				.upload(file.getBytes(), ObjectUtils.emptyMap());
+				.upload(upload.getPath().toFile(), ObjectUtils.asMap("eager", List.of(
+						rendition(imageRenditionService.getDetailSize()),
+						rendition(imageRenditionService.getThumbnailSize()))));
 
 		Object url = uploadResult.get("url");
-		return (url == null) ? null : url.toString();
+		if (url == null) {
+			return null;
+		}
+		// eager 変換の結果は指定順に返る（取得できなければ元画像で代替）
+		List<?> eager = (uploadResult.get("eager") instanceof List<?> list) ? list : List.of();
+		return new ImageRenditions(url.toString(),
+				eagerUrl(eager, 0, url.toString()),
+				eagerUrl(eager, 1, url.toString()));
+	}
+
+	// 長辺を size 以下に縮小し、品質自動の JPEG に変換する eager 変換
+	private static EagerTransformation rendition(int size) {
+		return new EagerTransformation().width(size).height(size).crop("limit").quality("auto").format("jpg");
+	}
+
+	// eager 変換結果の URL（無ければ fallback）
+	private static String eagerUrl(List<?> eager, int index, String fallback) {
+		if (index < eager.size() && eager.get(index) instanceof Map<?, ?> derived && derived.get("url") != null) {
+			return derived.get("url").toString();
+		}
+		return fallback;
 	}
 
 	// Cloudinary 上のリソースを削除（URL から public_id を推定）
@@ -68,7 +96,7 @@ public class CloudinaryService {
 		// 拡張子を除いた public_id を推定
 		String publicIdWithoutExtension = fileName.substring(0, fileName.lastIndexOf('.'));
 
-		// public_id を指定して削除 API を呼び出す
+		// public_id を指定して削除 API を呼び出す（eager 変換で生成した縮小版も合わせて削除される）
 		cloudinary.uploader()
 				.destroy(publicIdWithoutExtension, ObjectUtils.emptyMap());
 	}
@@ -0,0 +1,129 @@
+package com.example.marketplace.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.marketplace.entity.User;
+import com.example.marketplace.repository.UserRepository;
+
+/**
+ * ログイン中ユーザー（User エンティティ）のキャッシュ
+ * ・ユーザー ID ごとにプロフィールを保持し、ハンドラへ渡すたびに users テーブルを検索しない
+ * ・ログイン時に CustomUserDetailsService が読み込んだユーザーを登録する
+ * ・ユーザーの更新時は UserCacheInvalidationService が evict で破棄する（他ノードの更新も同様）
+ * ・読み込み中に破棄された場合（BAN の確定前に読んだ値など）は、読み込んだ古い値を登録しない
+ * ・返すのは毎回新しいコピー（パスワードは持たない）のため、呼び出し側で変更してもキャッシュに影響しない
+ */
+@Service
+public class CurrentUserCache {
+
+	// ユーザーリポジトリ（キャッシュにない場合の読み込み）
+	private final UserRepository userRepository;
+	// 有効期限
+	private final long ttlNanos;
+	// 最大件数（超えたら期限切れを捨て、それでも多ければ全件破棄）
+	private final int maxEntries;
+	// ユーザー ID → キャッシュ
+	private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+	// ユーザーごとの破棄の世代（ユーザー ID をストライプに割り当て、evict・clear のたびに進む）
+	private final AtomicLongArray userGenerations = new AtomicLongArray(GENERATION_STRIPES);
+	// 全体の破棄の世代（読み込むまでユーザー ID が分からないログイン時用、evict・clear のたびに進む）
+	private final AtomicLong generation = new AtomicLong();
+
+	// ユーザーごとの破棄の世代のストライプ数
+	private static final int GENERATION_STRIPES = 256;
+
+	// 依存性と設定値をコンストラクタで注入
+	public CurrentUserCache(UserRepository userRepository,
+			@Value("${user.cache.ttl-seconds:60}") long ttlSeconds,
+			@Value("${user.cache.max-entries:10000}") int maxEntries) {
+		this.userRepository = userRepository;
+		this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+		this.maxEntries = maxEntries;
+	}
+
+	// ユーザーを取得（キャッシュになければ読み込んで登録）
+	public Optional<User> get(Long userId) {
+		Entry entry = entries.get(userId);
+		if (entry != null && !entry.isExpired(System.nanoTime())) {
+			return Optional.of(copy(entry.user()));
+		}
+		int stripe = stripe(userId);
+		long userGeneration = userGenerations.get(stripe);
+		return userRepository.findById(userId).map(user -> {
+			register(user, () -> userGenerations.get(stripe) != userGeneration);
+			return copy(user);
+		});
+	}
+
+	// 全体の破棄の世代（読み込む前に取得し、put に渡す）
+	public long generation() {
+		return generation.get();
+	}
+
+	// 読み込んだユーザーを登録（generation の取得後に破棄されていれば登録しない）
+	public void put(User user, long generation) {
+		register(user, () -> this.generation.get() != generation);
+	}
+
+	// ユーザーの更新時に破棄（世代を進めてから破棄し、読み込み中の古い値が後から登録されないようにする）
+	public void evict(Long userId) {
+		userGenerations.incrementAndGet(stripe(userId));
+		generation.incrementAndGet();
+		entries.remove(userId);
+	}
+
+	// 全件破棄
+	public void clear() {
+		for (int i = 0; i < GENERATION_STRIPES; i++) {
+			userGenerations.incrementAndGet(i);
+		}
+		generation.incrementAndGet();
+		entries.clear();
+	}
+
+	// 登録してから世代を確認し、読み込み中に破棄されていたら取り消す
+	// （確認より前の破棄は世代で、後の破棄は evict 自身が登録済みの値を消すため、古い値は残らない）
+	private void register(User user, BooleanSupplier invalidated) {
+		if (user.getId() == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (entries.size() >= maxEntries) {
+			entries.values().removeIf(e -> e.isExpired(now));
+			if (entries.size() >= maxEntries) {
+				entries.clear();
+			}
+		}
+		Entry entry = new Entry(copy(user), now + ttlNanos);
+		entries.put(user.getId(), entry);
+		if (invalidated.getAsBoolean()) {
+			entries.remove(user.getId(), entry);
+		}
+	}
+
+	private static int stripe(Long userId) {
+		return Math.floorMod(userId.hashCode(), GENERATION_STRIPES);
+	}
+
+	// プロフィールのコピー（パスワードは含めない）
+	private static User copy(User u) {
+		return new User(u.getId(), u.getName(), u.getEmail(), null, u.getRole(), u.getLineNotifyToken(),
+				u.isEnabled(), u.isBanned(), u.getBanReason(), u.getBannedAt(), u.getBannedByAdminId());
+	}
+
+	// キャッシュ 1 件
+	private record Entry(User user, long expiresAt) {
+		boolean isExpired(long now) {
+			return now - expiresAt > 0;
+		}
+	}
+}
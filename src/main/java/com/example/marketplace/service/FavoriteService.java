@@ -2,14 +2,14 @@ package com.example.marketplace.service;
 
 //コレクション操作のための import
 import java.util.List;
-//Stream で変換するための import
-import java.util.stream.Collectors;
 
 //サービスアノテーションの import
 import org.springframework.stereotype.Service;
 //トランザクション境界を宣言するための import
 import org.springframework.transaction.annotation.Transactional;
 
+//一覧カードの import
+import com.example.marketplace.dto.ItemCard;
 //お気に入りエンティティの import
 import com.example.marketplace.entity.FavoriteItem;
 //商品エンティティの import
@@ -94,12 +94,10 @@ public class FavoriteService {
 		return favoriteItemRepository.existsByUserAndItem(user, item);
 	}
 
-	// ユーザのお気に入り商品一覧を返す
-	public List<Item> getFavoriteItemsByUser(User user) {
+	// ユーザのお気に入り商品一覧（カード）を返す
+	public List<ItemCard> getFavoriteItemsByUser(User user) {
 
-		// FavoriteItem から Item へマッピング
-		return favoriteItemRepository.findByUser(user).stream()
-				.map(FavoriteItem::getItem)
-				.collect(Collectors.toList());
+		// お気に入りと商品・出品者・カテゴリを 1 クエリで取得
+		return favoriteItemRepository.findItemCardsByUser(user);
 	}
 }
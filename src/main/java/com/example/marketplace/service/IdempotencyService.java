@@ -0,0 +1,191 @@
+package com.example.marketplace.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.marketplace.entity.IdempotencyRecord;
+import com.example.marketplace.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 冪等キーによる POST の重複実行防止
+ * ・同じキーの 2 回目以降は処理をやり直さず、保存済みの結果を返す（有効期限内）
+ * ・同じノードで同時に来た重複は、実行中のリクエストの完了を待って同じ結果を返す
+ * ・他ノードで実行中の重複は、結果が保存されるまで待つ（待ち時間の上限あり）
+ * ・実行中の記録は短い lease だけ有効にし、ノードが落ちても lease 切れ後に同じキーでやり直せる
+ */
+@Service
+public class IdempotencyService {
+
+	// 記録のリポジトリ
+	private final IdempotencyRecordRepository idempotencyRecordRepository;
+	// 結果の保存・復元
+	private final ObjectMapper objectMapper;
+	// 完了した記録（保存済みの結果）の有効期間
+	private final Duration ttl;
+	// 実行中の記録の有効期間（切れたら他のリクエストが取り直せる）
+	private final Duration inProgressLease;
+	// 実行中の重複を待つ時間の上限
+	private final Duration waitTimeout;
+
+	// このノードで実行中のリクエスト（記録ID → 結果の JSON）
+	private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+	// 依存性と設定値をコンストラクタで注入
+	public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+			ObjectMapper objectMapper,
+			@Value("${idempotency.ttl-seconds:86400}") long ttlSeconds,
+			@Value("${idempotency.in-progress-lease-seconds:120}") long inProgressLeaseSeconds,
+			@Value("${idempotency.wait-timeout-millis:15000}") long waitTimeoutMillis) {
+		this.idempotencyRecordRepository = idempotencyRecordRepository;
+		this.objectMapper = objectMapper;
+		this.ttl = Duration.ofSeconds(ttlSeconds);
+		this.inProgressLease = Duration.ofSeconds(inProgressLeaseSeconds);
+		this.waitTimeout = Duration.ofMillis(waitTimeoutMillis);
+	}
+
+	/**
+	 * 冪等キー付きで処理を実行する
+	 *
+	 * @param scope       用途（"initiate-purchase" など。用途ごとにキーの名前空間を分ける）
+	 * @param userId      リクエストしたユーザーID（ユーザーごとにキーの名前空間を分ける）
+	 * @param key         冪等キー（null や空なら冪等化せずにそのまま実行）
+	 * @param fingerprint リクエスト内容の要約（同じキーが別の内容で使われたらエラー）
+	 * @param resultType  結果の型（JSON で保存・復元できること）
+	 * @param action      実際の処理
+	 */
+	public <T, E extends Exception> T execute(String scope, Long userId, String key, String fingerprint,
+			Class<T> resultType, IdempotentAction<T, E> action) throws E {
+		if (key == null || key.isBlank()) {
+			return action.run();
+		}
+		if (key.length() > 128) {
+			throw new IllegalArgumentException("Idempotency key is too long.");
+		}
+		String id = scope + ":" + userId + ":" + key;
+
+		// 同じノードで実行中なら、その結果を待つ
+		CompletableFuture<String> mine = new CompletableFuture<>();
+		CompletableFuture<String> running = inFlight.putIfAbsent(id, mine);
+		if (running != null) {
+			return fromJson(awaitInFlight(running), resultType);
+		}
+		try {
+			String json = executeOnce(id, fingerprint, action);
+			mine.complete(json);
+			return fromJson(json, resultType);
+		} catch (Exception e) {
+			mine.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(id, mine);
+		}
+	}
+
+	// キーを確保できれば実行して結果を保存、確保済みなら保存済みの結果を待つ
+	private <T, E extends Exception> String executeOnce(String id, String fingerprint,
+			IdempotentAction<T, E> action) throws E {
+		long deadline = System.nanoTime() + waitTimeout.toNanos();
+		while (true) {
+			// DB の timestamp の精度（マイクロ秒）にそろえ、完了・解放のときの照合に使う
+			LocalDateTime claimedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+			if (idempotencyRecordRepository.claim(id, fingerprint, claimedAt, claimedAt.plus(inProgressLease)) > 0) {
+				T result;
+				try {
+					result = action.run();
+				} catch (Exception e) {
+					// 失敗は保存せず、同じキーでやり直せるようにする
+					idempotencyRecordRepository.release(id, claimedAt);
+					throw e;
+				}
+				String json = toJson(result);
+				idempotencyRecordRepository.complete(id, claimedAt, json, LocalDateTime.now().plus(ttl));
+				return json;
+			}
+
+			// 既に使われているキー
+			Optional<IdempotencyRecord> existing = idempotencyRecordRepository.findById(id);
+			if (existing.isPresent()) {
+				IdempotencyRecord record = existing.get();
+				if (!record.getRequestFingerprint().equals(fingerprint)) {
+					throw new IllegalArgumentException("Idempotency key was already used for a different request.");
+				}
+				if (IdempotencyRecord.STATUS_COMPLETED.equals(record.getStatus())) {
+					return record.getResponse();
+				}
+			}
+			// 他ノードで実行中（または直前に失敗して解放された）：少し待って確認し直す
+			// 実行中のノードが落ちていれば、lease が切れた後の claim で取り直す
+			if (System.nanoTime() > deadline) {
+				throw new IllegalStateException("A request with the same idempotency key is still in progress.");
+			}
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the original request.", e);
+			}
+		}
+	}
+
+	// 同じノードで実行中のリクエストの結果を待つ
+	private String awaitInFlight(CompletableFuture<String> running) {
+		try {
+			return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException runtime) {
+				throw runtime;
+			}
+			throw new IllegalStateException(cause.getMessage(), cause);
+		} catch (TimeoutException e) {
+			throw new IllegalStateException("A request with the same idempotency key is still in progress.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the original request.", e);
+		}
+	}
+
+	// 期限切れの記録を定期的に削除
+	@Scheduled(fixedDelayString = "${idempotency.purge-interval-millis:3600000}")
+	public void purgeExpired() {
+		idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+	}
+
+	private String toJson(Object result) {
+		try {
+			return objectMapper.writeValueAsString(result);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Failed to serialize idempotent response", e);
+		}
+	}
+
+	private <T> T fromJson(String json, Class<T> resultType) {
+		try {
+			return objectMapper.readValue(json, resultType);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Failed to deserialize idempotent response", e);
+		}
+	}
+
+	/**
+	 * 冪等化する処理（検査例外をそのまま呼び出し元へ伝える）
+	 */
+	@FunctionalInterface
+	public interface IdempotentAction<T, E extends Exception> {
+		T run() throws E;
+	}
+}
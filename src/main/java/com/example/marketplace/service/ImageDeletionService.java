@@ -0,0 +1,101 @@
+package com.example.marketplace.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.marketplace.entity.ImageDeletion;
+import com.example.marketplace.repository.ImageDeletionRepository;
+
+/**
+ * 外部の画像ホスト（Cloudinary）上の画像の削除キュー
+ * ・業務処理は enqueue で登録するだけで、削除 API の呼び出しはバックグラウンドで行う
+ * ・失敗時は指数バックオフで再試行し、上限回数を超えたら断念（DEAD）
+ * ・行ロック（SKIP LOCKED）と処理確保期限で取得するため、複数ノードで動かしても同じ画像を同時に処理しない
+ */
+@Service
+public class ImageDeletionService {
+
+	// 削除キューのリポジトリ
+	private final ImageDeletionRepository imageDeletionRepository;
+	// Cloudinary（未設定なら null）
+	private final CloudinaryService cloudinaryService;
+	// 取得用の短いトランザクション
+	private final TransactionTemplate transactionTemplate;
+	// 1 回のポーリングで取得する件数
+	private final int batchSize;
+	// 再試行方針（最大試行回数を超えたら DEAD）
+	private final RetryPolicy retryPolicy;
+
+	// 依存性と設定値をコンストラクタで注入
+	public ImageDeletionService(ImageDeletionRepository imageDeletionRepository,
+			ObjectProvider<CloudinaryService> cloudinaryServiceProvider,
+			TransactionTemplate transactionTemplate,
+			@Value("${image.deletion.batch-size:20}") int batchSize,
+			@Value("${image.deletion.max-attempts:10}") int maxAttempts,
+			@Value("${image.deletion.base-backoff-seconds:30}") long baseBackoffSeconds,
+			@Value("${image.deletion.max-backoff-seconds:3600}") long maxBackoffSeconds,
+			@Value("${image.deletion.lease-seconds:120}") long leaseSeconds) {
+		this.imageDeletionRepository = imageDeletionRepository;
+		this.cloudinaryService = cloudinaryServiceProvider.getIfAvailable();
+		this.transactionTemplate = transactionTemplate;
+		this.batchSize = batchSize;
+		this.retryPolicy = new RetryPolicy(maxAttempts, baseBackoffSeconds, maxBackoffSeconds, leaseSeconds);
+	}
+
+	// 画像の削除を登録
+	@Transactional
+	public void enqueue(String imageUrl) {
+		imageDeletionRepository.save(new ImageDeletion(imageUrl));
+	}
+
+	// 削除期限が来た画像を取得して削除する
+	@Scheduled(fixedDelayString = "${image.deletion.poll-interval-millis:5000}")
+	public void processDue() {
+		if (cloudinaryService == null) {
+			return;
+		}
+		List<PendingDeletion> batch = transactionTemplate.execute(status -> claimDue());
+		for (PendingDeletion deletion : batch) {
+			try {
+				// 削除済み・存在しない画像でもエラーにはならないため、再試行しても問題ない
+				cloudinaryService.deleteFile(deletion.imageUrl());
+				imageDeletionRepository.deleteById(deletion.id());
+			} catch (Exception e) {
+				retryPolicy.recordFailure("Image deletion (id=" + deletion.id() + ")", deletion.attempts(), e, true,
+						(nextAttemptAt, error) -> imageDeletionRepository.markRetry(deletion.id(), nextAttemptAt,
+								error),
+						error -> imageDeletionRepository.markDead(deletion.id(), error));
+			}
+		}
+	}
+
+	// 削除期限が来た画像を取得し、処理確保期限を設定（トランザクション内で実行）
+	private List<PendingDeletion> claimDue() {
+		LocalDateTime now = LocalDateTime.now();
+		List<ImageDeletion> due = imageDeletionRepository.findDueForUpdate(now, batchSize);
+		for (ImageDeletion d : due) {
+			d.setAttempts(d.getAttempts() + 1);
+			d.setNextAttemptAt(now.plus(retryPolicy.getLease()));
+		}
+		return due.stream()
+				.map(d -> new PendingDeletion(d.getId(), d.getImageUrl(), d.getAttempts()))
+				.toList();
+	}
+
+	/**
+	 * 削除対象の画像（トランザクション外で扱えるよう必要な値だけを保持）
+	 *
+	 * @param id       キューの ID
+	 * @param imageUrl 削除する画像の URL
+	 * @param attempts 今回を含む試行回数
+	 */
+	private record PendingDeletion(Long id, String imageUrl, int attempts) {
+	}
+}
@@ -0,0 +1,89 @@
+package com.example.marketplace.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.marketplace.entity.ImageBlob;
+import com.example.marketplace.repository.ImageBlobRepository;
+
+/**
+ * ローカル保存画像の削除処理
+ * ・最近更新された画像の参照数を、実際に使っている商品の数で数え直す（保存に失敗した商品の参照を回収）
+ * ・参照数 0 のまま猶予期間を過ぎた画像のファイルと記録を削除する
+ * 削除は行ロックを持ったままファイルを消してからコミットするため、同じ画像の再アップロード（参照の追加）は
+ * 削除の完了を待ってから新しく保存し直す。複数ノードで動いても SKIP LOCKED で同じ画像を取り合わない
+ */
+@Service
+public class ImageGarbageCollector {
+
+	// 画像の参照数
+	private final ImageBlobRepository imageBlobRepository;
+	// ファイルの削除
+	private final LocalImageService localImageService;
+	// 取得・削除用の短いトランザクション
+	private final TransactionTemplate transactionTemplate;
+	// 参照数 0 になってから削除するまでの猶予期間（アップロード直後で商品の保存前の画像を消さない）
+	private final Duration grace;
+	// 参照数を数え直す対象（猶予期間より前の、この期間内に更新された画像）
+	private final Duration reconcileWindow;
+	// 1 バッチの件数
+	private final int batchSize;
+
+	// 依存性と設定値をコンストラクタで注入
+	public ImageGarbageCollector(ImageBlobRepository imageBlobRepository,
+			LocalImageService localImageService,
+			TransactionTemplate transactionTemplate,
+			@Value("${image.gc.grace-minutes:60}") long graceMinutes,
+			@Value("${image.gc.reconcile-window-hours:24}") long reconcileWindowHours,
+			@Value("${image.gc.batch-size:100}") int batchSize) {
+		this.imageBlobRepository = imageBlobRepository;
+		this.localImageService = localImageService;
+		this.transactionTemplate = transactionTemplate;
+		this.grace = Duration.ofMinutes(graceMinutes);
+		this.reconcileWindow = Duration.ofHours(reconcileWindowHours);
+		this.batchSize = batchSize;
+	}
+
+	// 参照数の数え直しと、参照のない画像の削除
+	@Scheduled(fixedDelayString = "${image.gc.interval-millis:600000}",
+			initialDelayString = "${image.gc.initial-delay-millis:120000}")
+	public void collect() {
+		LocalDateTime now = LocalDateTime.now();
+		LocalDateTime cutoff = now.minus(grace);
+		int recounted = imageBlobRepository.recount(cutoff.minus(reconcileWindow), cutoff, now);
+
+		int deleted = 0;
+		while (true) {
+			Integer count = transactionTemplate.execute(status -> deleteBatch(cutoff));
+			deleted += count;
+			if (count < batchSize) {
+				break;
+			}
+		}
+		if (recounted > 0 || deleted > 0) {
+			System.out.println("Image GC: recounted " + recounted + " blobs, deleted " + deleted + " blobs.");
+		}
+	}
+
+	// 1 バッチ分の画像のファイルと記録を削除（トランザクション内で実行）
+	private int deleteBatch(LocalDateTime cutoff) {
+		List<ImageBlob> blobs = imageBlobRepository.findCollectableForUpdate(cutoff, batchSize);
+		for (ImageBlob blob : blobs) {
+			try {
+				localImageService.deleteBlobFiles(blob.getUrl());
+			} catch (IOException e) {
+				// 記録は残るため次回に再削除される
+				throw new IllegalStateException("Failed to delete image " + blob.getUrl(), e);
+			}
+		}
+		imageBlobRepository.deleteAllInBatch(blobs);
+		return blobs.size();
+	}
+}
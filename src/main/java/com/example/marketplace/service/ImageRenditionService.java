@@ -0,0 +1,308 @@
+package com.example.marketplace.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * アップロード画像の縮小版（詳細用・一覧サムネイル用）の生成
+ * 元画像は 1 回だけデコードし、詳細用を縮小してからサムネイルをさらに縮小する
+ * 縮小版はいずれも JPEG で再圧縮する（透過部分は白で塗りつぶす）
+ * JPEG は EXIF の向き（Orientation）に合わせて回転・反転してから縮小する（再圧縮で EXIF は引き継がないため）
+ */
+@Service
+public class ImageRenditionService {
+
+	// 一覧カード用サムネイルの長辺（px）
+	private final int thumbnailSize;
+	// 詳細画面用の長辺（px）
+	private final int detailSize;
+	// JPEG の圧縮品質（0.0〜1.0）
+	private final float jpegQuality;
+
+	// CMYK の JPEG を受け付けないときのメッセージ（標準の JPEG デコーダが CMYK / YCCK を読めないため）
+	private static final String CMYK_NOT_SUPPORTED =
+			"CMYK JPEG images are not supported. Please save the image in RGB and upload it again.";
+
+	// 設定値をコンストラクタで注入
+	public ImageRenditionService(
+			@Value("${image.rendition.thumbnail-size:320}") int thumbnailSize,
+			@Value("${image.rendition.detail-size:1280}") int detailSize,
+			@Value("${image.rendition.jpeg-quality:0.8}") float jpegQuality) {
+		this.thumbnailSize = thumbnailSize;
+		this.detailSize = detailSize;
+		this.jpegQuality = jpegQuality;
+	}
+
+	/**
+	 * 画像ファイルをデコードする
+	 * ファイルから直接読み込み（ImageIO のキャッシュ用一時ファイルを作らない）、
+	 * 詳細用の 2 倍を超える大きな画像は読み込み時に間引いてメモリと処理時間を抑える
+	 *
+	 * JPEG は EXIF の向きに合わせて回転・反転した画像を返す
+	 *
+	 * @throws IllegalArgumentException 画像として読み込めない場合（CMYK の JPEG を含む）
+	 */
+	public BufferedImage decode(Path file) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+			Iterator<ImageReader> readers = (input == null) ? null : ImageIO.getImageReaders(input);
+			if (readers == null || !readers.hasNext()) {
+				throw new IllegalArgumentException("Unsupported image format.");
+			}
+			ImageReader reader = readers.next();
+			JpegHeader jpeg = isJpeg(reader) ? readJpegHeader(file) : JpegHeader.NONE;
+			if (jpeg.isCmyk()) {
+				throw new IllegalArgumentException(CMYK_NOT_SUPPORTED);
+			}
+			BufferedImage image;
+			try {
+				reader.setInput(input, true, true);
+				int longEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+				ImageReadParam param = reader.getDefaultReadParam();
+				int step = Math.max(1, longEdge / (detailSize * 2));
+				param.setSourceSubsampling(step, step, 0, 0);
+				image = reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+			return orient(image, jpeg.orientation());
+		}
+	}
+
+	/**
+	 * 対応している画像形式かどうかを確認する（ファイルの先頭だけを読んで判定し、デコードはしない）
+	 *
+	 * @throws IOException 対応していない形式の場合（理由をメッセージに含める）、または読み込みに失敗した場合
+	 */
+	public void checkSupported(Path file) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+			Iterator<ImageReader> readers = (input == null) ? null : ImageIO.getImageReaders(input);
+			if (readers == null || !readers.hasNext()) {
+				throw new IOException("Unsupported image format.");
+			}
+			if (isJpeg(readers.next()) && readJpegHeader(file).isCmyk()) {
+				throw new IOException(CMYK_NOT_SUPPORTED);
+			}
+		}
+	}
+
+	/**
+	 * デコード済みの画像から縮小版を生成し、JPEG で返す
+	 */
+	public RenderedImages render(BufferedImage source) throws IOException {
+		BufferedImage detail = resize(source, detailSize);
+		// サムネイルは縮小済みの詳細用から作る
+		BufferedImage thumbnail = resize(detail, thumbnailSize);
+		return new RenderedImages(encodeJpeg(detail), encodeJpeg(thumbnail));
+	}
+
+	// 一覧カード用サムネイルの長辺
+	public int getThumbnailSize() {
+		return thumbnailSize;
+	}
+
+	// 詳細画面用の長辺
+	public int getDetailSize() {
+		return detailSize;
+	}
+
+	// 長辺が maxEdge 以下になるよう縮小（拡大はしない）
+	// 一度に大きく縮小すると粗くなるため、半分ずつ段階的に縮小する
+	private BufferedImage resize(BufferedImage source, int maxEdge) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		double scale = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+		int targetWidth = Math.max(1, (int) Math.round(width * scale));
+		int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+		BufferedImage current = source;
+		int w = width;
+		int h = height;
+		do {
+			w = Math.max(targetWidth, w / 2);
+			h = Math.max(targetHeight, h / 2);
+			BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = next.createGraphics();
+			try {
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+				g.drawImage(current, 0, 0, w, h, Color.WHITE, null);
+			} finally {
+				g.dispose();
+			}
+			current = next;
+		} while (w != targetWidth || h != targetHeight);
+		return current;
+	}
+
+	// EXIF の向き（1〜8）に合わせて回転・反転（1 や不明な値はそのまま）
+	private BufferedImage orient(BufferedImage source, int orientation) {
+		int w = source.getWidth();
+		int h = source.getHeight();
+		// 変換行列（m00, m10, m01, m11, m02, m12）：x' = m00*x + m01*y + m02, y' = m10*x + m11*y + m12
+		AffineTransform transform = switch (orientation) {
+		case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // 左右反転
+		case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // 180 度回転
+		case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // 上下反転
+		case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // 左上・右下の対角線で反転
+		case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // 時計回りに 90 度回転
+		case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // 右上・左下の対角線で反転
+		case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);   // 反時計回りに 90 度回転
+		default -> null;
+		};
+		if (transform == null) {
+			return source;
+		}
+		// 5〜8 は縦横が入れ替わる
+		boolean swap = orientation >= 5;
+		BufferedImage oriented = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = oriented.createGraphics();
+		try {
+			g.drawImage(source, transform, null);
+		} finally {
+			g.dispose();
+		}
+		return oriented;
+	}
+
+	private static boolean isJpeg(ImageReader reader) throws IOException {
+		return "jpeg".equalsIgnoreCase(reader.getFormatName());
+	}
+
+	// JPEG のマーカーを先頭から SOF（フレームヘッダ）まで読み、EXIF の向きと色成分数を取得
+	// 画素データ（SOS 以降）は読まない
+	private static JpegHeader readJpegHeader(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readUnsignedShort() != 0xFFD8) {
+				return JpegHeader.NONE;
+			}
+			int orientation = 1;
+			while (true) {
+				int marker = in.readUnsignedShort();
+				// マーカー前の詰め物（0xFF の連続）を読み飛ばす
+				while (marker == 0xFFFF) {
+					marker = 0xFF00 | in.readUnsignedByte();
+				}
+				// マーカーでない、または画素データ・終端に達した
+				if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+					return new JpegHeader(orientation, 0);
+				}
+				int length = in.readUnsignedShort() - 2;
+				if (length < 0) {
+					return new JpegHeader(orientation, 0);
+				}
+				if (marker == 0xFFE1 && orientation == 1) {
+					// APP1（EXIF）
+					byte[] segment = new byte[length];
+					in.readFully(segment);
+					orientation = exifOrientation(segment);
+				} else if (isStartOfFrame(marker)) {
+					// SOF：精度(1) 高さ(2) 幅(2) 色成分数(1)
+					byte[] segment = new byte[length];
+					in.readFully(segment);
+					return new JpegHeader(orientation, length > 5 ? segment[5] & 0xFF : 0);
+				} else {
+					in.skipNBytes(length);
+				}
+			}
+		} catch (EOFException e) {
+			// 途中で切れたファイルはデコード時にエラーになる
+			return JpegHeader.NONE;
+		}
+	}
+
+	// SOF0〜SOF15（DHT・JPG・DAC を除く）
+	private static boolean isStartOfFrame(int marker) {
+		return marker >= 0xFFC0 && marker <= 0xFFCF
+				&& marker != 0xFFC4 && marker != 0xFFC8 && marker != 0xFFCC;
+	}
+
+	// APP1 セグメントの EXIF（"Exif\0\0" + TIFF）から IFD0 の Orientation（0x0112）を読む。無ければ 1
+	private static int exifOrientation(byte[] segment) {
+		if (segment.length < 14 || segment[0] != 'E' || segment[1] != 'x' || segment[2] != 'i'
+				|| segment[3] != 'f' || segment[4] != 0 || segment[5] != 0) {
+			return 1;
+		}
+		int tiff = 6;
+		ByteBuffer buf = ByteBuffer.wrap(segment);
+		if (segment[tiff] == 'I' && segment[tiff + 1] == 'I') {
+			buf.order(ByteOrder.LITTLE_ENDIAN);
+		} else if (segment[tiff] != 'M' || segment[tiff + 1] != 'M') {
+			return 1;
+		}
+		try {
+			int ifd = tiff + buf.getInt(tiff + 4);
+			int count = buf.getShort(ifd) & 0xFFFF;
+			for (int i = 0; i < count; i++) {
+				int entry = ifd + 2 + i * 12;
+				if ((buf.getShort(entry) & 0xFFFF) == 0x0112) {
+					int value = buf.getShort(entry + 8) & 0xFFFF;
+					return (value >= 1 && value <= 8) ? value : 1;
+				}
+			}
+		} catch (IndexOutOfBoundsException e) {
+			// 壊れた EXIF は向きなしとして扱う
+		}
+		return 1;
+	}
+
+	// 指定品質の JPEG にエンコード
+	private byte[] encodeJpeg(BufferedImage image) throws IOException {
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(jpegQuality);
+			writer.setOutput(output);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * 生成した縮小版（JPEG）
+	 *
+	 * @param detail    詳細画面用
+	 * @param thumbnail 一覧カード用サムネイル
+	 */
+	public record RenderedImages(byte[] detail, byte[] thumbnail) {
+	}
+
+	// JPEG のヘッダから読んだ情報（EXIF の向き・色成分数。不明なら 0）
+	private record JpegHeader(int orientation, int components) {
+
+		static final JpegHeader NONE = new JpegHeader(1, 0);
+
+		// 4 成分（CMYK / YCCK）
+		boolean isCmyk() {
+			return components == 4;
+		}
+	}
+}
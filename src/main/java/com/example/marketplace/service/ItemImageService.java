@@ -0,0 +1,213 @@
+package com.example.marketplace.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.marketplace.dto.ImageRenditions;
+import com.example.marketplace.entity.Item;
+import com.example.marketplace.repository.ItemRepository;
+
+/**
+ * 商品画像のアップロード・解除
+ * ・リクエスト内では一時ファイルへの書き出しだけを行い、画像ホストへのアップロード（縮小版の生成を含む）は
+ *   固定サイズのスレッドプールで行う。完了したら商品の画像 URL を更新する
+ * ・スレッドプールの待ち行列が満杯のときは、呼び出し元のスレッドでアップロードする（待ち行列を際限なく伸ばさない）
+ * ・不要になった画像は、Cloudinary なら削除キューへ登録し、ローカル保存なら参照を解除する
+ * ・アップロード中にノードが止まった場合に備え、一定時間を過ぎても PENDING の商品は FAILED にし、残った一時ファイルは削除する
+ */
+@Service
+public class ItemImageService {
+
+	// 商品リポジトリ（画像 URL の更新）
+	private final ItemRepository itemRepository;
+	// Cloudinary（未設定なら null）
+	private final CloudinaryService cloudinaryService;
+	// ローカル保存
+	private final LocalImageService localImageService;
+	// アップロードファイルの一時書き出し
+	private final UploadSpoolService uploadSpoolService;
+	// 画像形式の確認
+	private final ImageRenditionService imageRenditionService;
+	// 外部の画像ホスト上の画像の削除キュー
+	private final ImageDeletionService imageDeletionService;
+	// 画像 URL の差し替え用の短いトランザクション
+	private final TransactionTemplate transactionTemplate;
+	// アップロード用スレッドプール
+	private final ThreadPoolExecutor uploaders;
+	// アップロード開始からこの時間を過ぎても完了しなければ失敗とみなす
+	private final Duration staleAfter;
+
+	// 依存性と設定値をコンストラクタで注入
+	public ItemImageService(ItemRepository itemRepository,
+			ObjectProvider<CloudinaryService> cloudinaryServiceProvider,
+			LocalImageService localImageService,
+			UploadSpoolService uploadSpoolService,
+			ImageRenditionService imageRenditionService,
+			ImageDeletionService imageDeletionService,
+			TransactionTemplate transactionTemplate,
+			@Value("${image.upload.concurrency:4}") int concurrency,
+			@Value("${image.upload.queue-capacity:100}") int queueCapacity,
+			@Value("${image.upload.stale-minutes:60}") long staleMinutes) {
+		this.itemRepository = itemRepository;
+		this.cloudinaryService = cloudinaryServiceProvider.getIfAvailable();
+		this.localImageService = localImageService;
+		this.uploadSpoolService = uploadSpoolService;
+		this.imageRenditionService = imageRenditionService;
+		this.imageDeletionService = imageDeletionService;
+		this.transactionTemplate = transactionTemplate;
+		this.uploaders = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				r -> {
+					Thread t = new Thread(r, "item-image-uploader");
+					t.setDaemon(true);
+					return t;
+				},
+				// 満杯なら呼び出し元で実行（停止中は受け付けない）
+				(task, executor) -> {
+					if (executor.isShutdown()) {
+						throw new RejectedExecutionException("Image uploader is shut down");
+					}
+					task.run();
+				});
+		this.staleAfter = Duration.ofMinutes(staleMinutes);
+	}
+
+	/**
+	 * アップロードされた画像を一時ファイルへ書き出す（リクエスト内で呼ぶ。リクエスト終了後は元のファイルが消えるため）
+	 *
+	 * @throws IOException 書き出しに失敗した場合、またはローカル保存で対応していない画像形式の場合
+	 */
+	public SpooledUpload spool(MultipartFile file) throws IOException {
+		SpooledUpload upload = uploadSpoolService.spool(file);
+		// ローカル保存は縮小版を作るため、読み込めない形式はこの時点で断る（ファイルの先頭だけで判定）
+		if (cloudinaryService == null) {
+			try {
+				imageRenditionService.checkSupported(upload.getPath());
+			} catch (IOException e) {
+				upload.close();
+				throw e;
+			}
+		}
+		return upload;
+	}
+
+	/**
+	 * 画像をバックグラウンドでアップロードし、完了したら商品の画像 URL を差し替える
+	 * 一時ファイルはアップロード後に削除する
+	 */
+	public void uploadAsync(Long itemId, SpooledUpload upload) {
+		try {
+			uploaders.execute(() -> upload(itemId, upload));
+		} catch (RejectedExecutionException e) {
+			// アプリ停止中
+			closeQuietly(upload);
+			itemRepository.updateImageStatus(itemId, Item.IMAGE_FAILED);
+		}
+	}
+
+	/**
+	 * 使わなくなった画像を解除する
+	 * Cloudinary は削除キューへ登録（削除 API はバックグラウンドで呼ぶ）、
+	 * ローカル保存は参照を解除する（DB の更新のみ。二重に解除しないようキューは通さない）
+	 */
+	public void release(String imageUrl) {
+		if (imageUrl == null) {
+			return;
+		}
+		if (cloudinaryService != null) {
+			imageDeletionService.enqueue(imageUrl);
+			return;
+		}
+		try {
+			localImageService.releaseImage(imageUrl);
+		} catch (IOException e) {
+			// 画像削除失敗は致命ではないためログ出力に留める
+			System.err.println("Failed to delete image: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * アップロード中のまま残った商品を FAILED にし、残った一時ファイルを削除する
+	 * 商品は全ノード共通（どのノードで実行しても同じ結果）、一時ファイルは各ノードのものを削除する
+	 * 期限後に完了したアップロードは、通常どおり画像 URL を設定して READY にする
+	 */
+	@Scheduled(fixedDelayString = "${image.upload.sweep-interval-millis:600000}",
+			initialDelayString = "${image.upload.sweep-initial-delay-millis:60000}")
+	public void sweepStale() {
+		int failed = itemRepository.failStalePendingImages(LocalDateTime.now().minus(staleAfter));
+		int purged = uploadSpoolService.purgeOlderThan(Instant.now().minus(staleAfter));
+		if (failed > 0 || purged > 0) {
+			System.out.println("Marked " + failed + " stale image uploads as failed, deleted " + purged
+					+ " stale spooled uploads.");
+		}
+	}
+
+	// 1 件アップロードして商品の画像 URL を差し替える
+	private void upload(Long itemId, SpooledUpload upload) {
+		ImageRenditions renditions;
+		try (upload) {
+			renditions = (cloudinaryService != null)
+					? cloudinaryService.uploadImage(upload)
+					: localImageService.uploadImage(upload);
+		} catch (Exception e) {
+			System.err.println("Failed to upload image for item " + itemId + ": " + e.getMessage());
+			itemRepository.updateImageStatus(itemId, Item.IMAGE_FAILED);
+			return;
+		}
+		if (renditions == null) {
+			itemRepository.updateImageStatus(itemId, Item.IMAGE_FAILED);
+			return;
+		}
+
+		// 差し替え前の画像を行ロック付きで読み、新しい画像に置き換える
+		ReplacedImage replaced = transactionTemplate.execute(status -> {
+			String previous = itemRepository.lockImageUrl(itemId);
+			int updated = itemRepository.updateImage(itemId, renditions.originalUrl(), renditions.detailUrl(),
+					renditions.thumbnailUrl());
+			return new ReplacedImage(updated > 0, previous);
+		});
+		if (!replaced.updated()) {
+			// アップロード中に商品が削除された
+			release(renditions.originalUrl());
+		} else if (replaced.previousUrl() != null) {
+			// 同じ画像を再アップロードした場合も参照は 1 つ増えているため解除する
+			release(replaced.previousUrl());
+		}
+	}
+
+	private static void closeQuietly(SpooledUpload upload) {
+		try {
+			upload.close();
+		} catch (IOException e) {
+			System.err.println("Failed to delete spooled upload: " + e.getMessage());
+		}
+	}
+
+	// アプリ停止時は実行中・待ち行列のアップロードを終えてから止める
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		uploaders.shutdown();
+		if (!uploaders.awaitTermination(60, TimeUnit.SECONDS)) {
+			uploaders.shutdownNow();
+		}
+	}
+
+	// 画像 URL の差し替え結果
+	private record ReplacedImage(boolean updated, String previousUrl) {
+	}
+}
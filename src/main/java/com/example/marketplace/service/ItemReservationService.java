@@ -0,0 +1,75 @@
+package com.example.marketplace.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * 購入手続き中の商品のメモリ上の確保表
+ * 人気商品に購入が集中しても、確保済みの商品への購入開始は DB に問い合わせずに即座に断る
+ * ノードごとの表のため、最終的な判定は DB 側（商品の確保期限と楽観ロック）で行う
+ */
+@Service
+public class ItemReservationService {
+
+	// 商品ID → 確保情報
+	private final Map<Long, Reservation> reservations = new ConcurrentHashMap<>();
+
+	// 確保の有効期間（DB 側の確保期限と同じ）
+	private final Duration holdDuration;
+
+	// 設定値をコンストラクタで注入
+	public ItemReservationService(@Value("${item.hold.duration-seconds:900}") long holdDurationSeconds) {
+		this.holdDuration = Duration.ofSeconds(holdDurationSeconds);
+	}
+
+	/**
+	 * 商品の購入手続きを確保する
+	 * 未確保・期限切れ・同じ買い手による確保なら確保して true、他の買い手が確保中なら false
+	 */
+	public boolean tryReserve(Long itemId, Long buyerId) {
+		Instant now = Instant.now();
+		Reservation mine = new Reservation(buyerId, now.plus(holdDuration));
+		// compute は同じキーに対して排他的に実行されるため、同時に呼ばれても勝者は 1 人
+		Reservation result = reservations.compute(itemId,
+				(id, current) -> (current == null || current.isExpired(now) || current.buyerId().equals(buyerId))
+						? mine
+						: current);
+		return result == mine;
+	}
+
+	// 確保を解除（指定の買い手による確保の場合のみ）
+	public void release(Long itemId, Long buyerId) {
+		reservations.computeIfPresent(itemId, (id, current) -> current.buyerId().equals(buyerId) ? null : current);
+	}
+
+	// 確保の有効期間
+	public Duration getHoldDuration() {
+		return holdDuration;
+	}
+
+	// 現在の確保件数（期限切れを含む）
+	public int size() {
+		return reservations.size();
+	}
+
+	// 期限切れの確保を定期的に削除
+	@Scheduled(fixedDelayString = "${item.hold.purge-interval-millis:60000}")
+	public void purgeExpired() {
+		Instant now = Instant.now();
+		reservations.entrySet().removeIf(e -> e.getValue().isExpired(now));
+	}
+
+	// 確保情報（買い手ID・期限）
+	private record Reservation(Long buyerId, Instant expiresAt) {
+
+		boolean isExpired(Instant now) {
+			return !expiresAt.isAfter(now);
+		}
+	}
+}
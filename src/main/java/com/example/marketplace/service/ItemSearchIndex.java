@@ -0,0 +1,369 @@
+package com.example.marketplace.service;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.marketplace.entity.Item;
+import com.example.marketplace.repository.ItemRepository;
+
+/**
+ * 商品名・商品説明を対象としたプロセス内全文検索インデックス
+ * 文字 n-gram（1〜2 文字）で分割するため、空白の無い日本語の商品名でも検索できる
+ * n-gram で絞り込んだ候補は、正規化した商品名・説明に検索語がそのまま含まれるかを確認する（部分一致と同じ結果にする）
+ * ItemService の保存・削除・売却確定時に随時更新される
+ * 他ノードでの変更は ChangeFeedService（item）で通知を受け、対象の商品を DB から読み直して反映する
+ */
+@Service
+public class ItemSearchIndex {
+
+	// 商品名に一致した場合の重み（説明文より優先して上位に並べる）
+	private static final int NAME_WEIGHT = 3;
+
+	// 新しい順（同時刻は ID 降順）
+	private static final Comparator<Scored> NEWEST_FIRST = Comparator
+			.comparing(Scored::createdAt, Comparator.nullsLast(Comparator.<LocalDateTime> reverseOrder()))
+			.thenComparing(Scored::id, Comparator.reverseOrder());
+
+	// 変更記録の topic
+	static final String TOPIC = "item";
+
+	// 商品リポジトリの参照（起動時の全件読み込み・他ノードで変更された商品の読み直しに使用）
+	private final ItemRepository itemRepository;
+
+	// ノード間の変更通知
+	private final ChangeFeedService changeFeedService;
+
+	// n-gram → 商品 ID 集合 の転置インデックス
+	private final Map<String, Set<Long>> postings = new HashMap<>();
+
+	// 商品 ID → 登録済み文書
+	private final Map<Long, IndexedItem> documents = new HashMap<>();
+
+	// 検索は並行、更新は排他で行う
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// 初回構築が完了したかどうか（未完了の間は DB 検索にフォールバックさせる）
+	private volatile boolean ready = false;
+
+	public ItemSearchIndex(ItemRepository itemRepository, ChangeFeedService changeFeedService) {
+		this.itemRepository = itemRepository;
+		this.changeFeedService = changeFeedService;
+		changeFeedService.subscribe(TOPIC, this::refresh, this::rebuild);
+	}
+
+	// アプリ起動完了時に全商品からインデックスを構築
+	// 読み込みより前にロックを取り、読み込み中にコミットされた変更の反映を読み込み後まで待たせる
+	// （先に読み込むと、その間に反映された変更を古い内容で上書きしてしまう）
+	@EventListener(ApplicationReadyEvent.class)
+	@Transactional(readOnly = true)
+	public void rebuild() {
+		lock.writeLock().lock();
+		try {
+			List<Item> items = itemRepository.findAll();
+			postings.clear();
+			documents.clear();
+			for (Item item : items) {
+				addLocked(item);
+			}
+			ready = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	// 以下の更新はコミット後に反映する（ロールバックされた変更はインデックスに載せない）
+	// 他ノード向けの変更記録も同じトランザクションで登録する
+
+	// 商品を登録（既に登録済みなら置き換え）
+	public void index(Item item) {
+		if (item == null || item.getId() == null) {
+			return;
+		}
+		TransactionHooks.afterCommit(() -> indexNow(item));
+		changeFeedService.publish(TOPIC, item.getId());
+	}
+
+	// 商品をインデックスから除外
+	public void remove(Long itemId) {
+		TransactionHooks.afterCommit(() -> removeNow(itemId));
+		changeFeedService.publish(TOPIC, itemId);
+	}
+
+	// ステータスのみ更新（売却確定時など、本文が変わらない更新用）
+	public void updateStatus(Long itemId, String status) {
+		TransactionHooks.afterCommit(() -> updateStatusNow(itemId, status));
+		changeFeedService.publish(TOPIC, itemId);
+	}
+
+	// 他ノードで変更された商品を DB から読み直して反映（削除済みなら除外）
+	private void refresh(Long itemId) {
+		Optional<Item> item = itemRepository.findById(itemId);
+		if (item.isPresent()) {
+			indexNow(item.get());
+		} else {
+			removeNow(itemId);
+		}
+	}
+
+	private void indexNow(Item item) {
+		lock.writeLock().lock();
+		try {
+			removeLocked(item.getId());
+			addLocked(item);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void removeNow(Long itemId) {
+		lock.writeLock().lock();
+		try {
+			removeLocked(itemId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void updateStatusNow(Long itemId, String status) {
+		lock.writeLock().lock();
+		try {
+			IndexedItem doc = documents.get(itemId);
+			if (doc != null) {
+				documents.put(itemId, doc.withStatus(status));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * キーワードに一致する商品 ID を関連度順（同点は新しい順）で返す
+	 *
+	 * @param keyword    検索キーワード（空白区切りで AND 検索）
+	 * @param categoryId カテゴリ ID（null なら全カテゴリ）
+	 * @param status     対象ステータス
+	 * @return 一致した商品 ID の一覧
+	 */
+	public List<Long> search(String keyword, Long categoryId, String status) {
+		List<Scored> hits = match(keyword, categoryId, status);
+		hits.sort(Comparator.comparingDouble(Scored::score).reversed()
+				.thenComparing(NEWEST_FIRST));
+		return hits.stream().map(Scored::id).toList();
+	}
+
+	/**
+	 * キーワードに一致する商品 ID のうち、カーソル位置より古いものを新しい順に最大 limit 件返す（カーソルページング用）
+	 *
+	 * @param keyword    検索キーワード（空白区切りで AND 検索）
+	 * @param categoryId カテゴリ ID（null なら全カテゴリ）
+	 * @param status     対象ステータス
+	 * @param cursor     直前ページ末尾の位置
+	 * @param limit      最大件数
+	 * @return 一致した商品 ID の一覧
+	 */
+	public List<Long> searchNewest(String keyword, Long categoryId, String status, KeysetCursor cursor, int limit) {
+		return match(keyword, categoryId, status).stream()
+				.filter(hit -> isBefore(hit, cursor))
+				.sorted(NEWEST_FIRST)
+				.limit(limit)
+				.map(Scored::id)
+				.toList();
+	}
+
+	// カーソル位置より古いか（登録日時の無い商品は最も古い扱い）
+	private static boolean isBefore(Scored hit, KeysetCursor cursor) {
+		if (hit.createdAt() == null) {
+			return true;
+		}
+		int c = hit.createdAt().compareTo(cursor.createdAt());
+		return c < 0 || (c == 0 && hit.id() < cursor.id());
+	}
+
+	// キーワードに一致し、絞り込み条件を満たす商品とスコア（並び順は未定）
+	private List<Scored> match(String keyword, Long categoryId, String status) {
+		List<String> words = new ArrayList<>();
+		List<List<String>> terms = new ArrayList<>();
+		for (String term : normalize(keyword).split("\\s+")) {
+			if (!term.isEmpty()) {
+				words.add(term);
+				terms.add(queryGrams(term));
+			}
+		}
+		if (terms.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		lock.readLock().lock();
+		try {
+			// 全 n-gram の posting を積集合して候補を絞り込む（最も短い posting から開始）
+			List<String> allGrams = terms.stream().flatMap(List::stream).distinct()
+					.sorted(Comparator.comparingInt(g -> postings.getOrDefault(g, Collections.emptySet()).size()))
+					.toList();
+			Set<Long> candidates = null;
+			for (String gram : allGrams) {
+				Set<Long> ids = postings.get(gram);
+				if (ids == null) {
+					return new ArrayList<>();
+				}
+				if (candidates == null) {
+					candidates = new HashSet<>(ids);
+				} else {
+					candidates.retainAll(ids);
+				}
+				if (candidates.isEmpty()) {
+					return new ArrayList<>();
+				}
+			}
+
+			// 絞り込み条件を適用してスコアを計算
+			int total = documents.size();
+			List<Scored> hits = new ArrayList<>();
+			for (Long id : candidates) {
+				IndexedItem doc = documents.get(id);
+				if (!status.equals(doc.status())
+						|| (categoryId != null && !categoryId.equals(doc.categoryId()))
+						|| !doc.containsAll(words)) {
+					continue;
+				}
+				double score = 0;
+				for (String gram : allGrams) {
+					double idf = Math.log(1.0 + (double) total / postings.get(gram).size());
+					int tf = NAME_WEIGHT * doc.nameGrams().getOrDefault(gram, 0)
+							+ doc.descriptionGrams().getOrDefault(gram, 0);
+					score += tf * idf;
+				}
+				hits.add(new Scored(id, score, doc.createdAt()));
+			}
+			return hits;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// ---- 以下、ロック取得済みの前提で呼ばれる内部処理 ----
+
+	private void addLocked(Item item) {
+		Map<String, Integer> nameGrams = grams(item.getName());
+		Map<String, Integer> descriptionGrams = grams(item.getDescription());
+		IndexedItem doc = new IndexedItem(
+				normalize(item.getName()),
+				normalize(item.getDescription()),
+				nameGrams,
+				descriptionGrams,
+				item.getStatus(),
+				item.getCategory() != null ? item.getCategory().getId() : null,
+				item.getCreatedAt());
+		documents.put(item.getId(), doc);
+		for (String gram : nameGrams.keySet()) {
+			postings.computeIfAbsent(gram, g -> new HashSet<>()).add(item.getId());
+		}
+		for (String gram : descriptionGrams.keySet()) {
+			postings.computeIfAbsent(gram, g -> new HashSet<>()).add(item.getId());
+		}
+	}
+
+	private void removeLocked(Long itemId) {
+		IndexedItem doc = documents.remove(itemId);
+		if (doc == null) {
+			return;
+		}
+		Set<String> grams = new HashSet<>(doc.nameGrams().keySet());
+		grams.addAll(doc.descriptionGrams().keySet());
+		for (String gram : grams) {
+			Set<Long> ids = postings.get(gram);
+			if (ids != null) {
+				ids.remove(itemId);
+				if (ids.isEmpty()) {
+					postings.remove(gram);
+				}
+			}
+		}
+	}
+
+	// ---- トークナイズ ----
+
+	// 全角/半角・大文字/小文字の揺れを吸収
+	static String normalize(String text) {
+		if (text == null) {
+			return "";
+		}
+		return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase().trim();
+	}
+
+	// 文書側：空白で区切った各語から 1-gram と 2-gram を出現回数付きで生成
+	static Map<String, Integer> grams(String text) {
+		Map<String, Integer> result = new HashMap<>();
+		for (String word : normalize(text).split("\\s+")) {
+			int[] cps = word.codePoints().toArray();
+			for (int i = 0; i < cps.length; i++) {
+				result.merge(new String(cps, i, 1), 1, Integer::sum);
+				if (i + 1 < cps.length) {
+					result.merge(new String(cps, i, 2), 1, Integer::sum);
+				}
+			}
+		}
+		return result;
+	}
+
+	// 検索語側：1 文字なら 1-gram、それ以上は 2-gram のみで照合する
+	static List<String> queryGrams(String term) {
+		int[] cps = term.codePoints().toArray();
+		if (cps.length == 1) {
+			return List.of(term);
+		}
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i + 1 < cps.length; i++) {
+			result.add(new String(cps, i, 2));
+		}
+		return result;
+	}
+
+	// インデックスに保持する商品ごとの情報
+	private record IndexedItem(
+			String name,
+			String description,
+			Map<String, Integer> nameGrams,
+			Map<String, Integer> descriptionGrams,
+			String status,
+			Long categoryId,
+			LocalDateTime createdAt) {
+
+		IndexedItem withStatus(String newStatus) {
+			return new IndexedItem(name, description, nameGrams, descriptionGrams, newStatus, categoryId, createdAt);
+		}
+
+		// すべての検索語が商品名か説明に連続して含まれるか（2-gram がばらばらに含まれるだけの商品を除く）
+		boolean containsAll(List<String> words) {
+			for (String word : words) {
+				if (!name.contains(word) && !description.contains(word)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	// 検索結果の並び替え用
+	private record Scored(Long id, double score, LocalDateTime createdAt) {
+	}
+}
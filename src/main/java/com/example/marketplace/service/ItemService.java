@@ -1,16 +1,24 @@
 package com.example.marketplace.service;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
-import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.marketplace.dto.ItemCard;
 import com.example.marketplace.entity.Item;
 import com.example.marketplace.entity.User;
 import com.example.marketplace.repository.ItemRepository;
@@ -24,40 +32,45 @@ public class ItemService {
 	// カテゴリ関連のユースケースに備えてサービス参照を保持
 	private final CategoryService categoryService;
 
-	// 画像アップロード/削除のための Cloudinary サービス参照
-	private final CloudinaryService cloudinaryService;
-	
-	// 開発環境用のローカルファイル保存サービス
-	private final LocalImageService localImageService;
+	// 画像のアップロード・解除（アップロードはバックグラウンドで行う）
+	private final ItemImageService itemImageService;
+
+	// キーワード検索用の全文検索インデックス
+	private final ItemSearchIndex itemSearchIndex;
 
 	// 依存性はコンストラクタで注入
 	public ItemService(ItemRepository itemRepository,
 			CategoryService categoryService,
-			ObjectProvider<CloudinaryService> cloudinaryServiceProvider,
-			LocalImageService localImageService) {
+			ItemImageService itemImageService,
+			ItemSearchIndex itemSearchIndex) {
 
 		// フィールドへ商品リポジトリを設定
 		this.itemRepository = itemRepository;
 		// フィールドへカテゴリサービスを設定
 		this.categoryService = categoryService;
-		// フィールドへ Cloudinary サービスを設定
-		this.cloudinaryService = cloudinaryServiceProvider.getIfAvailable();
-		// フィールドへローカル画像サービスを設定
-		this.localImageService = localImageService;
+		// フィールドへ画像サービスを設定
+		this.itemImageService = itemImageService;
+		// フィールドへ全文検索インデックスを設定
+		this.itemSearchIndex = itemSearchIndex;
 	}
 
 	// 商品検索：キーワード/カテゴリ/ページングを組み合わせ、公開中のみ返す
-	public Page<Item> searchItems(String keyword, Long categoryId, int page, int size) {
+	public Page<ItemCard> searchItems(String keyword, Long categoryId, int page, int size) {
 
 		// ページング指定を生成
 		Pageable pageable = PageRequest.of(page, size);
 
+		// キーワード指定時は全文検索インデックスを使用（構築前は従来の LIKE 検索にフォールバック）
+		if (keyword != null && !keyword.isBlank() && itemSearchIndex.isReady()) {
+			return searchByIndex(keyword, categoryId, pageable);
+		}
+
 		// キーワードとカテゴリ両方指定時の検索
 		if (keyword != null && !keyword.isEmpty() && categoryId != null) {
 
 			// 名前 LIKE × カテゴリ × 出品中
 			return itemRepository
-					.findByNameContainingIgnoreCaseAndCategoryIdAndStatus(
+					.findCardsByNameContainingIgnoreCaseAndCategoryIdAndStatus(
 							keyword,
 							categoryId,
 							"出品中",
@@ -68,7 +81,7 @@ public class ItemService {
 
 			// 名前 LIKE × 出品中
 			return itemRepository
-					.findByNameContainingIgnoreCaseAndStatus(
+					.findCardsByNameContainingIgnoreCaseAndStatus(
 							keyword,
 							"出品中",
 							pageable);
@@ -78,7 +91,7 @@ public class ItemService {
 
 			// カテゴリ × 出品中
 			return itemRepository
-					.findByCategoryIdAndStatus(
+					.findCardsByCategoryIdAndStatus(
 							categoryId,
 							"出品中",
 							pageable);
@@ -87,14 +100,90 @@ public class ItemService {
 		} else {
 
 			// 出品中のみ全件ページング
-			return itemRepository.findByStatus("出品中", pageable);
+			return itemRepository.findCardsByStatus("出品中", pageable);
+		}
+	}
+
+	// カーソル（キーセット）方式の商品検索：登録日時の新しい順に、カーソル位置より後ろを size 件返す
+	// OFFSET と COUNT を使わないため、深いページでも 1 クエリ・一定コストで取得できる
+	public Slice<ItemCard> searchItemsByCursor(String keyword, Long categoryId, KeysetCursor cursor, int size) {
+
+		// 先頭からの取得件数のみ指定（並び順はクエリ側で固定）
+		Pageable pageable = PageRequest.of(0, size);
+		// カーソル未指定なら先頭ページ
+		KeysetCursor c = (cursor != null) ? cursor : KeysetCursor.FIRST;
+
+		// キーワード指定時は全文検索インデックスを使用（構築前は LIKE 検索にフォールバック）
+		if (keyword != null && !keyword.isBlank() && itemSearchIndex.isReady()) {
+			return searchByIndexAfter(keyword, categoryId, c, pageable);
+		}
+
+		// キーワードとカテゴリ両方指定時
+		if (keyword != null && !keyword.isEmpty() && categoryId != null) {
+			return itemRepository.findCardsByNameContainingIgnoreCaseAndCategoryIdAndStatusBefore(
+					keyword, categoryId, "出品中", c.createdAt(), c.id(), pageable);
+
+			// キーワードのみ指定時
+		} else if (keyword != null && !keyword.isEmpty()) {
+			return itemRepository.findCardsByNameContainingIgnoreCaseAndStatusBefore(
+					keyword, "出品中", c.createdAt(), c.id(), pageable);
+
+			// カテゴリのみ指定時
+		} else if (categoryId != null) {
+			return itemRepository.findCardsByCategoryIdAndStatusBefore(
+					categoryId, "出品中", c.createdAt(), c.id(), pageable);
+
+			// 条件未指定時
+		} else {
+			return itemRepository.findCardsByStatusBefore("出品中", c.createdAt(), c.id(), pageable);
+		}
+	}
+
+	// 全文検索インデックスで関連度順に ID を求め、対象ページ分だけ DB から取得
+	private Page<ItemCard> searchByIndex(String keyword, Long categoryId, Pageable pageable) {
+
+		// 関連度順の商品 ID 一覧
+		List<Long> ids = itemSearchIndex.search(keyword, categoryId, "出品中");
+
+		// 要求ページの範囲を切り出し
+		int from = (int) Math.min(pageable.getOffset(), ids.size());
+		int to = Math.min(from + pageable.getPageSize(), ids.size());
+		List<Long> pageIds = ids.subList(from, to);
+
+		return new PageImpl<>(findCardsInOrder(pageIds), pageable, ids.size());
+	}
+
+	// 全文検索インデックスで新しい順にカーソル位置より後ろを求め、対象ページ分だけ DB から取得
+	private Slice<ItemCard> searchByIndexAfter(String keyword, Long categoryId, KeysetCursor cursor,
+			Pageable pageable) {
+
+		// 続きの有無を判定するため 1 件多く求める
+		List<Long> ids = itemSearchIndex.searchNewest(keyword, categoryId, "出品中", cursor,
+				pageable.getPageSize() + 1);
+		boolean hasNext = ids.size() > pageable.getPageSize();
+		List<Long> pageIds = hasNext ? ids.subList(0, pageable.getPageSize()) : ids;
+
+		return new SliceImpl<>(findCardsInOrder(pageIds), pageable, hasNext);
+	}
+
+	// ページ分のカードをまとめて取得し、インデックスの順序に並べ直す
+	// 他ノードで売却・削除されたがインデックスへの反映前の商品は、DB のステータスで除外される
+	private List<ItemCard> findCardsInOrder(List<Long> ids) {
+		if (ids.isEmpty()) {
+			return List.of();
 		}
+		Map<Long, ItemCard> byId = itemRepository.findCardsByIdInAndStatus(ids, "出品中").stream()
+				.collect(Collectors.toMap(ItemCard::getId, Function.identity()));
+		return ids.stream()
+				.map(byId::get)
+				.filter(item -> item != null)
+				.toList();
 	}
 
-	// 全商品一覧を返す（管理用など）
-	public List<Item> getAllItems() {
-		// リポジトリの全件取得を委譲
-		return itemRepository.findAll();
+	// 全商品のカード一覧を返す（管理用など）
+	public List<ItemCard> getAllItems() {
+		// 一覧表示に必要な列のみを 1 クエリで取得
+		return itemRepository.findAllCards();
 	}
 
 	// 主キーで商品を取得
@@ -103,62 +192,77 @@ public class ItemService {
 		return itemRepository.findById(id);
 	}
 
-	// 商品保存：必要なら画像を Cloudinary またはローカルファイルシステムへアップロードして URL を保存
+	// 商品保存：画像が添付されていれば一時ファイルへ書き出し、保存後にバックグラウンドでアップロードする
+	// （Cloudinary またはローカルファイルシステム。完了すると元画像と縮小版の URL が設定される）
 	public Item saveItem(Item item, MultipartFile imageFile) throws IOException {
 
-		// 画像が添付されている場合にのみアップロード処理を実行
+		// 編集時は画像の列を最新の値にする（編集画面を開いた後に完了したアップロードを古い値で上書きしない）
+		if (item.getId() != null) {
+			itemRepository.findImageById(item.getId()).ifPresent(current -> {
+				item.setImageUrl(current.getImageUrl());
+				item.setDetailUrl(current.getDetailUrl());
+				item.setThumbnailUrl(current.getThumbnailUrl());
+				item.setImageStatus(current.getImageStatus());
+				item.setImagePendingSince(current.getImagePendingSince());
+			});
+		}
+
+		// 画像が添付されている場合はリクエスト内で一時ファイルへ書き出す（リクエスト終了後は元のファイルが消えるため）
+		SpooledUpload upload = null;
 		if (imageFile != null && !imageFile.isEmpty()) {
-			String imageUrl;
-			
-			// Cloudinaryが設定されている場合はそれを使用、そうでなければローカル保存を使用
-			if (cloudinaryService != null) {
-				// Cloudinary へアップロードし URL を受け取る
-				imageUrl = cloudinaryService.uploadFile(imageFile);
-			} else {
-				// ローカルファイルシステムに保存
-				imageUrl = localImageService.uploadFile(imageFile);
+			upload = itemImageService.spool(imageFile);
+			item.setImageStatus(Item.IMAGE_PENDING);
+			item.setImagePendingSince(LocalDateTime.now());
+		}
+
+		// 商品を保存
+		Item saved;
+		try {
+			saved = itemRepository.save(item);
+		} catch (RuntimeException e) {
+			if (upload != null) {
+				upload.close();
 			}
+			throw e;
+		}
 
-			// 画像 URL をエンティティへ設定
-			item.setImageUrl(imageUrl);
+		// 検索インデックスへ反映
+		itemSearchIndex.index(saved);
+
+		// 画像はバックグラウンドでアップロード（差し替え前の画像は完了時に解除される）
+		if (upload != null) {
+			itemImageService.uploadAsync(saved.getId(), upload);
 		}
 
-		// 商品を保存して返す
-		return itemRepository.save(item);
+		// 保存結果を返す
+		return saved;
 	}
 
-	// 商品削除：Cloudinary 上の画像も可能なら削除してから DB 削除
+	// 商品削除：画像を解除してから DB 削除
+	// 1 トランザクションで行い、削除が失敗したら（注文・チャットなどから参照されている等）画像の解除も取り消す
+	@Transactional
 	public void deleteItem(Long id) {
 
 		// まず対象商品を取得し、存在する場合のみ削除処理を進める
 		itemRepository.findById(id).ifPresent(item -> {
 
-			// 画像 URL がある場合は画像を削除
-			if (item.getImageUrl() != null) {
-				try {
-					if (cloudinaryService != null) {
-						// Cloudinaryが設定されている場合はCloudinaryから削除
-						cloudinaryService.deleteFile(item.getImageUrl());
-					} else {
-						// そうでなければローカルファイルから削除
-						localImageService.deleteFile(item.getImageUrl());
-					}
-				} catch (IOException e) {
-					// 画像削除失敗は致命ではないためログ出力に留める
-					System.err.println(
-							"Failed to delete image: " + e.getMessage());
-				}
-			}
+			// 画像 URL がある場合は画像を解除（Cloudinary は削除キューへ登録、ローカル保存は参照を解除）
+			// アップロード中の画像は、完了時に商品が無ければ解除される
+			itemImageService.release(item.getImageUrl());
 
-			// 最後に DB から商品レコードを削除
+			// 最後に DB から商品レコードを削除（参照制約の違反をここで検出するため即時に反映）
 			itemRepository.deleteById(id);
+			itemRepository.flush();
+
+			// 検索インデックスからも除外
+			itemSearchIndex.remove(id);
 		});
 	}
 
-	// 出品者の出品一覧を取得
-	public List<Item> getItemsBySeller(User seller) {
+	// 出品者の出品一覧（カード）を取得
+	public List<ItemCard> getItemsBySeller(User seller) {
 		// seller 条件で検索
-		return itemRepository.findBySeller(seller);
+		return itemRepository.findCardsBySeller(seller);
 	}
 
 	// 売却確定：商品ステータスを売却済へ変更
@@ -167,11 +271,15 @@ public class ItemService {
 		// 商品を取得して存在する場合のみ更新
 		itemRepository.findById(itemId).ifPresent(item -> {
 
-			// ステータスを売却済に変更
+			// ステータスを売却済に変更し、購入手続きの確保を解除
 			item.setStatus("売却済");
+			item.clearHold();
 
 			// 変更を保存
 			itemRepository.save(item);
+
+			// 検索インデックスのステータスも更新（売却済は検索対象外になる）
+			itemSearchIndex.updateStatus(itemId, "売却済");
 		});
 	}
 }
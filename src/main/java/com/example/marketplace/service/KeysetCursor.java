@@ -0,0 +1,51 @@
+package com.example.marketplace.service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * カーソル（キーセット）ページング用の位置情報
+ * (createdAt, id) の組で、新しい順の一覧上の位置を一意に表す
+ * 商品一覧・チャット履歴など、登録日時 + ID で並べる一覧で共通に使用する
+ *
+ * @param createdAt 直前ページ末尾の要素の登録日時
+ * @param id        直前ページ末尾の要素の ID（登録日時が同じ場合の順序付けに使用）
+ */
+public record KeysetCursor(LocalDateTime createdAt, Long id) {
+
+	// 先頭ページ用のカーソル（全要素より「後ろ」を指す）
+	public static final KeysetCursor FIRST = new KeysetCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59),
+			Long.MAX_VALUE);
+
+	// 指定要素の直後を指すカーソル
+	public static KeysetCursor of(LocalDateTime createdAt, Long id) {
+		return new KeysetCursor(createdAt, id);
+	}
+
+	/**
+	 * URL パラメータ（"登録日時_ID" 形式）からカーソルを復元する
+	 * 空文字や不正な値の場合は先頭ページとして扱う
+	 */
+	public static KeysetCursor parse(String value) {
+		if (value == null || value.isBlank()) {
+			return FIRST;
+		}
+		int sep = value.lastIndexOf('_');
+		if (sep <= 0) {
+			return FIRST;
+		}
+		try {
+			return new KeysetCursor(
+					LocalDateTime.parse(value.substring(0, sep)),
+					Long.valueOf(value.substring(sep + 1)));
+		} catch (DateTimeParseException | NumberFormatException e) {
+			return FIRST;
+		}
+	}
+
+	// URL パラメータ用の文字列表現
+	@Override
+	public String toString() {
+		return createdAt + "_" + id;
+	}
+}
@@ -12,8 +12,8 @@ import org.springframework.web.client.RestTemplate;
 @Service
 public class LineNotifyService {
 
-	// API エンドポイント URL（未設定ならデフォルト値を使う）
-	@Value("${line.notify.api.url:https://notify-api.line.me/api/notify}")
+	// API エンドポイント URL（未設定ならデフォルト値を使う。検証時はスタブサーバーへ向けられる）
+	@Value("${line.notify.endpoint:https://notify-api.line.me/api/notify}")
 	private String lineNotifyApiUrl;
 
 	// HTTP クライアントの参照
@@ -26,6 +26,7 @@ public class LineNotifyService {
 	}
 
 	// アクセストークンと本文を受け取り、LINE Notify へ送信
+	// 失敗時は RestClientException を送出する（再送判定は NotificationDispatcher が行う）
 	public void sendMessage(String accessToken, String message) {
 
 		// リクエストヘッダを構築
@@ -46,16 +47,7 @@ public class LineNotifyService {
 		// ヘッダ＋本文でエンティティを生成
 		HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(map, headers);
 
-		// 送信試行（失敗はログに残して握りつぶす）
-		try {
-			// POST で API へ投げる
-			restTemplate.postForEntity(lineNotifyApiUrl, request, String.class);
-
-			// 成功ログを標準出力へ
-			System.out.println("LINE Notify message sent successfully.");
-		} catch (Exception e) {
-			// 失敗時は標準エラーへ出力して処理継続
-			System.err.println("Failed to send LINE Notify message: " + e.getMessage());
-		}
+		// POST で API へ投げる
+		restTemplate.postForEntity(lineNotifyApiUrl, request, String.class);
 	}
 }
@@ -1,29 +1,63 @@
 package com.example.marketplace.service;
 
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+
+import com.example.marketplace.dto.ImageRenditions;
+import com.example.marketplace.entity.ImageBlob;
+import com.example.marketplace.repository.ImageBlobRepository;
 
 /**
  * 開発環境用のローカルファイルシステムに画像を保存するサービス
  * Cloudinaryが設定されていない場合に使用されます
+ * 画像は内容の SHA-256 で名前を付け（同じ画像は 1 つだけ保存）、ハッシュの先頭 2 文字ずつで
+ * ディレクトリを分けて保存します（ab/cd/SHA-256.拡張子）。縮小版は同じディレクトリに
+ * SHA-256_detail.jpg / SHA-256_thumb.jpg として保存します
+ * 使用している商品の数を参照数として記録し、参照がなくなった画像は ImageGarbageCollector が削除します
  */
 @Service
 public class LocalImageService {
 
+	// 縮小版のファイル名の接尾辞（元画像の SHA-256 に付ける）
+	private static final String DETAIL_SUFFIX = "_detail.jpg";
+	private static final String THUMBNAIL_SUFFIX = "_thumb.jpg";
+
+	// 内容アドレスの画像 URL（/images/ab/cd/SHA-256.拡張子）
+	private static final Pattern BLOB_URL = Pattern
+			.compile("^/images/[0-9a-f]{2}/[0-9a-f]{2}/([0-9a-f]{64})(\\.[a-z0-9]{1,10})?$");
+	// 内容アドレスのファイル（元画像・縮小版。/images/ 以下の相対パス）。内容が変わると名前も変わる
+	private static final Pattern BLOB_FILE = Pattern
+			.compile("^[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}(_detail|_thumb)?(\\.[a-z0-9]{1,10})?$");
+	// 保存時に残す拡張子
+	private static final Pattern EXTENSION = Pattern.compile("^\\.[a-z0-9]{1,10}$");
+
 	private final Path uploadDir;
 
-	public LocalImageService(@Value("${local.image.upload-dir:uploads/images}") String uploadDirPath) {
+	// 縮小版の生成
+	private final ImageRenditionService imageRenditionService;
+
+	// 画像の参照数
+	private final ImageBlobRepository imageBlobRepository;
+
+	public LocalImageService(@Value("${local.image.upload-dir:uploads/images}") String uploadDirPath,
+			ImageRenditionService imageRenditionService,
+			ImageBlobRepository imageBlobRepository) {
 		// アップロードディレクトリのパスを設定
-		this.uploadDir = Paths.get(uploadDirPath);
-		
+		this.uploadDir = Paths.get(uploadDirPath).toAbsolutePath().normalize();
+		this.imageRenditionService = imageRenditionService;
+		this.imageBlobRepository = imageBlobRepository;
+
 		// ディレクトリが存在しない場合は作成
 		try {
 			if (!Files.exists(this.uploadDir)) {
@@ -35,57 +69,166 @@ public class LocalImageService {
 	}
 
 	/**
-	 * 画像ファイルをローカルファイルシステムに保存し、公開URLを返す
-	 * 
-	 * @param file アップロードされたファイル
-	 * @return 公開URL（/images/ファイル名の形式）
+	 * 一時ファイルへ書き出した画像をローカルファイルシステムに保存し、縮小版（詳細用・サムネイル）も同じディレクトリに生成する
+	 * 同じ内容の画像が保存済みなら、保存・縮小はせずに参照数だけを増やす
+	 *
+	 * @param upload 一時ファイルへ書き出したアップロード（保存時は移動される。close は呼び出し側で行う）
+	 * @return 元画像・縮小版の公開URL（/images/ab/cd/ファイル名の形式）
 	 * @throws IOException ファイル保存に失敗した場合
 	 */
-	public String uploadFile(MultipartFile file) throws IOException {
-		if (file == null || file.isEmpty()) {
-			return null;
-		}
+	public ImageRenditions uploadImage(SpooledUpload upload) throws IOException {
+		String sha256 = upload.getSha256();
+		String originalFilename = (upload.getOriginalFilename() != null) ? upload.getOriginalFilename() : "";
 
-		// 元のファイル名を取得
-		String originalFilename = file.getOriginalFilename();
-		if (originalFilename == null || originalFilename.isEmpty()) {
-			return null;
+		// 先に参照を登録する（参照数 1 以上の画像は削除されないため、削除処理と競合しても消えない）
+		imageBlobRepository.acquire(sha256, "/images/" + shardPath(sha256) + sha256 + extension(originalFilename),
+				LocalDateTime.now());
+		// 保存済みの画像なら最初に登録された URL を使う
+		String url = imageBlobRepository.findById(sha256)
+				.map(ImageBlob::getUrl)
+				.orElseThrow(() -> new IllegalStateException("Image blob was not registered: " + sha256));
+
+		try {
+			store(upload, url);
+		} catch (IOException | RuntimeException e) {
+			// 保存できなかった画像の参照を取り消す
+			imageBlobRepository.release(sha256, LocalDateTime.now());
+			throw e;
 		}
+		return renditionsOf(url);
+	}
 
-		// 一意のファイル名を生成（UUID + 元の拡張子）
-		String extension = "";
-		int lastDotIndex = originalFilename.lastIndexOf('.');
-		if (lastDotIndex > 0) {
-			extension = originalFilename.substring(lastDotIndex);
+	/**
+	 * 画像の参照を解除する（ファイルは参照がなくなった後に ImageGarbageCollector が削除）
+	 * 内容アドレス化する前に保存された画像（/images/UUID.拡張子）は、トランザクションの確定後に削除する
+	 *
+	 * @param imageUrl 解除する画像のURL
+	 * @throws IOException ファイル削除に失敗した場合
+	 */
+	public void releaseImage(String imageUrl) throws IOException {
+		if (imageUrl == null || imageUrl.isEmpty()) {
+			return;
 		}
-		String uniqueFilename = UUID.randomUUID().toString() + extension;
 
-		// ファイルを保存
-		Path targetPath = uploadDir.resolve(uniqueFilename);
-		Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+		Matcher blob = BLOB_URL.matcher(imageUrl);
+		if (blob.matches()) {
+			imageBlobRepository.release(blob.group(1), LocalDateTime.now());
+			return;
+		}
 
-		// 公開URLを返す（/images/ファイル名の形式）
-		return "/images/" + uniqueFilename;
+		// 以前の形式（/images/ファイル名の形式を想定）
+		// ファイル削除は取り消せないため、呼び出し元のトランザクション（商品の削除など）の確定後に行う
+		if (imageUrl.startsWith("/images/")) {
+			Path original = resolve(imageUrl);
+			TransactionHooks.afterCommit(() -> {
+				try {
+					deleteWithRenditions(original);
+				} catch (IOException e) {
+					System.err.println("Failed to delete image: " + e.getMessage());
+				}
+			});
+		}
 	}
 
 	/**
-	 * 画像ファイルを削除
-	 * 
-	 * @param imageUrl 削除する画像のURL
-	 * @throws IOException ファイル削除に失敗した場合
+	 * 画像のファイル（元画像と縮小版）を削除する（ImageGarbageCollector から使用）
 	 */
-	public void deleteFile(String imageUrl) throws IOException {
-		if (imageUrl == null || imageUrl.isEmpty()) {
+	public void deleteBlobFiles(String url) throws IOException {
+		if (!BLOB_URL.matcher(url).matches()) {
+			return;
+		}
+		deleteWithRenditions(resolve(url));
+	}
+
+	// 元画像と縮小版が揃っていなければ保存する
+	private void store(SpooledUpload upload, String url) throws IOException {
+		Path original = resolve(url);
+		String baseName = baseName(original);
+		Path detail = original.resolveSibling(baseName + DETAIL_SUFFIX);
+		Path thumbnail = original.resolveSibling(baseName + THUMBNAIL_SUFFIX);
+		if (Files.exists(original) && Files.exists(detail) && Files.exists(thumbnail)) {
 			return;
 		}
 
-		// URLからファイル名を抽出（/images/ファイル名の形式を想定）
-		String filename = imageUrl.substring(imageUrl.lastIndexOf('/') + 1);
-		Path filePath = uploadDir.resolve(filename);
+		// デコードして画像であることを確認（画像でなければ何も保存しない）
+		BufferedImage image = imageRenditionService.decode(upload.getPath());
+		ImageRenditionService.RenderedImages rendered = imageRenditionService.render(image);
 
-		// ファイルが存在する場合は削除
-		if (Files.exists(filePath)) {
-			Files.delete(filePath);
+		Files.createDirectories(original.getParent());
+		// 縮小版は一時ファイルに書いてから置き換える（書きかけのファイルを配信しない）
+		writeAtomically(detail, rendered.detail());
+		writeAtomically(thumbnail, rendered.thumbnail());
+		// 元画像は一時ファイルを移動するためコピーしない（同じ内容なので既存でも置き換えてよい）
+		upload.moveTo(original);
+	}
+
+	// 同じディレクトリの一時ファイルに書き込んでから名前を変更
+	private static void writeAtomically(Path target, byte[] content) throws IOException {
+		Path temp = Files.createTempFile(target.getParent(), ".rendition-", ".tmp");
+		try {
+			Files.write(temp, content);
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	// 元画像と縮小版のファイルを削除
+	private static void deleteWithRenditions(Path original) throws IOException {
+		String baseName = baseName(original);
+		Files.deleteIfExists(original);
+		Files.deleteIfExists(original.resolveSibling(baseName + DETAIL_SUFFIX));
+		Files.deleteIfExists(original.resolveSibling(baseName + THUMBNAIL_SUFFIX));
+	}
+
+	// 元画像の URL から縮小版を含む URL 一式を組み立てる
+	private static ImageRenditions renditionsOf(String url) {
+		int lastDotIndex = url.lastIndexOf('.');
+		String base = (lastDotIndex > url.lastIndexOf('/')) ? url.substring(0, lastDotIndex) : url;
+		return new ImageRenditions(url, base + DETAIL_SUFFIX, base + THUMBNAIL_SUFFIX);
+	}
+
+	/**
+	 * 内容アドレスのファイル（同じ URL の内容は変わらない）かどうか
+	 *
+	 * @param relativePath /images/ 以下の相対パス
+	 */
+	public static boolean isContentAddressed(String relativePath) {
+		return BLOB_FILE.matcher(relativePath).matches();
+	}
+
+	/**
+	 * 公開 URL（/images/...）を保存先のパスへ変換する
+	 *
+	 * @throws IllegalArgumentException アップロードディレクトリの外を指す場合
+	 */
+	public Path resolve(String url) {
+		Path path = uploadDir.resolve(url.substring("/images/".length())).normalize();
+		if (!path.startsWith(uploadDir)) {
+			throw new IllegalArgumentException("Invalid image path: " + url);
+		}
+		return path;
+	}
+
+	// ハッシュの先頭 2 文字ずつでディレクトリを分ける（1 ディレクトリのファイル数を抑える）
+	private static String shardPath(String sha256) {
+		return sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/";
+	}
+
+	// 元のファイル名の拡張子（小文字。使えない文字を含む場合は付けない）
+	private static String extension(String originalFilename) {
+		int lastDotIndex = originalFilename.lastIndexOf('.');
+		if (lastDotIndex <= 0) {
+			return "";
 		}
+		String extension = originalFilename.substring(lastDotIndex).toLowerCase(Locale.ROOT);
+		return EXTENSION.matcher(extension).matches() ? extension : "";
+	}
+
+	// 拡張子を除いたファイル名
+	private static String baseName(Path file) {
+		String filename = file.getFileName().toString();
+		int lastDotIndex = filename.lastIndexOf('.');
+		return (lastDotIndex > 0) ? filename.substring(0, lastDotIndex) : filename;
 	}
 }
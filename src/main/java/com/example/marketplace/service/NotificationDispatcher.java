@@ -0,0 +1,113 @@
+package com.example.marketplace.service;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import com.example.marketplace.service.NotificationOutboxService.PendingNotification;
+
+/**
+ * 送信待ちキューの LINE 通知をバックグラウンドで送信する
+ * ・同時送信数は固定サイズのスレッドプールで制限
+ * ・失敗時は指数バックオフで再送し、上限回数を超えたら断念（DEAD）
+ * ・行ロック（SKIP LOCKED）で取得するため、複数ノードで動かしても二重送信しない
+ */
+@Service
+public class NotificationDispatcher {
+
+	// 送信待ちキューの操作
+	private final NotificationOutboxService notificationOutboxService;
+	// LINE Notify 送信
+	private final LineNotifyService lineNotifyService;
+	// 送信用スレッドプール（同時送信数の上限）
+	private final ExecutorService senders;
+	// 1 回のポーリングで取得する件数
+	private final int batchSize;
+	// 再送方針（最大試行回数を超えたら DEAD。送信が止まったノードの分は送信処理中ロックの期限後に再取得される）
+	private final RetryPolicy retryPolicy;
+
+	// 依存性と設定値をコンストラクタで注入
+	public NotificationDispatcher(NotificationOutboxService notificationOutboxService,
+			LineNotifyService lineNotifyService,
+			@Value("${notification.outbox.concurrency:4}") int concurrency,
+			@Value("${notification.outbox.batch-size:20}") int batchSize,
+			@Value("${notification.outbox.max-attempts:8}") int maxAttempts,
+			@Value("${notification.outbox.base-backoff-seconds:30}") long baseBackoffSeconds,
+			@Value("${notification.outbox.max-backoff-seconds:3600}") long maxBackoffSeconds,
+			@Value("${notification.outbox.lease-seconds:120}") long leaseSeconds) {
+		this.notificationOutboxService = notificationOutboxService;
+		this.lineNotifyService = lineNotifyService;
+		this.senders = Executors.newFixedThreadPool(concurrency, r -> {
+			Thread t = new Thread(r, "line-notify-sender");
+			t.setDaemon(true);
+			return t;
+		});
+		this.batchSize = batchSize;
+		this.retryPolicy = new RetryPolicy(maxAttempts, baseBackoffSeconds, maxBackoffSeconds, leaseSeconds);
+	}
+
+	// 送信期限が来た通知を取得して送信する（前回の送信がすべて終わってから次を取得）
+	@Scheduled(fixedDelayString = "${notification.outbox.poll-interval-millis:1000}")
+	public void dispatch() {
+		List<PendingNotification> batch = notificationOutboxService.claimDue(batchSize, retryPolicy.getLease());
+		if (batch.isEmpty()) {
+			return;
+		}
+		List<Callable<Void>> tasks = batch.stream()
+				.<Callable<Void>> map(n -> () -> {
+					deliver(n);
+					return null;
+				})
+				.toList();
+		try {
+			senders.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			// 停止時は未完了分を lease 期限後に再取得させる
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// 1 件送信して結果を記録
+	private void deliver(PendingNotification n) {
+		// 登録後にトークンが削除された場合は送れない
+		if (n.accessToken() == null) {
+			notificationOutboxService.markDead(n.id(), "LINE Notify token is not set");
+			return;
+		}
+		try {
+			lineNotifyService.sendMessage(n.accessToken(), n.message());
+			notificationOutboxService.markSent(n.id());
+		} catch (Exception e) {
+			retryPolicy.recordFailure("LINE Notify (outbox id=" + n.id() + ")", n.attempts(), e, isRetryable(e),
+					(nextAttemptAt, error) -> notificationOutboxService.markRetry(n.id(), nextAttemptAt, error),
+					error -> notificationOutboxService.markDead(n.id(), error));
+		}
+	}
+
+	// 再送しても成功しない失敗（トークン無効などの 4xx、ただし 429 は除く）かどうか
+	private boolean isRetryable(Exception e) {
+		if (e instanceof HttpClientErrorException clientError) {
+			return clientError.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS);
+		}
+		return true;
+	}
+
+	// アプリ停止時に送信スレッドを止める
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		senders.shutdown();
+		if (!senders.awaitTermination(10, TimeUnit.SECONDS)) {
+			senders.shutdownNow();
+		}
+	}
+}
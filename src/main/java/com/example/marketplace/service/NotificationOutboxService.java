@@ -0,0 +1,87 @@
+package com.example.marketplace.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.marketplace.entity.NotificationOutbox;
+import com.example.marketplace.entity.User;
+import com.example.marketplace.repository.NotificationOutboxRepository;
+
+/**
+ * LINE 通知の送信待ちキューを操作するサービス
+ * 業務処理は enqueue で登録するだけで、実際の送信は NotificationDispatcher が行う
+ */
+@Service
+public class NotificationOutboxService {
+
+	// 送信待ちキューのリポジトリ
+	private final NotificationOutboxRepository notificationOutboxRepository;
+
+	// 依存性をコンストラクタで注入
+	public NotificationOutboxService(NotificationOutboxRepository notificationOutboxRepository) {
+		this.notificationOutboxRepository = notificationOutboxRepository;
+	}
+
+	// 通知を登録（呼び出し元のトランザクションに参加し、ロールバック時は通知も取り消される）
+	@Transactional
+	public void enqueue(User recipient, String message) {
+		// 通知トークン未設定のユーザーには送らない
+		if (recipient == null || recipient.getLineNotifyToken() == null) {
+			return;
+		}
+		notificationOutboxRepository.save(new NotificationOutbox(recipient, message));
+	}
+
+	/**
+	 * 送信期限が来た通知を最大 limit 件取得し、送信処理中としてロックする
+	 * ロック期限（lease）内に結果が記録されなければ、他ノードが再取得して送信する
+	 */
+	@Transactional
+	public List<PendingNotification> claimDue(int limit, Duration lease) {
+		LocalDateTime now = LocalDateTime.now();
+		List<NotificationOutbox> due = notificationOutboxRepository.findDueForUpdate(now, limit);
+		for (NotificationOutbox n : due) {
+			n.setStatus(NotificationOutbox.STATUS_SENDING);
+			n.setLockedUntil(now.plus(lease));
+			n.setAttempts(n.getAttempts() + 1);
+		}
+		// 送信時点のトークンを使う（トークン削除済みなら null）
+		return due.stream()
+				.map(n -> new PendingNotification(n.getId(), n.getRecipient().getLineNotifyToken(),
+						n.getMessage(), n.getAttempts()))
+				.toList();
+	}
+
+	// 送信成功を記録
+	@Transactional
+	public void markSent(Long id) {
+		notificationOutboxRepository.markSent(id, LocalDateTime.now());
+	}
+
+	// 送信失敗を記録し、指定日時以降に再送する
+	@Transactional
+	public void markRetry(Long id, LocalDateTime nextAttemptAt, String error) {
+		notificationOutboxRepository.markRetry(id, nextAttemptAt, error);
+	}
+
+	// 送信を断念（デッドレター）
+	@Transactional
+	public void markDead(Long id, String error) {
+		notificationOutboxRepository.markDead(id, error);
+	}
+
+	/**
+	 * 送信対象の通知（トランザクション外で扱えるよう必要な値だけを保持）
+	 *
+	 * @param id          通知ID
+	 * @param accessToken 通知先ユーザーの LINE トークン
+	 * @param message     通知本文
+	 * @param attempts    今回を含む送信試行回数
+	 */
+	public record PendingNotification(Long id, String accessToken, String message, int attempts) {
+	}
+}
@@ -0,0 +1,149 @@
+package com.example.marketplace.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 注文明細のエクスポート（管理者向け、CSV / NDJSON）
+ * 前方専用カーソルで固定件数ずつ読み込み、1 行ずつ出力先へ書き出すため、件数に関係なくメモリ使用量は一定
+ */
+@Service
+public class OrderExportService {
+
+	// 出力形式
+	public enum Format {
+		CSV, NDJSON
+	}
+
+	// 出力列（CSV のヘッダ / NDJSON のキー）
+	private static final List<String> COLUMNS = List.of(
+			"order_id", "created_at", "status", "price", "payment_intent_id",
+			"item_id", "item_name", "buyer_id", "buyer_name", "seller_id", "seller_name");
+
+	// 注文 × 商品 × 購入者 × 出品者（作成日時の範囲は [開始日 0 時, 終了日翌日 0 時)）
+	private static final String EXPORT_SQL = "SELECT o.id, o.created_at, o.status, o.price, o.payment_intent_id,"
+			+ " i.id, i.name, b.id, b.name, s.id, s.name"
+			+ " FROM app_order o"
+			+ " JOIN item i ON i.id = o.item_id"
+			+ " JOIN users b ON b.id = o.buyer_id"
+			+ " JOIN users s ON s.id = i.user_id"
+			+ " WHERE o.created_at >= ? AND o.created_at < ?"
+			+ " ORDER BY o.created_at, o.id";
+
+	// JDBC 直接アクセス（JPA の永続化コンテキストに行を溜めないため）
+	private final JdbcTemplate jdbcTemplate;
+	// NDJSON 出力用
+	private final ObjectMapper objectMapper;
+	// カーソルで一度に取得する行数
+	private final int fetchSize;
+
+	// 依存性と設定値をコンストラクタで注入
+	public OrderExportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+			@Value("${order.export.fetch-size:1000}") int fetchSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.objectMapper = objectMapper;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * 指定期間（作成日ベース、両端含む）の注文を出力先へ書き出す
+	 * PostgreSQL はトランザクション内（autocommit 無効）でのみ fetchSize 単位のカーソル読み込みになるため、
+	 * 読み取り専用トランザクションで実行する
+	 */
+	@Transactional(readOnly = true)
+	public void export(LocalDate startDate, LocalDate endDate, Format format, Writer writer) {
+		if (format == Format.CSV) {
+			writeLine(writer, String.join(",", COLUMNS));
+		}
+		jdbcTemplate.query(con -> {
+			PreparedStatement ps = con.prepareStatement(EXPORT_SQL,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(fetchSize);
+			ps.setTimestamp(1, Timestamp.valueOf(startDate.atStartOfDay()));
+			ps.setTimestamp(2, Timestamp.valueOf(endDate.plusDays(1).atStartOfDay()));
+			return ps;
+		}, rs -> {
+			Object[] row = readRow(rs);
+			writeLine(writer, format == Format.CSV ? toCsv(row) : toJson(row));
+		});
+	}
+
+	// 現在行を出力用の値に変換
+	private Object[] readRow(ResultSet rs) throws SQLException {
+		Timestamp createdAt = rs.getTimestamp(2);
+		return new Object[] {
+				rs.getLong(1),
+				createdAt == null ? null : createdAt.toLocalDateTime().toString(),
+				rs.getString(3),
+				rs.getBigDecimal(4),
+				rs.getString(5),
+				rs.getLong(6),
+				rs.getString(7),
+				rs.getLong(8),
+				rs.getString(9),
+				rs.getLong(10),
+				rs.getString(11)
+		};
+	}
+
+	// CSV の 1 行（カンマ・引用符・改行を含む値は引用符で囲む）
+	private String toCsv(Object[] row) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			if (row[i] == null) {
+				continue;
+			}
+			String value = row[i].toString();
+			if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+					|| value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+				sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+			} else {
+				sb.append(value);
+			}
+		}
+		return sb.toString();
+	}
+
+	// NDJSON の 1 行
+	private String toJson(Object[] row) {
+		Map<String, Object> obj = new LinkedHashMap<>();
+		for (int i = 0; i < row.length; i++) {
+			obj.put(COLUMNS.get(i), row[i]);
+		}
+		try {
+			return objectMapper.writeValueAsString(obj);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Failed to serialize order row", e);
+		}
+	}
+
+	// 1 行書き出し（クライアント切断時は例外で読み込みを打ち切る）
+	private void writeLine(Writer writer, String line) {
+		try {
+			writer.write(line);
+			writer.write('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
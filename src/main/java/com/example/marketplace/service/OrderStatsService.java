@@ -0,0 +1,82 @@
+package com.example.marketplace.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.marketplace.entity.AppOrder;
+import com.example.marketplace.repository.OrderDailyStatsRepository;
+
+/**
+ * 売上統計（日次集計 order_daily_stats）の更新と参照
+ * 注文の作成・状態変更のたびに同じトランザクションで加減算し、統計画面は集計行だけを読む
+ */
+@Service
+public class OrderStatsService {
+
+	// 売上に計上するステータス
+	private static final List<String> SALES_STATUSES = List.of("購入済", "発送済");
+
+	// 日次集計リポジトリの参照
+	private final OrderDailyStatsRepository orderDailyStatsRepository;
+
+	// 依存性をコンストラクタで注入
+	public OrderStatsService(OrderDailyStatsRepository orderDailyStatsRepository) {
+		this.orderDailyStatsRepository = orderDailyStatsRepository;
+	}
+
+	// 注文作成時：作成日・現在のステータスへ 1 件加算
+	@Transactional
+	public void recordCreated(AppOrder order) {
+		orderDailyStatsRepository.adjust(order.getCreatedAt().toLocalDate(), order.getStatus(), 1,
+				order.getPrice());
+	}
+
+	// ステータス変更時：旧ステータスから 1 件減算し、新ステータスへ 1 件加算
+	@Transactional
+	public void recordTransition(AppOrder order, String fromStatus, String toStatus) {
+		if (fromStatus == null ? toStatus == null : fromStatus.equals(toStatus)) {
+			return;
+		}
+		LocalDate date = order.getCreatedAt().toLocalDate();
+		if (fromStatus != null) {
+			orderDailyStatsRepository.adjust(date, fromStatus, -1, order.getPrice().negate());
+		}
+		if (toStatus != null) {
+			orderDailyStatsRepository.adjust(date, toStatus, 1, order.getPrice());
+		}
+	}
+
+	// 複数注文の一括ステータス変更時：作成日ごとにまとめて移し替え（集計行の更新回数を日数分に抑える）
+	@Transactional
+	public void recordTransitions(List<AppOrder> orders, String fromStatus, String toStatus) {
+		Map<LocalDate, List<AppOrder>> byDate = orders.stream()
+				.collect(Collectors.groupingBy(o -> o.getCreatedAt().toLocalDate()));
+		byDate.forEach((date, dayOrders) -> {
+			BigDecimal sum = dayOrders.stream().map(AppOrder::getPrice).reduce(BigDecimal.ZERO, BigDecimal::add);
+			orderDailyStatsRepository.adjust(date, fromStatus, -dayOrders.size(), sum.negate());
+			orderDailyStatsRepository.adjust(date, toStatus, dayOrders.size(), sum);
+		});
+	}
+
+	// 指定期間（作成日ベース、両端含む）の売上合計
+	@Transactional(readOnly = true)
+	public BigDecimal getTotalSales(LocalDate startDate, LocalDate endDate) {
+		return orderDailyStatsRepository.sumTotalPrice(startDate, endDate, SALES_STATUSES);
+	}
+
+	// 指定期間（作成日ベース、両端含む）のステータス別件数
+	@Transactional(readOnly = true)
+	public Map<String, Long> getOrderCountByStatus(LocalDate startDate, LocalDate endDate) {
+		Map<String, Long> counts = new LinkedHashMap<>();
+		orderDailyStatsRepository.countByStatus(startDate, endDate)
+				.forEach(c -> counts.put(c.getStatus(), c.getCount()));
+		return counts;
+	}
+}
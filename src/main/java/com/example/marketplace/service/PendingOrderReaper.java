@@ -0,0 +1,242 @@
+package com.example.marketplace.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.marketplace.repository.AppOrderRepository;
+import com.example.marketplace.repository.AppOrderRepository.StalePendingOrder;
+import com.stripe.model.PaymentIntent;
+
+/**
+ * 放置された決済待ち注文の照合処理
+ * 一定時間を過ぎた決済待ち注文を ID 順にバッチで取得し、Stripe の状態に合わせて確定またはキャンセルする
+ * ・取得は短いトランザクション（SKIP LOCKED + 照合確保期限）で行い、長いロックは取らない
+ * ・複数ノードで動いても同じ注文を同時に照合しない
+ * ・Stripe への問い合わせは固定サイズのスレッドプールで同時実行数を制限
+ * ・照合は専用スレッドで行い、定期実行のスレッドは待たせない（前回の照合が終わっていなければ今回は見送る）
+ */
+@Service
+public class PendingOrderReaper {
+
+	// Stripe 上でまだ支払われていない（放置された）PaymentIntent の状態
+	private static final List<String> ABANDONED_STATUSES = List.of(
+			"requires_payment_method", "requires_confirmation", "requires_action");
+
+	// 注文リポジトリ（照合対象の取得）
+	private final AppOrderRepository appOrderRepository;
+	// 注文の確定・キャンセル
+	private final AppOrderService appOrderService;
+	// Stripe（未設定なら null）
+	private final StripeService stripeService;
+	// 取得用の短いトランザクション
+	private final TransactionTemplate transactionTemplate;
+	// 照合全体を実行するスレッド
+	private final ExecutorService runner;
+	// Stripe 問い合わせ用スレッドプール
+	private final ExecutorService checkers;
+	// 照合の実行中か（実行中なら次の定期実行は見送る）
+	private final AtomicBoolean running = new AtomicBoolean();
+	// 決済待ちのまま放置とみなすまでの時間
+	private final Duration pendingTimeout;
+	// 1 バッチの件数
+	private final int batchSize;
+	// 照合確保期限（照合中のノードが止まっても、期限後に他ノードが照合する）
+	private final Duration lease;
+
+	// 依存性と設定値をコンストラクタで注入
+	public PendingOrderReaper(AppOrderRepository appOrderRepository,
+			AppOrderService appOrderService,
+			ObjectProvider<StripeService> stripeServiceProvider,
+			TransactionTemplate transactionTemplate,
+			@Value("${order.reaper.pending-timeout-minutes:60}") long pendingTimeoutMinutes,
+			@Value("${order.reaper.batch-size:100}") int batchSize,
+			@Value("${order.reaper.concurrency:4}") int concurrency,
+			@Value("${order.reaper.lease-seconds:300}") long leaseSeconds) {
+		this.appOrderRepository = appOrderRepository;
+		this.appOrderService = appOrderService;
+		this.stripeService = stripeServiceProvider.getIfAvailable();
+		this.transactionTemplate = transactionTemplate;
+		this.runner = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "pending-order-reaper-runner");
+			t.setDaemon(true);
+			return t;
+		});
+		this.checkers = Executors.newFixedThreadPool(concurrency, r -> {
+			Thread t = new Thread(r, "pending-order-reaper");
+			t.setDaemon(true);
+			return t;
+		});
+		this.pendingTimeout = Duration.ofMinutes(pendingTimeoutMinutes);
+		this.batchSize = batchSize;
+		this.lease = Duration.ofSeconds(leaseSeconds);
+	}
+
+	// 放置された決済待ち注文の照合を専用スレッドで開始する（前回の照合が実行中なら見送る）
+	@Scheduled(fixedDelayString = "${order.reaper.interval-millis:300000}",
+			initialDelayString = "${order.reaper.initial-delay-millis:60000}")
+	public void reap() {
+		if (!running.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			runner.execute(() -> {
+				try {
+					reapAll();
+				} catch (RuntimeException e) {
+					// 照合確保期限の後、次回の実行で再照合される
+					System.err.println("Failed to reap pending orders: " + e.getMessage());
+				} finally {
+					running.set(false);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// 停止中
+			running.set(false);
+		}
+	}
+
+	// 放置された決済待ち注文をすべて照合する
+	private void reapAll() {
+		LocalDateTime cutoff = LocalDateTime.now().minus(pendingTimeout);
+		long afterId = 0;
+		int expired = 0;
+		while (true) {
+			List<StalePendingOrder> batch = claimBatch(cutoff, afterId);
+			if (batch.isEmpty()) {
+				break;
+			}
+			afterId = batch.get(batch.size() - 1).getId();
+			expired += reconcile(batch);
+			if (batch.size() < batchSize) {
+				break;
+			}
+		}
+		if (expired > 0) {
+			System.out.println("Expired " + expired + " abandoned pending orders.");
+		}
+	}
+
+	// 次のバッチを取得し、照合確保期限を設定（短いトランザクション）
+	private List<StalePendingOrder> claimBatch(LocalDateTime cutoff, long afterId) {
+		return transactionTemplate.execute(status -> {
+			LocalDateTime now = LocalDateTime.now();
+			List<StalePendingOrder> batch = appOrderRepository.findStalePendingForUpdate(cutoff, now, afterId,
+					batchSize);
+			if (!batch.isEmpty()) {
+				appOrderRepository.markReconciling(batch.stream().map(StalePendingOrder::getId).toList(),
+						now.plus(lease));
+			}
+			return batch;
+		});
+	}
+
+	// バッチ内の注文を Stripe と照合し、放置された注文をまとめてキャンセル（キャンセル件数を返す）
+	private int reconcile(List<StalePendingOrder> batch) {
+		List<Long> toExpire = Collections.synchronizedList(new ArrayList<>());
+		List<Callable<Void>> tasks = batch.stream()
+				.<Callable<Void>> map(order -> () -> {
+					try {
+						if (shouldExpire(order)) {
+							toExpire.add(order.getId());
+						}
+					} catch (Exception e) {
+						// 照合確保期限の後、次回の実行で再照合される
+						System.err.println("Failed to reconcile order " + order.getId() + ": " + e.getMessage());
+					}
+					return null;
+				})
+				.toList();
+		try {
+			checkers.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		}
+		return toExpire.isEmpty() ? 0 : expire(toExpire);
+	}
+
+	// まとめてキャンセルし、失敗したら（照合中に他の処理が注文や商品を更新した等）1 件ずつキャンセルし直す
+	// 1 件ずつでも失敗した注文は、照合確保期限の後、次回の実行で再照合される
+	private int expire(List<Long> orderIds) {
+		try {
+			return appOrderService.expirePendingOrders(orderIds);
+		} catch (RuntimeException e) {
+			System.err.println("Failed to expire " + orderIds.size()
+					+ " pending orders in one batch, retrying one by one: " + e.getMessage());
+		}
+		int expired = 0;
+		for (Long orderId : orderIds) {
+			try {
+				expired += appOrderService.expirePendingOrders(List.of(orderId));
+			} catch (RuntimeException e) {
+				System.err.println("Failed to expire pending order " + orderId + ": " + e.getMessage());
+			}
+		}
+		return expired;
+	}
+
+	// 1 件照合：支払い済みなら確定し、放置されていれば true（キャンセル対象）
+	private boolean shouldExpire(StalePendingOrder order) throws Exception {
+		// PaymentIntent 作成前に止まった注文
+		if (order.getPaymentIntentId() == null) {
+			return true;
+		}
+		// Stripe 未設定なら照合できない
+		if (stripeService == null) {
+			return false;
+		}
+		PaymentIntent paymentIntent = stripeService.retrievePaymentIntent(order.getPaymentIntentId());
+		String status = paymentIntent.getStatus();
+		if ("succeeded".equals(status)) {
+			// Webhook もリダイレクトも届かなかった支払い済み注文を確定
+			appOrderService.handlePaymentSucceeded(order.getPaymentIntentId());
+			return false;
+		}
+		if ("canceled".equals(status)) {
+			return true;
+		}
+		if (ABANDONED_STATUSES.contains(status)) {
+			// 後から支払われないよう、先に Stripe 側をキャンセルする（失敗したら次回に再照合）
+			stripeService.cancelPaymentIntent(order.getPaymentIntentId());
+			return true;
+		}
+		if ("requires_capture".equals(status)) {
+			// 自動キャプチャで作成しているため通常は起こらない（Stripe 側で手動キャプチャに変更された場合のみ）
+			// このアプリはキャプチャしないので、オーソリを解放して注文をキャンセルする
+			stripeService.cancelPaymentIntent(order.getPaymentIntentId());
+			return true;
+		}
+		// processing など：結果待ちのため次回に再照合
+		return false;
+	}
+
+	// アプリ停止時にスレッドを止める
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		runner.shutdown();
+		if (!runner.awaitTermination(10, TimeUnit.SECONDS)) {
+			runner.shutdownNow();
+		}
+		checkers.shutdown();
+		if (!checkers.awaitTermination(10, TimeUnit.SECONDS)) {
+			checkers.shutdownNow();
+		}
+	}
+}
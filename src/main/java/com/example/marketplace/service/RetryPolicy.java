@@ -0,0 +1,63 @@
+package com.example.marketplace.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * バックグラウンドで処理するキュー（LINE 通知・Stripe Webhook・画像削除）共通の再試行方針
+ * ・取得時に処理確保期限（lease）を設定し、処理中のノードが止まっても期限後に他ノードが再取得する
+ * ・失敗時は指数バックオフ（初期値から試行ごとに 2 倍、上限あり）で再試行し、上限回数を超えたら断念する
+ */
+public class RetryPolicy {
+
+	// 最大試行回数（超えたら断念）
+	private final int maxAttempts;
+	// 再試行間隔の初期値と上限
+	private final Duration baseBackoff;
+	private final Duration maxBackoff;
+	// 処理確保期限
+	private final Duration lease;
+
+	public RetryPolicy(int maxAttempts, long baseBackoffSeconds, long maxBackoffSeconds, long leaseSeconds) {
+		this.maxAttempts = maxAttempts;
+		this.baseBackoff = Duration.ofSeconds(baseBackoffSeconds);
+		this.maxBackoff = Duration.ofSeconds(maxBackoffSeconds);
+		this.lease = Duration.ofSeconds(leaseSeconds);
+	}
+
+	// 処理確保期限
+	public Duration getLease() {
+		return lease;
+	}
+
+	// 試行回数に応じた再試行間隔（初期値, 2 倍, 4 倍 ... 上限 maxBackoff）
+	public Duration backoff(int attempts) {
+		int shift = Math.min(Math.max(attempts - 1, 0), 20);
+		Duration d = baseBackoff.multipliedBy(1L << shift);
+		return d.compareTo(maxBackoff) > 0 ? maxBackoff : d;
+	}
+
+	/**
+	 * 失敗を記録する
+	 * 再試行しても成功しない失敗か、今回で上限回数に達した場合は断念（giveUp）、
+	 * それ以外は次回の試行日時を設定する（retry）
+	 *
+	 * @param label     断念時のログに出す対象の説明
+	 * @param attempts  今回を含む試行回数
+	 * @param retryable 再試行で成功し得る失敗か
+	 * @param retry     次回の試行日時とエラー内容を記録する処理
+	 * @param giveUp    エラー内容を記録して断念する処理
+	 */
+	public void recordFailure(String label, int attempts, Exception e, boolean retryable,
+			BiConsumer<LocalDateTime, String> retry, Consumer<String> giveUp) {
+		String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+		if (!retryable || attempts >= maxAttempts) {
+			System.err.println(label + " gave up: " + error);
+			giveUp.accept(error);
+		} else {
+			retry.accept(LocalDateTime.now().plus(backoff(attempts)), error);
+		}
+	}
+}
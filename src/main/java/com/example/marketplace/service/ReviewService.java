@@ -14,12 +14,16 @@ import org.springframework.transaction.annotation.Transactional;
 import com.example.marketplace.entity.AppOrder;
 // レビューエンティティの import
 import com.example.marketplace.entity.Review;
+// 出品者評価集計エンティティの import
+import com.example.marketplace.entity.SellerRating;
 // ユーザエンティティの import
 import com.example.marketplace.entity.User;
 // 注文リポジトリの import
 import com.example.marketplace.repository.AppOrderRepository;
 // レビューリポジトリの import
 import com.example.marketplace.repository.ReviewRepository;
+// 出品者評価集計リポジトリの import
+import com.example.marketplace.repository.SellerRatingRepository;
 
 // サービス層の宣言
 @Service
@@ -31,20 +35,31 @@ public class ReviewService {
 	// 注文リポジトリの参照
 	private final AppOrderRepository appOrderRepository;
 
+	// 出品者評価集計リポジトリの参照
+	private final SellerRatingRepository sellerRatingRepository;
+
 	// 依存性をコンストラクタ注入
 	public ReviewService(ReviewRepository reviewRepository,
-			AppOrderRepository appOrderRepository) {
+			AppOrderRepository appOrderRepository,
+			SellerRatingRepository sellerRatingRepository) {
 
 		// レビューリポジトリを設定
 		this.reviewRepository = reviewRepository;
 		// 注文リポジトリを設定
 		this.appOrderRepository = appOrderRepository;
+		// 出品者評価集計リポジトリを設定
+		this.sellerRatingRepository = sellerRatingRepository;
 	}
 
 	// レビュー投稿（買い手のみ、1 注文 1 レビュー）
 	@Transactional
 	public Review submitReview(Long orderId, User reviewer, int rating, String comment) {
 
+		// 評価点の範囲を検証（集計の星別件数と対応させるため）
+		if (rating < 1 || rating > 5) {
+			throw new IllegalArgumentException("Rating must be between 1 and 5.");
+		}
+
 		// 注文を取得（存在しなければ 400 相当）
 		AppOrder order = appOrderRepository.findById(orderId)
 				.orElseThrow(() -> new IllegalArgumentException("Order not found."));
@@ -77,8 +92,14 @@ public class ReviewService {
 		// コメントを設定
 		review.setComment(comment);
 
-		// 保存して返却
-		return reviewRepository.save(review);
+		// 保存
+		Review saved = reviewRepository.save(review);
+
+		// 同じトランザクション内で出品者の評価集計へ加算
+		sellerRatingRepository.addRating(saved.getSeller().getId(), rating);
+
+		// 保存結果を返却
+		return saved;
 	}
 
 	// 出品者に対するレビュー一覧を取得
@@ -87,12 +108,20 @@ public class ReviewService {
 		return reviewRepository.findBySeller(seller);
 	}
 
-	// 出品者に対する平均評価を算出
+	// 出品者に対する平均評価を取得（レビューが無ければ空）
 	public OptionalDouble getAverageRatingForSeller(User seller) {
-		// ストリームで平均を計算
-		return reviewRepository.findBySeller(seller).stream()
-				.mapToInt(Review::getRating)
-				.average();
+		// 集計行から O(1) で算出
+		return sellerRatingRepository.findById(seller.getId())
+				.filter(r -> r.getReviewCount() > 0)
+				.map(r -> OptionalDouble.of(r.getAverage()))
+				.orElse(OptionalDouble.empty());
+	}
+
+	// 出品者の評価集計（件数・合計・星別件数）を取得（レビューが無ければ 0 件の集計）
+	public SellerRating getRatingSummary(Long sellerId) {
+		// 集計行が無い出品者は空の集計を返す
+		return sellerRatingRepository.findById(sellerId)
+				.orElseGet(() -> new SellerRating(sellerId));
 	}
 
 	// あるレビュワーが書いたレビューを取得
@@ -0,0 +1,67 @@
+package com.example.marketplace.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * ディスクへ書き出したアップロードファイル
+ * 書き出し時に求めたサイズと SHA-256 を持つ。close 時に一時ファイルを削除する（移動済みなら何もしない）
+ */
+public final class SpooledUpload implements AutoCloseable {
+
+	// 一時ファイル
+	private final Path path;
+	// バイト数
+	private final long size;
+	// 内容の SHA-256（16 進小文字）
+	private final String sha256;
+	// 元のファイル名
+	private final String originalFilename;
+
+	SpooledUpload(Path path, long size, String sha256, String originalFilename) {
+		this.path = path;
+		this.size = size;
+		this.sha256 = sha256;
+		this.originalFilename = originalFilename;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public String getSha256() {
+		return sha256;
+	}
+
+	public String getOriginalFilename() {
+		return originalFilename;
+	}
+
+	// 内容を読み込むストリームを開く
+	public InputStream openStream() throws IOException {
+		return Files.newInputStream(path);
+	}
+
+	// 一時ファイルを保存先へ移動（同じファイルシステムならコピーせず名前の変更のみ）
+	public void moveTo(Path target) throws IOException {
+		try {
+			Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// 別ファイルシステムなどで原子的に移動できない場合
+			Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	// 一時ファイルを削除
+	@Override
+	public void close() throws IOException {
+		Files.deleteIfExists(path);
+	}
+}
@@ -9,20 +9,35 @@ import org.springframework.stereotype.Service;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
+import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCancelParams;
 import com.stripe.param.PaymentIntentCreateParams;
+import com.stripe.param.RefundCreateParams;
 
 @Service
 @ConditionalOnExpression("!'${stripe.api.secretKey:}'.isEmpty()")
 public class StripeService {
 
 	// コンストラクタでシークレットキーを初期化
-	public StripeService(@Value("${stripe.api.secretKey}") String secretKey) {
+	public StripeService(@Value("${stripe.api.secretKey}") String secretKey,
+			@Value("${http.client.connect-timeout-millis:3000}") int connectTimeoutMillis,
+			@Value("${http.client.read-timeout-millis:10000}") int readTimeoutMillis,
+			@Value("${stripe.api.base-url:}") String apiBaseUrl) {
 		// Stripe SDK に API キーを設定（スレッドセーフ）
 		Stripe.apiKey = secretKey;
+		// SDK 内蔵の HTTP クライアントにも外部 API 共通のタイムアウトを適用
+		Stripe.setConnectTimeout(connectTimeoutMillis);
+		Stripe.setReadTimeout(readTimeoutMillis);
+		// 接続先の差し替え（ローカルのスタブサーバーで検証する場合のみ設定）
+		if (!apiBaseUrl.isBlank()) {
+			Stripe.overrideApiBase(apiBaseUrl);
+		}
 	}
 
 	// 支払い意図（PaymentIntent）を作成
-	public PaymentIntent createPaymentIntent(BigDecimal amount, String currency, String description)
+	// 注文 ID をメタデータと冪等キーに使うため、同じ注文で再送しても PaymentIntent は 1 つだけ作られる
+	public PaymentIntent createPaymentIntent(Long orderId, BigDecimal amount, String currency, String description)
 			throws StripeException {
 
 		// 通貨の最小単位へ変換
@@ -39,6 +54,8 @@ public class StripeService {
 				.setCurrency(currency)
 				// 説明
 				.setDescription(description)
+				// 注文との対応付け（Webhook などから注文を辿るため）
+				.putMetadata("order_id", String.valueOf(orderId))
 				// 自動支払い手段を有効化
 				.setAutomaticPaymentMethods(
 						PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
@@ -46,8 +63,11 @@ public class StripeService {
 								.build())
 				.build();
 
-		// PaymentIntent を作成して返す
-		return PaymentIntent.create(params);
+		// PaymentIntent を作成して返す（注文単位の冪等キー付き）
+		RequestOptions options = RequestOptions.builder()
+				.setIdempotencyKey("order-" + orderId + "-payment-intent")
+				.build();
+		return PaymentIntent.create(params, options);
 	}
 
 	// 既存の PaymentIntent を取得
@@ -55,4 +75,21 @@ public class StripeService {
 		// ID から取得
 		return PaymentIntent.retrieve(paymentIntentId);
 	}
+
+	// PaymentIntent をキャンセル（注文の確保に失敗した場合の取り消し用）
+	public PaymentIntent cancelPaymentIntent(String paymentIntentId) throws StripeException {
+		// ID から取得してキャンセル
+		return PaymentIntent.retrieve(paymentIntentId).cancel(PaymentIntentCancelParams.builder().build());
+	}
+
+	// 支払い済みの PaymentIntent を全額返金（商品を確保できなかった場合の取り消し用。再送しても返金は 1 回）
+	public Refund refundPaymentIntent(String paymentIntentId) throws StripeException {
+		RefundCreateParams params = RefundCreateParams.builder()
+				.setPaymentIntent(paymentIntentId)
+				.build();
+		RequestOptions options = RequestOptions.builder()
+				.setIdempotencyKey("refund-" + paymentIntentId)
+				.build();
+		return Refund.create(params, options);
+	}
 }
@@ -0,0 +1,73 @@
+package com.example.marketplace.service;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.marketplace.service.StripeWebhookService.ReceivedEvent;
+
+/**
+ * 受信箱の Stripe イベントをバックグラウンドでまとめて処理し、注文の状態を進める
+ * ・payment_intent.succeeded → 注文を購入済に確定（ブラウザのリダイレクトが来なくても確定する）
+ * ・payment_intent.canceled  → 決済待ちの注文をキャンセル
+ * ・それ以外は対象外として記録
+ */
+@Service
+public class StripeWebhookProcessor {
+
+	// 受信箱の操作
+	private final StripeWebhookService stripeWebhookService;
+	// 注文の状態遷移
+	private final AppOrderService appOrderService;
+	// 1 回のポーリングで処理する件数
+	private final int batchSize;
+	// 再処理方針（最大試行回数を超えたら FAILED）
+	private final RetryPolicy retryPolicy;
+
+	// 依存性と設定値をコンストラクタで注入
+	public StripeWebhookProcessor(StripeWebhookService stripeWebhookService,
+			AppOrderService appOrderService,
+			@Value("${stripe.webhook.batch-size:50}") int batchSize,
+			@Value("${stripe.webhook.max-attempts:10}") int maxAttempts,
+			@Value("${stripe.webhook.base-backoff-seconds:10}") long baseBackoffSeconds,
+			@Value("${stripe.webhook.max-backoff-seconds:600}") long maxBackoffSeconds,
+			@Value("${stripe.webhook.lease-seconds:120}") long leaseSeconds) {
+		this.stripeWebhookService = stripeWebhookService;
+		this.appOrderService = appOrderService;
+		this.batchSize = batchSize;
+		this.retryPolicy = new RetryPolicy(maxAttempts, baseBackoffSeconds, maxBackoffSeconds, leaseSeconds);
+	}
+
+	// 処理期限が来たイベントを受信順に処理する（前回のバッチが終わってから次を取得）
+	@Scheduled(fixedDelayString = "${stripe.webhook.poll-interval-millis:1000}")
+	public void processBatch() {
+		List<ReceivedEvent> batch = stripeWebhookService.claimDue(batchSize, retryPolicy.getLease());
+		for (ReceivedEvent event : batch) {
+			process(event);
+		}
+	}
+
+	// 1 件処理して結果を記録
+	private void process(ReceivedEvent event) {
+		try {
+			boolean handled = switch (event.type()) {
+			case "payment_intent.succeeded" -> event.objectId() != null
+					&& appOrderService.handlePaymentSucceeded(event.objectId());
+			case "payment_intent.canceled" -> event.objectId() != null
+					&& appOrderService.handlePaymentCanceled(event.objectId());
+			default -> false;
+			};
+			if (handled) {
+				stripeWebhookService.markProcessed(event.id());
+			} else {
+				stripeWebhookService.markIgnored(event.id());
+			}
+		} catch (Exception e) {
+			retryPolicy.recordFailure("Stripe webhook event (" + event.id() + ")", event.attempts(), e, true,
+					(nextAttemptAt, error) -> stripeWebhookService.markRetry(event.id(), nextAttemptAt, error),
+					error -> stripeWebhookService.markFailed(event.id(), error));
+		}
+	}
+}
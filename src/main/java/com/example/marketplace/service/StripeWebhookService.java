@@ -0,0 +1,126 @@
+package com.example.marketplace.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.marketplace.entity.StripeWebhookEvent;
+import com.example.marketplace.repository.StripeWebhookEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+import com.stripe.net.Webhook;
+
+/**
+ * Stripe Webhook の受信箱を操作するサービス
+ * 受信時は署名を検証して保存するだけにし、注文の状態遷移は StripeWebhookProcessor が非同期に行う
+ */
+@Service
+public class StripeWebhookService {
+
+	// 受信箱のリポジトリ
+	private final StripeWebhookEventRepository stripeWebhookEventRepository;
+	// ペイロードから対象オブジェクトIDを取り出すため
+	private final ObjectMapper objectMapper;
+	// Webhook の署名シークレット（whsec_...）
+	private final String webhookSecret;
+
+	// 依存性と設定値をコンストラクタで注入
+	public StripeWebhookService(StripeWebhookEventRepository stripeWebhookEventRepository,
+			ObjectMapper objectMapper,
+			@Value("${stripe.webhook.secret:}") String webhookSecret) {
+		this.stripeWebhookEventRepository = stripeWebhookEventRepository;
+		this.objectMapper = objectMapper;
+		this.webhookSecret = webhookSecret;
+	}
+
+	// 署名シークレットが設定されているか
+	public boolean isConfigured() {
+		return !webhookSecret.isBlank();
+	}
+
+	/**
+	 * 署名を検証してイベントを受信箱へ保存する
+	 * 同じイベントの再送（Stripe は 2xx 以外を再送する）は保存せず false を返す
+	 *
+	 * @throws SignatureVerificationException 署名が不正、またはタイムスタンプが古すぎる場合
+	 */
+	@Transactional
+	public boolean receive(String payload, String signatureHeader) throws SignatureVerificationException {
+		if (!isConfigured()) {
+			throw new IllegalStateException("Stripe webhook secret is not configured.");
+		}
+		Event event = Webhook.constructEvent(payload, signatureHeader, webhookSecret);
+		return stripeWebhookEventRepository.insertIfAbsent(
+				event.getId(), event.getType(), extractObjectId(payload), payload) > 0;
+	}
+
+	// data.object.id（PaymentIntent ID など）を取り出す
+	private String extractObjectId(String payload) {
+		try {
+			JsonNode id = objectMapper.readTree(payload).path("data").path("object").path("id");
+			return id.isTextual() ? id.asText() : null;
+		} catch (JsonProcessingException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 処理期限が来たイベントを最大 limit 件取得し、処理中としてロックする
+	 * ロック期限（lease）内に結果が記録されなければ、他ノードが再取得して処理する
+	 */
+	@Transactional
+	public List<ReceivedEvent> claimDue(int limit, Duration lease) {
+		LocalDateTime now = LocalDateTime.now();
+		List<StripeWebhookEvent> due = stripeWebhookEventRepository.findDueForUpdate(now, limit);
+		for (StripeWebhookEvent e : due) {
+			e.setStatus(StripeWebhookEvent.STATUS_PROCESSING);
+			e.setLockedUntil(now.plus(lease));
+			e.setAttempts(e.getAttempts() + 1);
+		}
+		return due.stream()
+				.map(e -> new ReceivedEvent(e.getId(), e.getType(), e.getObjectId(), e.getAttempts()))
+				.toList();
+	}
+
+	// 処理済みを記録
+	@Transactional
+	public void markProcessed(String id) {
+		stripeWebhookEventRepository.markDone(id, StripeWebhookEvent.STATUS_PROCESSED, LocalDateTime.now());
+	}
+
+	// 対象外を記録
+	@Transactional
+	public void markIgnored(String id) {
+		stripeWebhookEventRepository.markDone(id, StripeWebhookEvent.STATUS_IGNORED, LocalDateTime.now());
+	}
+
+	// 処理失敗を記録し、指定日時以降に再処理する
+	@Transactional
+	public void markRetry(String id, LocalDateTime nextAttemptAt, String error) {
+		stripeWebhookEventRepository.markRetry(id, nextAttemptAt, error);
+	}
+
+	// 処理断念を記録
+	@Transactional
+	public void markFailed(String id, String error) {
+		stripeWebhookEventRepository.markFailed(id, error);
+	}
+
+	/**
+	 * 処理対象のイベント（トランザクション外で扱えるよう必要な値だけを保持）
+	 *
+	 * @param id       イベントID
+	 * @param type     イベント種別
+	 * @param objectId 対象オブジェクトID
+	 * @param attempts 今回を含む処理試行回数
+	 */
+	public record ReceivedEvent(String id, String type, String objectId, int attempts) {
+	}
+}
@@ -0,0 +1,28 @@
+package com.example.marketplace.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * トランザクションのコミットに合わせて処理を実行するためのユーティリティ
+ * メモリ上のインデックス・キャッシュ・配信など、DB の確定後にだけ反映したい処理に使用する
+ */
+public final class TransactionHooks {
+
+	private TransactionHooks() {
+	}
+
+	// トランザクション中ならコミット後に、そうでなければ即時に実行する（ロールバック時は実行しない）
+	public static void afterCommit(Runnable action) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					action.run();
+				}
+			});
+		} else {
+			action.run();
+		}
+	}
+}
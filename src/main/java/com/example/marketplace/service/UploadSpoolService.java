@@ -0,0 +1,107 @@
+package com.example.marketplace.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * アップロードファイルをヒープに載せずにディスクへ書き出すサービス
+ * 固定サイズのバッファで少しずつ読み書きし、同時にサイズと SHA-256 を求める
+ * （ファイル全体を byte[] にしないため、大きな画像の同時アップロードでもヒープを圧迫しない）
+ */
+@Service
+public class UploadSpoolService {
+
+	// 一時ファイルの置き場
+	private final Path spoolDir;
+	// 読み書きのバッファサイズ
+	private final int bufferSize;
+
+	// 設定値をコンストラクタで注入
+	public UploadSpoolService(
+			@Value("${upload.spool-dir:${java.io.tmpdir}/marketplace-uploads}") String spoolDirPath,
+			@Value("${upload.buffer-size:65536}") int bufferSize) {
+		this.spoolDir = Paths.get(spoolDirPath);
+		this.bufferSize = bufferSize;
+		try {
+			Files.createDirectories(this.spoolDir);
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to create upload spool directory: " + spoolDirPath, e);
+		}
+	}
+
+	/**
+	 * アップロードファイルを一時ファイルへ書き出す（呼び出し側で close すること）
+	 *
+	 * @throws IOException 書き出しに失敗した場合、または受信サイズが申告サイズと異なる場合
+	 */
+	public SpooledUpload spool(MultipartFile file) throws IOException {
+		Path temp = Files.createTempFile(spoolDir, "upload-", ".tmp");
+		try {
+			MessageDigest digest = sha256();
+			long size = 0;
+			try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+					OutputStream out = Files.newOutputStream(temp)) {
+				byte[] buffer = new byte[bufferSize];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+					size += read;
+				}
+			}
+			// 途中で切れたアップロードを検出
+			if (size != file.getSize()) {
+				throw new IOException("Upload size mismatch: expected " + file.getSize() + " bytes but read " + size);
+			}
+			return new SpooledUpload(temp, size, HexFormat.of().formatHex(digest.digest()),
+					file.getOriginalFilename());
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+	}
+
+	/**
+	 * 指定日時より前に書き出された一時ファイルを削除する（アップロード中にノードが止まって残ったもの）
+	 *
+	 * @return 削除した件数
+	 */
+	public int purgeOlderThan(Instant cutoff) {
+		int purged = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDir, "upload-*.tmp")) {
+			for (Path file : files) {
+				try {
+					if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && Files.deleteIfExists(file)) {
+						purged++;
+					}
+				} catch (IOException e) {
+					System.err.println("Failed to delete stale spooled upload " + file + ": " + e.getMessage());
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to list upload spool directory: " + e.getMessage());
+		}
+		return purged;
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+}
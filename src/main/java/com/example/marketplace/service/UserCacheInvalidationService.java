@@ -0,0 +1,59 @@
+package com.example.marketplace.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.marketplace.security.CustomUserDetailsService;
+
+/**
+ * ユーザー情報のキャッシュ（ログイン時の認証情報・ログイン中ユーザー）の破棄
+ * ・このノードのキャッシュは即時に破棄し、更新中に古い値が登録されないようコミット後にも破棄する
+ * ・他ノード向けに、更新と同じトランザクションで変更記録（ChangeFeedService の user）を登録する
+ *   各ノードは変更記録の通知を受けて、該当ユーザーのキャッシュを破棄する
+ */
+@Service
+public class UserCacheInvalidationService {
+
+	// 変更記録の topic
+	static final String TOPIC = "user";
+
+	// ノード間の変更通知
+	private final ChangeFeedService changeFeedService;
+	// ログイン中ユーザーのキャッシュ
+	private final CurrentUserCache currentUserCache;
+	// ログイン時の認証情報のキャッシュ
+	private final CustomUserDetailsService customUserDetailsService;
+
+	// 依存性をコンストラクタで注入し、他ノードでの変更を購読
+	public UserCacheInvalidationService(ChangeFeedService changeFeedService,
+			CurrentUserCache currentUserCache,
+			CustomUserDetailsService customUserDetailsService) {
+		this.changeFeedService = changeFeedService;
+		this.currentUserCache = currentUserCache;
+		this.customUserDetailsService = customUserDetailsService;
+		changeFeedService.subscribe(TOPIC, this::evictLocal, this::clearLocal);
+	}
+
+	// ユーザーの更新時に呼ぶ（更新と同じトランザクションで変更記録を登録）
+	@Transactional
+	public void invalidate(Long userId) {
+		if (userId == null) {
+			return;
+		}
+		evictLocal(userId);
+		TransactionHooks.afterCommit(() -> evictLocal(userId));
+		changeFeedService.publish(TOPIC, userId);
+	}
+
+	// このノードのキャッシュを破棄
+	private void evictLocal(Long userId) {
+		currentUserCache.evict(userId);
+		customUserDetailsService.evict(userId);
+	}
+
+	// このノードのキャッシュを全件破棄（変更記録を取りこぼした可能性がある場合）
+	private void clearLocal() {
+		currentUserCache.clear();
+		customUserDetailsService.clear();
+	}
+}
@@ -15,10 +15,14 @@ public class UserService {
 	// ユーザリポジトリの参照
 	private final UserRepository userRepository;
 
+	// ユーザー情報のキャッシュの破棄（更新時）
+	private final UserCacheInvalidationService userCacheInvalidationService;
+
 	// 依存性をコンストラクタで注入
-	public UserService(UserRepository userRepository) {
+	public UserService(UserRepository userRepository, UserCacheInvalidationService userCacheInvalidationService) {
 		// フィールドへ設定
 		this.userRepository = userRepository;
+		this.userCacheInvalidationService = userCacheInvalidationService;
 	}
 
 	// すべてのユーザを取得
@@ -44,7 +48,10 @@ public class UserService {
 	@Transactional
 	public User saveUser(User user) {
 		// save に委譲
-		return userRepository.save(user);
+		User saved = userRepository.save(user);
+		// キャッシュ済みのユーザー情報を破棄（他ノードを含む）
+		userCacheInvalidationService.invalidate(saved.getId());
+		return saved;
 	}
 
 	// 削除
@@ -52,6 +59,7 @@ public class UserService {
 	public void deleteUser(Long id) {
 		// ID 指定で削除
 		userRepository.deleteById(id);
+		userCacheInvalidationService.invalidate(id);
 	}
 
 	// 有効/無効フラグのトグル
@@ -67,5 +75,6 @@ public class UserService {
 
 		// 保存して確定
 		userRepository.save(user);
+		userCacheInvalidationService.invalidate(userId);
 	}
 }
@@ -40,6 +40,11 @@ CREATE TABLE IF NOT EXISTS item (
   FOREIGN KEY (category_id) REFERENCES category(id)
 );
 
+-- 同時購入対策：楽観ロック用バージョンと購入手続きの確保（既存テーブルへの追加）
+ALTER TABLE item ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE item ADD COLUMN IF NOT EXISTS hold_buyer_id INT;   -- 購入手続き中の買い手
+ALTER TABLE item ADD COLUMN IF NOT EXISTS hold_until TIMESTAMP; -- 確保期限
+
 -- 注文情報テーブル
 CREATE TABLE IF NOT EXISTS app_order (
   id SERIAL PRIMARY KEY,
@@ -95,6 +100,42 @@ CREATE TABLE IF NOT EXISTS review (
   FOREIGN KEY (item_id) REFERENCES item(id)
 );
 
+-- 適用済みの一度きりのデータ移行（埋め戻し等）を記録し、起動のたびに再実行しないようにする
+CREATE TABLE IF NOT EXISTS schema_migration (
+  name VARCHAR(100) PRIMARY KEY,             -- 移行名
+  applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 出品者ごとの評価集計（レビュー投稿時に加算更新し、平均評価を O(1) で参照する）
+CREATE TABLE IF NOT EXISTS seller_rating (
+  seller_id INT PRIMARY KEY,                 -- 出品者
+  review_count INT NOT NULL DEFAULT 0,       -- レビュー件数
+  rating_sum BIGINT NOT NULL DEFAULT 0,      -- 評価点の合計
+  star1_count INT NOT NULL DEFAULT 0,        -- 星 1 の件数
+  star2_count INT NOT NULL DEFAULT 0,        -- 星 2 の件数
+  star3_count INT NOT NULL DEFAULT 0,        -- 星 3 の件数
+  star4_count INT NOT NULL DEFAULT 0,        -- 星 4 の件数
+  star5_count INT NOT NULL DEFAULT 0,        -- 星 5 の件数
+  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+  FOREIGN KEY (seller_id) REFERENCES users(id)
+);
+
+-- 既存レビューから集計を初期作成（初回のみ。以降はレビュー投稿時の加算で維持する）
+INSERT INTO seller_rating (seller_id, review_count, rating_sum,
+    star1_count, star2_count, star3_count, star4_count, star5_count)
+SELECT seller_id, COUNT(*), SUM(rating),
+    COUNT(*) FILTER (WHERE rating = 1), COUNT(*) FILTER (WHERE rating = 2),
+    COUNT(*) FILTER (WHERE rating = 3), COUNT(*) FILTER (WHERE rating = 4),
+    COUNT(*) FILTER (WHERE rating = 5)
+FROM review
+WHERE NOT EXISTS (SELECT 1 FROM schema_migration WHERE name = 'seller_rating_backfill')
+GROUP BY seller_id
+ON CONFLICT (seller_id) DO NOTHING;
+
+INSERT INTO schema_migration (name) VALUES ('seller_rating_backfill')
+ON CONFLICT (name) DO NOTHING;
+
 -- 通報情報（ユーザー同士）
 CREATE TABLE IF NOT EXISTS user_complaint (
   id SERIAL PRIMARY KEY,
@@ -107,6 +148,125 @@ CREATE TABLE IF NOT EXISTS user_complaint (
   FOREIGN KEY (reporter_user_id) REFERENCES users(id)
 );
 
+-- 放置された決済待ち注文の照合処理の確保期限（既存テーブルへの追加）
+ALTER TABLE app_order ADD COLUMN IF NOT EXISTS reconcile_after TIMESTAMP;
+
+-- 商品画像の縮小版の URL（既存テーブルへの追加。未生成の商品は元画像で代替表示）
+ALTER TABLE item ADD COLUMN IF NOT EXISTS detail_url TEXT;
+ALTER TABLE item ADD COLUMN IF NOT EXISTS thumbnail_url TEXT;
+-- 画像のアップロード状態（PENDING / READY / FAILED。画像なしは NULL）
+ALTER TABLE item ADD COLUMN IF NOT EXISTS image_status VARCHAR(20);
+-- 画像のアップロードを開始した日時（PENDING のまま残った商品を FAILED にする判定用）
+ALTER TABLE item ADD COLUMN IF NOT EXISTS image_pending_since TIMESTAMP;
+
+-- 販売履歴の検索用に出品者 ID を注文へ複製（既存テーブルへの追加と既存注文の埋め戻し）
+ALTER TABLE app_order ADD COLUMN IF NOT EXISTS seller_id INT REFERENCES users(id);
+
+-- 既存注文の埋め戻し（初回のみ。以降の注文は作成時に設定される）
+UPDATE app_order o
+SET seller_id = i.user_id
+FROM item i
+WHERE o.item_id = i.id AND o.seller_id IS NULL
+  AND NOT EXISTS (SELECT 1 FROM schema_migration WHERE name = 'app_order_seller_id_backfill');
+
+INSERT INTO schema_migration (name) VALUES ('app_order_seller_id_backfill')
+ON CONFLICT (name) DO NOTHING;
+
+-- 埋め戻し後は必須（設定済みなら何もしない）
+ALTER TABLE app_order ALTER COLUMN seller_id SET NOT NULL;
+
+-- 日次売上集計（注文の作成日 × ステータスごとの件数・金額。注文の作成・状態変更時に加減算）
+CREATE TABLE IF NOT EXISTS order_daily_stats (
+  stat_date DATE NOT NULL,                   -- 集計日（注文の作成日）
+  status VARCHAR(20) NOT NULL,               -- 注文ステータス
+  order_count BIGINT NOT NULL DEFAULT 0,     -- 注文件数
+  total_price NUMERIC(14, 2) NOT NULL DEFAULT 0, -- 金額合計
+  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+  PRIMARY KEY (stat_date, status)
+);
+
+-- 既存注文から集計を初期作成（初回のみ。以降は注文の作成・状態変更時の加減算で維持する）
+INSERT INTO order_daily_stats (stat_date, status, order_count, total_price)
+SELECT CAST(created_at AS DATE), status, COUNT(*), SUM(price)
+FROM app_order
+WHERE created_at IS NOT NULL AND status IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM schema_migration WHERE name = 'order_daily_stats_backfill')
+GROUP BY CAST(created_at AS DATE), status
+ON CONFLICT (stat_date, status) DO NOTHING;
+
+INSERT INTO schema_migration (name) VALUES ('order_daily_stats_backfill')
+ON CONFLICT (name) DO NOTHING;
+
+-- LINE 通知の送信待ちキュー（業務処理と同じトランザクションで登録し、バックグラウンドで送信）
+CREATE TABLE IF NOT EXISTS notification_outbox (
+  id SERIAL PRIMARY KEY,
+  recipient_user_id INT NOT NULL,            -- 通知先ユーザー
+  message TEXT NOT NULL,                     -- 通知本文
+  status VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- PENDING / SENDING / SENT / DEAD
+  attempts INT NOT NULL DEFAULT 0,           -- 送信試行回数
+  next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, -- 次回送信可能日時
+  locked_until TIMESTAMP,                    -- 送信処理中ロックの期限
+  last_error TEXT,                           -- 直近の失敗理由
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  sent_at TIMESTAMP,
+
+  FOREIGN KEY (recipient_user_id) REFERENCES users(id)
+);
+
+-- Stripe Webhook の受信箱（署名検証済みのイベントをイベントID単位で 1 回だけ保存し、非同期に処理）
+CREATE TABLE IF NOT EXISTS stripe_webhook_event (
+  id VARCHAR(255) PRIMARY KEY,               -- Stripe のイベントID（重複受信の排除）
+  type VARCHAR(100) NOT NULL,                -- イベント種別
+  object_id VARCHAR(255),                    -- 対象オブジェクトID（PaymentIntent ID など）
+  payload TEXT NOT NULL,                     -- 受信したペイロード
+  status VARCHAR(20) NOT NULL DEFAULT 'RECEIVED', -- RECEIVED / PROCESSING / PROCESSED / IGNORED / FAILED
+  attempts INT NOT NULL DEFAULT 0,           -- 処理試行回数
+  next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, -- 次回処理可能日時
+  locked_until TIMESTAMP,                    -- 処理中ロックの期限
+  last_error TEXT,                           -- 直近の失敗理由
+  received_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  processed_at TIMESTAMP
+);
+
+-- 冪等キーの記録（同じキーで再送された POST には保存済みの結果を返す）
+CREATE TABLE IF NOT EXISTS idempotency_record (
+  id VARCHAR(255) PRIMARY KEY,               -- 用途:ユーザーID:キー
+  request_fingerprint VARCHAR(255) NOT NULL, -- リクエスト内容の要約
+  status VARCHAR(20) NOT NULL,               -- IN_PROGRESS / COMPLETED
+  response TEXT,                             -- 処理結果（JSON）
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  expires_at TIMESTAMP NOT NULL              -- 有効期限
+);
+
+-- ローカル保存画像の実体（内容の SHA-256 ごとに 1 件。使用している商品の数を参照数として持つ）
+CREATE TABLE IF NOT EXISTS image_blob (
+  sha256 VARCHAR(64) PRIMARY KEY,            -- 内容の SHA-256
+  url TEXT NOT NULL,                         -- 元画像の公開 URL
+  ref_count INT NOT NULL DEFAULT 0,          -- 参照している商品の数
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP -- 参照数の最終更新日時
+);
+
+-- 外部の画像ホスト（Cloudinary）上の画像の削除キュー（削除できた行は取り除く）
+CREATE TABLE IF NOT EXISTS image_deletion (
+  id SERIAL PRIMARY KEY,
+  image_url TEXT NOT NULL,                   -- 削除する画像の URL
+  status VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- PENDING / DEAD
+  attempts INT NOT NULL DEFAULT 0,           -- 削除試行回数
+  next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, -- 次回の削除可能日時（処理中は処理確保期限）
+  last_error TEXT,                           -- 直近の失敗理由
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 変更記録（各ノードのメモリ上のキャッシュ・検索インデックスを他ノードの変更に追従させるため。一定時間後に削除）
+CREATE TABLE IF NOT EXISTS change_feed (
+  id SERIAL PRIMARY KEY,
+  topic VARCHAR(50) NOT NULL,                -- 変更の種類（user / item / category）
+  entity_id BIGINT NOT NULL,                 -- 変更された対象の ID
+  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
 -- ========== INDEX ==========
 -- BAN 状態、カテゴリー、検索などの高速化目的
 CREATE INDEX IF NOT EXISTS idx_users_banned
@@ -115,24 +275,64 @@ CREATE INDEX IF NOT EXISTS idx_users_banned
 CREATE INDEX IF NOT EXISTS idx_users_banned_by
   ON users(banned_by_admin_id);
 
+-- ログイン時のメールアドレス検索用（大文字小文字を区別しない）
+CREATE INDEX IF NOT EXISTS idx_users_email_lower
+  ON users(lower(email));
+
 CREATE INDEX IF NOT EXISTS idx_item_user_id
   ON item(user_id);
 
 CREATE INDEX IF NOT EXISTS idx_item_category_id
   ON item(category_id);
 
+-- 商品一覧のカーソルページング用（status / category ごとに新しい順で走査）
+CREATE INDEX IF NOT EXISTS idx_item_status_created
+  ON item(status, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_item_category_status_created
+  ON item(category_id, status, created_at DESC, id DESC);
+
 CREATE INDEX IF NOT EXISTS idx_order_item_id
   ON app_order(item_id);
 
+-- 決済待ち注文の照合対象の取得用（決済待ちのみ）
+CREATE INDEX IF NOT EXISTS idx_order_pending
+  ON app_order(id)
+  WHERE status = '決済待ち';
+
+-- 注文明細エクスポートの期間指定用
+CREATE INDEX IF NOT EXISTS idx_order_created
+  ON app_order(created_at, id);
+
 CREATE INDEX IF NOT EXISTS idx_order_buyer_id
   ON app_order(buyer_id);
 
+-- 買い手ごとの最新注文の取得用
+CREATE INDEX IF NOT EXISTS idx_order_buyer_created
+  ON app_order(buyer_id, created_at DESC, id DESC);
+
+-- 購入履歴のステータス絞り込み用
+CREATE INDEX IF NOT EXISTS idx_order_buyer_status_created
+  ON app_order(buyer_id, status, created_at DESC, id DESC);
+
+-- 販売履歴のカーソルページング用（出品者ごとに新しい順で走査）
+CREATE INDEX IF NOT EXISTS idx_order_seller_created
+  ON app_order(seller_id, created_at DESC, id DESC);
+
+-- 販売履歴のステータス絞り込み用
+CREATE INDEX IF NOT EXISTS idx_order_seller_status_created
+  ON app_order(seller_id, status, created_at DESC, id DESC);
+
 CREATE UNIQUE INDEX IF NOT EXISTS ux_order_pi
   ON app_order(payment_intent_id);
 
 CREATE INDEX IF NOT EXISTS idx_chat_item_id
   ON chat(item_id);
 
+-- チャット履歴のカーソルページング用（商品ごとに新しい順で走査）
+CREATE INDEX IF NOT EXISTS idx_chat_item_created
+  ON chat(item_id, created_at DESC, id DESC);
+
 CREATE INDEX IF NOT EXISTS idx_chat_sender_id
   ON chat(sender_id);
 
@@ -150,3 +350,39 @@ CREATE INDEX IF NOT EXISTS idx_uc_reported
 
 CREATE INDEX IF NOT EXISTS idx_uc_reporter
   ON user_complaint(reporter_user_id);
+
+-- 送信待ち通知の取得用（送信済み・断念分は対象外）
+CREATE INDEX IF NOT EXISTS idx_outbox_due
+  ON notification_outbox(status, next_attempt_at)
+  WHERE status IN ('PENDING', 'SENDING');
+
+-- 未処理の Webhook イベントの取得用（処理済み・対象外・断念分は対象外）
+CREATE INDEX IF NOT EXISTS idx_webhook_due
+  ON stripe_webhook_event(status, next_attempt_at)
+  WHERE status IN ('RECEIVED', 'PROCESSING');
+
+-- 期限切れの冪等キー記録の削除用
+CREATE INDEX IF NOT EXISTS idx_idempotency_expires
+  ON idempotency_record(expires_at);
+
+-- 参照のない画像の削除・参照数の数え直し用
+CREATE INDEX IF NOT EXISTS idx_image_blob_updated
+  ON image_blob(updated_at);
+
+-- 画像を参照している商品の数え上げ用
+CREATE INDEX IF NOT EXISTS idx_item_image_url
+  ON item(image_url);
+
+-- アップロード中のまま残った商品画像の取得用
+CREATE INDEX IF NOT EXISTS idx_item_image_pending
+  ON item(image_pending_since)
+  WHERE image_status = 'PENDING';
+
+-- 削除期限が来た画像の取得用
+CREATE INDEX IF NOT EXISTS idx_image_deletion_due
+  ON image_deletion(next_attempt_at)
+  WHERE status = 'PENDING';
+
+-- 直近の変更記録の取得・古い変更記録の削除用
+CREATE INDEX IF NOT EXISTS idx_change_feed_created
+  ON change_feed(created_at);
@@ -0,0 +1,96 @@
+package com.example.marketplace.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.DisabledException;
+
+import com.example.marketplace.entity.User;
+import com.example.marketplace.repository.UserRepository;
+import com.example.marketplace.service.CurrentUserCache;
+
+/**
+ * ログイン時の認証情報キャッシュの確認
+ * ログインが集中しても users テーブルの検索は 1 回で、BAN 後は破棄されてログインを拒否する
+ * BAN の確定前に読み込んだ値は、読み込み中に破棄されていればキャッシュに残さない
+ */
+class CustomUserDetailsServiceTests {
+
+	// 同じユーザーのログイン回数
+	private static final int LOGINS = 1_000;
+
+	@Test
+	void loginBurstQueriesTheUserOnceAndBanIsAppliedAfterEviction() {
+		User user = new User();
+		user.setId(1L);
+		user.setName("user");
+		user.setEmail("user@example.com");
+		user.setPassword("{noop}secret");
+		user.setRole("USER");
+
+		UserRepository users = mock(UserRepository.class);
+		when(users.findByEmailIgnoreCase(anyString())).thenAnswer(inv -> Optional.of(copy(user)));
+		CustomUserDetailsService service = new CustomUserDetailsService(users, mock(CurrentUserCache.class), 300,
+				100);
+
+		for (int i = 0; i < LOGINS; i++) {
+			LoginUser principal = (LoginUser) service.loadUserByUsername(i % 2 == 0 ? "user@example.com"
+					: "USER@example.com");
+			// 認証後のパスワード消去がキャッシュに影響しないこと
+			assertEquals("{noop}secret", principal.getPassword());
+			principal.eraseCredentials();
+		}
+		verify(users, times(1)).findByEmailIgnoreCase(anyString());
+
+		// BAN して破棄すると、次のログインで読み直して拒否する
+		user.setBanned(true);
+		service.evict(1L);
+		assertThrows(DisabledException.class, () -> service.loadUserByUsername("user@example.com"));
+		verify(users, times(2)).findByEmailIgnoreCase(anyString());
+	}
+
+	@Test
+	void userReadBeforeABanIsNotCachedWhenEvictedDuringTheRead() {
+		User user = new User();
+		user.setId(1L);
+		user.setName("user");
+		user.setEmail("user@example.com");
+		user.setPassword("{noop}secret");
+		user.setRole("USER");
+
+		UserRepository users = mock(UserRepository.class);
+		CurrentUserCache currentUserCache = new CurrentUserCache(users, 60, 100);
+		CustomUserDetailsService service = new CustomUserDetailsService(users, currentUserCache, 300, 100);
+		// 読み込み中に BAN が確定して破棄される（読み込んだのは BAN 前の値）
+		when(users.findByEmailIgnoreCase(anyString())).thenAnswer(inv -> {
+			User beforeBan = copy(user);
+			user.setBanned(true);
+			currentUserCache.evict(1L);
+			service.evict(1L);
+			return Optional.of(beforeBan);
+		}).thenAnswer(inv -> Optional.of(copy(user)));
+		when(users.findById(1L)).thenAnswer(inv -> Optional.of(copy(user)));
+
+		service.loadUserByUsername("user@example.com");
+
+		// 古い値は残らず、ログイン中ユーザーは読み直して BAN 済みになり、次のログインも読み直して拒否する
+		assertTrue(currentUserCache.get(1L).orElseThrow().isBanned());
+		verify(users, times(1)).findById(1L);
+		assertThrows(DisabledException.class, () -> service.loadUserByUsername("user@example.com"));
+		verify(users, times(2)).findByEmailIgnoreCase(anyString());
+	}
+
+	private static User copy(User u) {
+		return new User(u.getId(), u.getName(), u.getEmail(), u.getPassword(), u.getRole(), u.getLineNotifyToken(),
+				u.isEnabled(), u.isBanned(), u.getBanReason(), u.getBannedAt(), u.getBannedByAdminId());
+	}
+}
@@ -0,0 +1,201 @@
+package com.example.marketplace.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.marketplace.entity.AppOrder;
+import com.example.marketplace.entity.Item;
+import com.example.marketplace.entity.User;
+import com.example.marketplace.repository.AppOrderRepository;
+import com.example.marketplace.repository.ItemRepository;
+import com.example.marketplace.repository.UserRepository;
+import com.stripe.model.PaymentIntent;
+
+/**
+ * 同じ商品への購入開始が同時に集中しても、注文と PaymentIntent が 1 つだけ作られることの確認
+ * 実際の DB（商品の確保列と @Version）を使い、Stripe のみスタブに差し替える
+ */
+@SpringBootTest
+class AppOrderServiceConcurrencyTests {
+
+	// 同時に購入を開始する買い手の数
+	private static final int BUYERS = 20;
+
+	@MockitoBean
+	private StripeService stripeService;
+
+	@Autowired
+	private AppOrderService appOrderService;
+	@Autowired
+	private AppOrderRepository appOrderRepository;
+	@Autowired
+	private ItemRepository itemRepository;
+	@Autowired
+	private UserRepository userRepository;
+	@Autowired
+	private ItemService itemService;
+	@Autowired
+	private ObjectProvider<StripeService> stripeServiceProvider;
+	@Autowired
+	private NotificationOutboxService notificationOutboxService;
+	@Autowired
+	private OrderStatsService orderStatsService;
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final List<User> users = new ArrayList<>();
+	private Item item;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		User seller = saveUser("seller");
+		for (int i = 0; i < BUYERS; i++) {
+			saveUser("buyer" + i);
+		}
+		item = new Item();
+		item.setSeller(seller);
+		item.setName("concurrency test item");
+		item.setPrice(new BigDecimal("1000"));
+		item = itemRepository.save(item);
+
+		// PaymentIntent は注文 ID から作る（呼び出し回数は verify で確認）
+		when(stripeService.createPaymentIntent(anyLong(), any(BigDecimal.class), anyString(), anyString()))
+				.thenAnswer(inv -> {
+					PaymentIntent paymentIntent = new PaymentIntent();
+					paymentIntent.setId("pi_test_" + inv.getArgument(0));
+					paymentIntent.setStatus("requires_payment_method");
+					return paymentIntent;
+				});
+	}
+
+	@AfterEach
+	void tearDown() {
+		// 作成した注文を日次集計から差し引いてから削除
+		List<Long> orderIds = jdbcTemplate.queryForList(
+				"SELECT id FROM app_order WHERE item_id = ?", Long.class, item.getId());
+		for (AppOrder order : appOrderRepository.findAllById(orderIds)) {
+			orderStatsService.recordTransition(order, order.getStatus(), null);
+		}
+		appOrderRepository.deleteAllById(orderIds);
+		itemRepository.deleteById(item.getId());
+		userRepository.deleteAll(users);
+	}
+
+	@Test
+	void onlyOneBuyerGetsAnOrderWhenAllGoThroughTheSameNode() throws Exception {
+		// 同じノード：メモリ上の確保表で後続の買い手を断る
+		List<Callable<PaymentIntent>> purchases = new ArrayList<>();
+		for (User buyer : buyers()) {
+			purchases.add(() -> appOrderService.initiatePurchase(item.getId(), buyer));
+		}
+		assertOnlyOnePurchaseSucceeds(purchases);
+	}
+
+	@Test
+	void onlyOneBuyerGetsAnOrderWhenEachGoesThroughADifferentNode() throws Exception {
+		// 買い手ごとに別ノード（メモリ上の確保表が別）：DB の確保列とバージョンで後続の買い手を断る
+		List<Callable<PaymentIntent>> purchases = new ArrayList<>();
+		for (User buyer : buyers()) {
+			AppOrderService node = new AppOrderService(appOrderRepository, itemRepository, itemService,
+					stripeServiceProvider, notificationOutboxService, orderStatsService, transactionTemplate,
+					new ItemReservationService(900));
+			purchases.add(() -> node.initiatePurchase(item.getId(), buyer));
+		}
+		assertOnlyOnePurchaseSucceeds(purchases);
+	}
+
+	// 全員が揃ってから一斉に購入を開始し、成功 1 件・他は全員拒否・注文と PaymentIntent が 1 つずつであることを確認
+	private void assertOnlyOnePurchaseSucceeds(List<Callable<PaymentIntent>> purchases) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(purchases.size());
+		CountDownLatch ready = new CountDownLatch(purchases.size());
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<PaymentIntent>> results = new ArrayList<>();
+			for (Callable<PaymentIntent> purchase : purchases) {
+				results.add(pool.submit(() -> {
+					ready.countDown();
+					start.await();
+					return purchase.call();
+				}));
+			}
+			assertTrue(ready.await(30, TimeUnit.SECONDS));
+			start.countDown();
+
+			int winners = 0;
+			int rejected = 0;
+			for (Future<PaymentIntent> result : results) {
+				try {
+					assertNotNull(result.get(30, TimeUnit.SECONDS));
+					winners++;
+				} catch (ExecutionException e) {
+					// 敗者は「他の買い手が購入手続き中」で拒否される
+					assertTrue(e.getCause() instanceof IllegalStateException, e.getCause().toString());
+					rejected++;
+				}
+			}
+			assertEquals(1, winners);
+			assertEquals(purchases.size() - 1, rejected);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		List<Long> orderIds = jdbcTemplate.queryForList(
+				"SELECT id FROM app_order WHERE item_id = ?", Long.class, item.getId());
+		assertEquals(1, orderIds.size());
+		AppOrder order = appOrderRepository.findById(orderIds.get(0)).orElseThrow();
+		assertEquals("決済待ち", order.getStatus());
+		assertEquals("pi_test_" + order.getId(), order.getPaymentIntentId());
+		verify(stripeService, times(1)).createPaymentIntent(anyLong(), any(BigDecimal.class), anyString(),
+				anyString());
+
+		// 商品は勝者の買い手で確保されている
+		Item held = itemRepository.findById(item.getId()).orElseThrow();
+		assertEquals(order.getBuyer().getId(), held.getHoldBuyerId());
+	}
+
+	private List<User> buyers() {
+		return users.subList(1, users.size());
+	}
+
+	private User saveUser(String name) {
+		User user = new User();
+		user.setName(name);
+		user.setEmail(name + "-" + UUID.randomUUID() + "@example.com");
+		user.setPassword("x");
+		user.setRole("USER");
+		User saved = userRepository.save(user);
+		users.add(saved);
+		return saved;
+	}
+}
@@ -0,0 +1,159 @@
+package com.example.marketplace.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+
+import com.example.marketplace.controller.AppOrderController;
+import com.example.marketplace.entity.AppOrder;
+import com.example.marketplace.entity.Item;
+import com.example.marketplace.entity.User;
+import com.example.marketplace.repository.AppOrderRepository;
+import com.example.marketplace.repository.ItemRepository;
+import com.stripe.model.PaymentIntent;
+
+/**
+ * 決済完了処理の確認
+ * ・PaymentIntent ID に対応する注文だけを確定して返す
+ * ・評価画面へのリダイレクトは、確定した注文がログインユーザーのものである場合だけその注文へ向ける
+ */
+class CheckoutCompletionTests {
+
+	private User buyer;
+	private User otherUser;
+	private AppOrder order;
+	private AppOrderRepository appOrderRepository;
+	private ItemService itemService;
+
+	@BeforeEach
+	void setUp() {
+		User seller = new User();
+		seller.setId(1L);
+		seller.setName("seller");
+		buyer = new User();
+		buyer.setId(2L);
+		buyer.setName("buyer");
+		buyer.setEmail("buyer@example.com");
+		otherUser = new User();
+		otherUser.setId(3L);
+		otherUser.setName("other");
+
+		Item item = new Item();
+		item.setId(10L);
+		item.setSeller(seller);
+		item.setName("item");
+		item.setPrice(new BigDecimal("1000"));
+
+		order = new AppOrder();
+		order.setId(100L);
+		order.setItem(item);
+		order.setBuyer(buyer);
+		order.setPrice(item.getPrice());
+		order.setStatus("決済待ち");
+		order.setPaymentIntentId("pi_test");
+		order.setCreatedAt(LocalDateTime.now());
+
+		appOrderRepository = mock(AppOrderRepository.class);
+		when(appOrderRepository.findByPaymentIntentId("pi_test")).thenReturn(Optional.of(order));
+		when(appOrderRepository.save(any(AppOrder.class))).thenAnswer(inv -> inv.getArgument(0));
+		itemService = mock(ItemService.class);
+	}
+
+	@Test
+	void completionConfirmsAndReturnsTheOrderForThePaymentIntent() throws Exception {
+		AppOrder completed = newService().completePurchase("pi_test");
+
+		assertSame(order, completed);
+		assertEquals("購入済", completed.getStatus());
+		verify(itemService).markItemAsSold(10L);
+		verify(appOrderRepository, never()).findAll();
+	}
+
+	@Test
+	void latestCompletedOrderIsLookedUpByBuyerAndCompletedStatuses() throws Exception {
+		when(appOrderRepository.findFirstByBuyerAndStatusInOrderByCreatedAtDescIdDesc(
+				buyer, List.of("購入済", "発送済"))).thenReturn(Optional.of(order));
+
+		assertEquals(Optional.of(order), newService().getLatestCompletedOrderForBuyer(buyer));
+	}
+
+	@Test
+	void buyerIsRedirectedToTheReviewOfTheCompletedOrder() throws Exception {
+		AppOrderService service = mock(AppOrderService.class);
+		when(service.completePurchase("pi_test")).thenReturn(order);
+
+		String view = newController(service).completePurchase(buyer, "pi_test", new RedirectAttributesModelMap());
+
+		assertEquals("redirect:/reviews/new/100", view);
+		verify(service, never()).getLatestCompletedOrderForBuyer(any());
+	}
+
+	@Test
+	void anotherUsersPaymentIntentRedirectsToTheLoggedInUsersOwnLatestOrder() throws Exception {
+		AppOrder ownOrder = new AppOrder();
+		ownOrder.setId(200L);
+		ownOrder.setBuyer(otherUser);
+		AppOrderService service = mock(AppOrderService.class);
+		when(service.completePurchase("pi_test")).thenReturn(order);
+		when(service.getLatestCompletedOrderForBuyer(otherUser)).thenReturn(Optional.of(ownOrder));
+
+		String view = newController(service).completePurchase(otherUser, "pi_test",
+				new RedirectAttributesModelMap());
+
+		assertEquals("redirect:/reviews/new/200", view);
+	}
+
+	@Test
+	void anotherUsersPaymentIntentWithoutOwnOrderRedirectsToOrderList() throws Exception {
+		AppOrderService service = mock(AppOrderService.class);
+		when(service.completePurchase("pi_test")).thenReturn(order);
+		when(service.getLatestCompletedOrderForBuyer(otherUser)).thenReturn(Optional.empty());
+
+		String view = newController(service).completePurchase(otherUser, "pi_test",
+				new RedirectAttributesModelMap());
+
+		assertEquals("redirect:/my-page/orders", view);
+	}
+
+	// Stripe 上では支払い済み、トランザクションはコールバックをそのまま実行する注文サービス
+	private AppOrderService newService() throws Exception {
+		StripeService stripeService = mock(StripeService.class);
+		PaymentIntent succeeded = new PaymentIntent();
+		succeeded.setId("pi_test");
+		succeeded.setStatus("succeeded");
+		when(stripeService.retrievePaymentIntent(anyString())).thenReturn(succeeded);
+		@SuppressWarnings("unchecked")
+		ObjectProvider<StripeService> stripeProvider = mock(ObjectProvider.class);
+		when(stripeProvider.getIfAvailable()).thenReturn(stripeService);
+
+		TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+		when(transactionTemplate.execute(any())).thenAnswer(
+				inv -> inv.<TransactionCallback<?>> getArgument(0).doInTransaction(null));
+
+		return new AppOrderService(appOrderRepository, mock(ItemRepository.class), itemService, stripeProvider,
+				mock(NotificationOutboxService.class), mock(OrderStatsService.class), transactionTemplate,
+				new ItemReservationService(900));
+	}
+
+	private AppOrderController newController(AppOrderService service) {
+		return new AppOrderController(service, itemService, mock(StripeWebhookService.class),
+				mock(IdempotencyService.class));
+	}
+}
@@ -0,0 +1,78 @@
+package com.example.marketplace.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class ItemReservationServiceTests {
+
+	// 同時に購入を開始する買い手の数
+	private static final int BUYERS = 500;
+
+	@Test
+	void onlyOneOfManySimultaneousBuyersReservesTheItem() throws Exception {
+		ItemReservationService reservations = new ItemReservationService(900);
+		Long itemId = 1L;
+
+		ExecutorService pool = Executors.newFixedThreadPool(BUYERS);
+		CountDownLatch ready = new CountDownLatch(BUYERS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (long buyerId = 1; buyerId <= BUYERS; buyerId++) {
+				long id = buyerId;
+				results.add(pool.submit(() -> {
+					// 全スレッドが揃ってから一斉に購入開始
+					ready.countDown();
+					start.await();
+					return reservations.tryReserve(itemId, id);
+				}));
+			}
+			assertTrue(ready.await(30, TimeUnit.SECONDS));
+			start.countDown();
+
+			int winners = 0;
+			for (Future<Boolean> result : results) {
+				if (result.get(30, TimeUnit.SECONDS)) {
+					winners++;
+				}
+			}
+			assertEquals(1, winners);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void releasedOrExpiredReservationCanBeTakenByAnotherBuyer() {
+		ItemReservationService reservations = new ItemReservationService(900);
+		assertTrue(reservations.tryReserve(1L, 10L));
+		assertFalse(reservations.tryReserve(1L, 20L));
+		// 同じ買い手の再開始は確保の延長として許可
+		assertTrue(reservations.tryReserve(1L, 10L));
+
+		// 他の買い手による解除は無視される
+		reservations.release(1L, 20L);
+		assertFalse(reservations.tryReserve(1L, 20L));
+
+		reservations.release(1L, 10L);
+		assertTrue(reservations.tryReserve(1L, 20L));
+
+		// 有効期間 0 秒なら確保は即座に期限切れ
+		ItemReservationService expiring = new ItemReservationService(0);
+		assertTrue(expiring.tryReserve(2L, 10L));
+		assertTrue(expiring.tryReserve(2L, 20L));
+		expiring.purgeExpired();
+		assertEquals(0, expiring.size());
+	}
+}
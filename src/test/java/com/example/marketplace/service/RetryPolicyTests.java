@@ -0,0 +1,51 @@
+package com.example.marketplace.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class RetryPolicyTests {
+
+	@Test
+	void backoffDoublesPerAttemptUpToTheLimit() {
+		RetryPolicy policy = new RetryPolicy(10, 30, 3600, 120);
+		assertEquals(Duration.ofSeconds(30), policy.backoff(1));
+		assertEquals(Duration.ofSeconds(60), policy.backoff(2));
+		assertEquals(Duration.ofSeconds(120), policy.backoff(3));
+		assertEquals(Duration.ofSeconds(3600), policy.backoff(8));
+		assertEquals(Duration.ofSeconds(3600), policy.backoff(1000));
+		assertEquals(Duration.ofSeconds(120), policy.getLease());
+	}
+
+	@Test
+	void failureIsRetriedUntilTheLastAttemptOrWhenNotRetryable() {
+		RetryPolicy policy = new RetryPolicy(3, 30, 3600, 120);
+		AtomicReference<LocalDateTime> retriedAt = new AtomicReference<>();
+		AtomicReference<String> gaveUp = new AtomicReference<>();
+		IOException failure = new IOException("timeout");
+
+		LocalDateTime before = LocalDateTime.now();
+		policy.recordFailure("test", 2, failure, true, (at, error) -> retriedAt.set(at), gaveUp::set);
+		assertNotNull(retriedAt.get());
+		assertTrue(!retriedAt.get().isBefore(before.plusSeconds(60)));
+		assertNull(gaveUp.get());
+
+		retriedAt.set(null);
+		policy.recordFailure("test", 3, failure, true, (at, error) -> retriedAt.set(at), gaveUp::set);
+		assertNull(retriedAt.get());
+		assertEquals("IOException: timeout", gaveUp.get());
+
+		gaveUp.set(null);
+		policy.recordFailure("test", 1, failure, false, (at, error) -> retriedAt.set(at), gaveUp::set);
+		assertNull(retriedAt.get());
+		assertEquals("IOException: timeout", gaveUp.get());
+	}
+}